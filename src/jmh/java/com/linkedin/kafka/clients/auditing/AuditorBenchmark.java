@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AbstractAuditor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of auditing one record with {@link LoggingAuditor}, the way LiKafkaProducerImpl and LiKafkaConsumerImpl
+ * audit every record they send or deliver.
+ * <ul>
+ * <li>{@link #record()} uses {@link Auditor#record(String, Object, Object, Long, Long, Long, AuditType)} with boxed
+ * timestamp and counts.
+ * <li>{@link #recordPrimitive()} uses {@link Auditor#recordPrimitive(String, Object, Object, long, long, long, AuditType)}.
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuditorBenchmark {
+  private static final String TOPIC = "benchmark";
+  private static final String KEY = "key";
+  private static final String VALUE = "value";
+  // Large enough for the bytes count not to hit the Long cache.
+  private static final int BYTES_COUNT = 1000;
+
+  private LoggingAuditor<String, String> _auditor;
+  private long _timestamp;
+
+  @Setup
+  public void setup() {
+    _auditor = new LoggingAuditor<>();
+    Map<String, String> configs = new HashMap<>();
+    configs.put(AbstractAuditor.ENABLE_AUTO_TICK, "false");
+    _auditor.configure(configs);
+    _auditor.start();
+    _timestamp = System.currentTimeMillis();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _auditor.close();
+  }
+
+  @Benchmark
+  public void record() {
+    _auditor.record(TOPIC, KEY, VALUE, _timestamp, 1L, (long) BYTES_COUNT, AuditType.SUCCESS);
+  }
+
+  @Benchmark
+  public void recordPrimitive() {
+    _auditor.recordPrimitive(TOPIC, KEY, VALUE, _timestamp, 1L, BYTES_COUNT, AuditType.SUCCESS);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing.abstractimpl;
+
+import com.linkedin.kafka.clients.auditing.AuditType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi-threaded benchmark of {@link AbstractAuditor#recordPrimitive} while the auditor keeps ticking. All the threads
+ * record to the same audit key, which is the worst case for contention, e.g. many producer threads sending to the same
+ * topic. The auditor ticks every {@link #reportingIntervalMs} milliseconds, so the handoff of the stats between the
+ * recording threads and the ticking thread is exercised many times per iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AbstractAuditorContentionBenchmark {
+  private static final String TOPIC = "benchmark";
+
+  @Param({"10"})
+  public long reportingIntervalMs;
+
+  private CountingAuditor _auditor;
+
+  @Setup
+  public void setup() {
+    _auditor = new CountingAuditor();
+    Map<String, String> configs = new HashMap<>();
+    configs.put(AbstractAuditor.REPORTING_INTERVAL_MS, Long.toString(reportingIntervalMs));
+    configs.put(AbstractAuditor.REPORTING_DELAY_MS, "0");
+    _auditor.configure(configs);
+    _auditor.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _auditor.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void record1Thread() {
+    record();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void record4Threads() {
+    record();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void record16Threads() {
+    record();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void record64Threads() {
+    record();
+  }
+
+  private void record() {
+    // The timestamp is always before the next tick, so the events are recorded to the current stats.
+    _auditor.recordPrimitive(TOPIC, null, null, 0L, 1L, 1000L, AuditType.SUCCESS);
+  }
+
+  /**
+   * An auditor that counts the events of each topic and discards the stats on tick.
+   */
+  private static final class CountingAuditor extends AbstractAuditor<Object, Object> {
+    private static final AuditKey AUDIT_KEY = new AuditKey(TOPIC, 0L, AuditType.SUCCESS);
+
+    CountingAuditor() {
+      super();
+      setDaemon(true);
+    }
+
+    @Override
+    public void onTick(AuditStats lastStats) {
+
+    }
+
+    @Override
+    public void onClosed(AuditStats currentStats, AuditStats nextStats) {
+
+    }
+
+    @Override
+    protected AuditStats createAuditStats() {
+      return new CountingAuditStats(1L);
+    }
+
+    @Override
+    protected Object getAuditKey(String topic,
+                                 Object key,
+                                 Object value,
+                                 Long timestamp,
+                                 Long messageCount,
+                                 Long bytesCount,
+                                 AuditType auditType) {
+      return AUDIT_KEY;
+    }
+  }
+}
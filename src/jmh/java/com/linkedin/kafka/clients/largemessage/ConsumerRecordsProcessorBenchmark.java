@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import com.linkedin.kafka.clients.auditing.Auditor;
+import com.linkedin.kafka.clients.auditing.LoggingAuditor;
+import com.linkedin.kafka.clients.auditing.NoOpAuditor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link ConsumerRecordsProcessor#process(ConsumerRecords)}. Each operation processes one batch of
+ * records as returned by a poll. The messages larger than {@link #segmentSize} are split into segments by the
+ * {@link MessageSplitterImpl} and reassembled by the processor, so the batch mixes normal and large messages depending
+ * on {@link #messageSize}. With a {@link #parallelism} greater than 1 the partitions of the batch are processed in
+ * parallel. Setting {@link #completeMessagesFastPath} to false makes the assembler always report incomplete messages,
+ * so every record is assembled and tracked one by one as it is when a partition has an incomplete large message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConsumerRecordsProcessorBenchmark {
+  private static final String TOPIC = "benchmark";
+  // Cap the size of a batch so that the large message sizes do not need a huge heap.
+  private static final int MAX_BATCH_BYTES = 20000000;
+  private static final int MAX_BATCH_MESSAGES = 1000;
+
+  @Param({"100", "10000", "1000000", "10000000"})
+  public int messageSize;
+
+  @Param({"800000"})
+  public int segmentSize;
+
+  @Param({"1", "16"})
+  public int numPartitions;
+
+  @Param({"noop", "logging"})
+  public String auditor;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  @Param({"true", "false"})
+  public boolean completeMessagesFastPath;
+
+  private ConsumerRecordsProcessor<String, byte[]> _processor;
+  private ConsumerRecords<byte[], byte[]> _records;
+
+  @Setup
+  public void setup() {
+    Auditor<String, byte[]> recordsAuditor;
+    if (auditor.equals("logging")) {
+      recordsAuditor = new LoggingAuditor<>();
+      recordsAuditor.configure(new HashMap<String, Object>());
+      recordsAuditor.start();
+    } else {
+      recordsAuditor = new NoOpAuditor<>();
+    }
+    MessageAssembler assembler = new MessageAssemblerImpl(2L * numPartitions * messageSize, 1000, false,
+                                                          new DefaultSegmentDeserializer());
+    if (!completeMessagesFastPath) {
+      assembler = new PerRecordMessageAssembler(assembler);
+    }
+    _processor = new ConsumerRecordsProcessor<>(assembler, new StringDeserializer(), new ByteArrayDeserializer(),
+                                                new DeliveredMessageOffsetTracker(500), recordsAuditor, parallelism);
+    _records = createConsumerRecords();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _processor.close();
+  }
+
+  @Benchmark
+  public ConsumerRecords<String, byte[]> process() {
+    return _processor.process(_records);
+  }
+
+  private ConsumerRecords<byte[], byte[]> createConsumerRecords() {
+    MessageSplitter splitter = new MessageSplitterImpl(segmentSize, new DefaultSegmentSerializer());
+    int numMessages = Math.max(1, Math.min(MAX_BATCH_MESSAGES, MAX_BATCH_BYTES / messageSize));
+    byte[] value = new byte[messageSize];
+    new Random(0).nextBytes(value);
+    byte[] key = "key".getBytes();
+    long timestamp = System.currentTimeMillis();
+
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    for (int i = 0; i < numMessages; i++) {
+      TopicPartition tp = new TopicPartition(TOPIC, i % numPartitions);
+      List<ConsumerRecord<byte[], byte[]>> records = recordsMap.get(tp);
+      if (records == null) {
+        records = new ArrayList<>();
+        recordsMap.put(tp, records);
+      }
+      for (ProducerRecord<byte[], byte[]> segment : splitter.split(TOPIC, tp.partition(), timestamp, UUID.randomUUID(),
+                                                                   key, value, segmentSize)) {
+        records.add(new ConsumerRecord<>(TOPIC, tp.partition(), records.size(), timestamp, TimestampType.CREATE_TIME,
+                                         0L, segment.key().length, segment.value().length, segment.key(),
+                                         segment.value()));
+      }
+    }
+    return new ConsumerRecords<>(recordsMap);
+  }
+
+  /**
+   * A message assembler that always reports incomplete messages so that the processor never takes the fast path.
+   */
+  private static class PerRecordMessageAssembler implements MessageAssembler {
+    private final MessageAssembler _assembler;
+
+    PerRecordMessageAssembler(MessageAssembler assembler) {
+      _assembler = assembler;
+    }
+
+    @Override
+    public AssembleResult assemble(TopicPartition tp, long offset, byte[] segmentBytes) {
+      return _assembler.assemble(tp, offset, segmentBytes);
+    }
+
+    @Override
+    public Map<TopicPartition, Long> safeOffsets() {
+      return _assembler.safeOffsets();
+    }
+
+    @Override
+    public long safeOffset(TopicPartition tp) {
+      return _assembler.safeOffset(tp);
+    }
+
+    @Override
+    public boolean hasIncompleteMessages(TopicPartition tp) {
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      _assembler.clear();
+    }
+
+    @Override
+    public void clear(TopicPartition tp) {
+      _assembler.clear(tp);
+    }
+
+    @Override
+    public void close() {
+      _assembler.close();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DeliveredMessageOffsetTracker} for partitions with large messages of many segments. The tracker
+ * is filled with {@link #maxMessagesToTrack} large messages of {@link #numberOfSegments} segments each, i.e. each
+ * large message is delivered after {@link #numberOfSegments} - 1 non message offsets.
+ * <ul>
+ * <li>{@link #trackLargeMessage()} records the offsets of one more large message.
+ * <li>{@link #commit()} translates an offset inside the segments of a large message to a safe offset, the way
+ * {@link ConsumerRecordsProcessor#safeOffsetsToCommit(java.util.Map, boolean)} does.
+ * <li>{@link #seek()} looks up the safe offset to seek to for an offset inside the segments of a large message, the
+ * way {@link com.linkedin.kafka.clients.consumer.LiKafkaConsumerImpl#seek(TopicPartition, long)} does.
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DeliveredMessageOffsetTrackerBenchmark {
+  private static final TopicPartition TP = new TopicPartition("benchmark", 0);
+
+  @Param({"10", "100", "1000"})
+  public int numberOfSegments;
+
+  @Param({"500"})
+  public int maxMessagesToTrack;
+
+  private DeliveredMessageOffsetTracker _lookupTracker;
+  private DeliveredMessageOffsetTracker _trackingTracker;
+  private long _nextOffset;
+  private long _lookupOffset;
+
+  @Setup
+  public void setup() {
+    _lookupTracker = new DeliveredMessageOffsetTracker(maxMessagesToTrack);
+    long offset = 0;
+    for (int i = 0; i < maxMessagesToTrack; i++) {
+      offset = trackLargeMessage(_lookupTracker, offset);
+    }
+    // The last segment of the message in the middle of the tracked range.
+    _lookupOffset = (long) (maxMessagesToTrack / 2) * numberOfSegments - 2;
+    _trackingTracker = new DeliveredMessageOffsetTracker(maxMessagesToTrack);
+    _nextOffset = 0;
+  }
+
+  @Benchmark
+  public long trackLargeMessage() {
+    _nextOffset = trackLargeMessage(_trackingTracker, _nextOffset);
+    return _nextOffset;
+  }
+
+  @Benchmark
+  public Long commit() {
+    Long previousDeliveredOffset = _lookupTracker.closestDeliveredUpTo(TP, _lookupOffset - 1);
+    return _lookupTracker.safeOffset(TP, previousDeliveredOffset);
+  }
+
+  @Benchmark
+  public long seek() {
+    Long closestDeliveredBeforeOffset = _lookupTracker.closestDeliveredUpTo(TP, _lookupOffset);
+    return Math.min(_lookupTracker.startingOffset(TP, closestDeliveredBeforeOffset),
+                    _lookupTracker.safeOffset(TP, closestDeliveredBeforeOffset));
+  }
+
+  private long trackLargeMessage(DeliveredMessageOffsetTracker tracker, long startingOffset) {
+    long offset = startingOffset;
+    for (int i = 0; i < numberOfSegments - 1; i++) {
+      tracker.addNonMessageOffset(TP, offset++);
+    }
+    tracker.track(TP, offset, offset + 1, startingOffset, true);
+    return offset + 1;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link LargeMessageBufferPool#tryCompleteMessage(TopicPartition, long, LargeMessageSegment)}.
+ * Each operation reassembles one large message per partition, with the segments of the messages interleaved across
+ * the partitions so that {@link #numPartitions} messages are incomplete at the same time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LargeMessageBufferPoolBenchmark {
+  private static final String TOPIC = "benchmark";
+
+  @Param({"1000000", "10000000", "50000000"})
+  public int messageSize;
+
+  @Param({"100000", "800000"})
+  public int segmentSize;
+
+  @Param({"1", "8"})
+  public int numPartitions;
+
+  @Param({"false", "true"})
+  public boolean preallocateMessageBuffers;
+
+  private LargeMessageBufferPool _pool;
+  private TopicPartition[] _partitions;
+  private LargeMessageSegment[][] _segments;
+  private long _offset;
+
+  @Setup
+  public void setup() {
+    _pool = new LargeMessageBufferPool(2L * numPartitions * messageSize, Long.MAX_VALUE, false,
+                                       preallocateMessageBuffers);
+    int numSegments = (messageSize + segmentSize - 1) / segmentSize;
+    byte[] payload = new byte[segmentSize];
+    _partitions = new TopicPartition[numPartitions];
+    _segments = new LargeMessageSegment[numPartitions][numSegments];
+    for (int p = 0; p < numPartitions; p++) {
+      _partitions[p] = new TopicPartition(TOPIC, p);
+      UUID messageId = UUID.randomUUID();
+      for (int seq = 0; seq < numSegments; seq++) {
+        int length = Math.min(segmentSize, messageSize - seq * segmentSize);
+        _segments[p][seq] = new LargeMessageSegment(messageId, seq, numSegments, messageSize,
+                                                    ByteBuffer.wrap(payload, 0, length).slice());
+      }
+    }
+    _offset = 0;
+  }
+
+  @Benchmark
+  public void tryCompleteMessage(Blackhole blackhole) {
+    int numSegments = _segments[0].length;
+    for (int seq = 0; seq < numSegments; seq++) {
+      for (int p = 0; p < numPartitions; p++) {
+        blackhole.consume(_pool.tryCompleteMessage(_partitions[p], _offset, _segments[p][seq]));
+      }
+      _offset++;
+    }
+  }
+}
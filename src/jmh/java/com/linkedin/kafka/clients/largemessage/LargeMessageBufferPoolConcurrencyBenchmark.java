@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Multi-threaded benchmark of {@link LargeMessageBufferPool#tryCompleteMessage(TopicPartition, long, LargeMessageSegment)}.
+ * Every thread reassembles large messages of its own partition in one shared pool, which is how the pool is used when
+ * the records are processed by partition on multiple threads. The throughput should scale with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LargeMessageBufferPoolConcurrencyBenchmark {
+  private static final String TOPIC = "benchmark";
+  private static final int MAX_THREADS = 8;
+
+  @Param({"100000", "1000000"})
+  public int messageSize;
+
+  @Param({"10000"})
+  public int segmentSize;
+
+  private LargeMessageBufferPool _pool;
+  private final AtomicInteger _nextPartition = new AtomicInteger(0);
+
+  @Setup
+  public void setup() {
+    _pool = new LargeMessageBufferPool(2L * MAX_THREADS * messageSize, Long.MAX_VALUE, false);
+  }
+
+  /**
+   * The partition and the segments of the message reassembled by one thread.
+   */
+  @State(Scope.Thread)
+  public static class PartitionState {
+    private TopicPartition _tp;
+    private LargeMessageSegment[] _segments;
+    private long _offset;
+
+    @Setup
+    public void setup(LargeMessageBufferPoolConcurrencyBenchmark benchmark) {
+      int messageSize = benchmark.messageSize;
+      int segmentSize = benchmark.segmentSize;
+      _tp = new TopicPartition(TOPIC, benchmark._nextPartition.getAndIncrement());
+      int numSegments = (messageSize + segmentSize - 1) / segmentSize;
+      byte[] payload = new byte[segmentSize];
+      UUID messageId = UUID.randomUUID();
+      _segments = new LargeMessageSegment[numSegments];
+      for (int seq = 0; seq < numSegments; seq++) {
+        int length = Math.min(segmentSize, messageSize - seq * segmentSize);
+        _segments[seq] = new LargeMessageSegment(messageId, seq, numSegments, messageSize,
+                                                 ByteBuffer.wrap(payload, 0, length).slice());
+      }
+      _offset = 0;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void tryCompleteMessage1Thread(PartitionState state, Blackhole blackhole) {
+    completeMessage(state, blackhole);
+  }
+
+  @Benchmark
+  @Threads(2)
+  public void tryCompleteMessage2Threads(PartitionState state, Blackhole blackhole) {
+    completeMessage(state, blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void tryCompleteMessage4Threads(PartitionState state, Blackhole blackhole) {
+    completeMessage(state, blackhole);
+  }
+
+  @Benchmark
+  @Threads(MAX_THREADS)
+  public void tryCompleteMessage8Threads(PartitionState state, Blackhole blackhole) {
+    completeMessage(state, blackhole);
+  }
+
+  private void completeMessage(PartitionState state, Blackhole blackhole) {
+    for (LargeMessageSegment segment : state._segments) {
+      blackhole.consume(_pool.tryCompleteMessage(state._tp, state._offset++, segment));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.record.CompressionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link MessageSplitterImpl#split(String, Integer, Long, UUID, byte[], byte[], int)} and
+ * {@link MessageSplitterImpl#splitAndSend}, which are on the hot path of
+ * {@link com.linkedin.kafka.clients.producer.LiKafkaProducerImpl#send}. The producer used by splitAndSend() discards
+ * the segments, so the allocation reported for it is the allocation of the splitter alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageSplitterBenchmark {
+  private static final String TOPIC = "benchmark";
+
+  @Param({"100", "10000", "1000000", "10000000", "50000000"})
+  public int messageSize;
+
+  @Param({"100000", "800000"})
+  public int segmentSize;
+
+  private MessageSplitterImpl _splitter;
+  private Producer<byte[], byte[]> _producer;
+  private Callback _callback;
+  private UUID _messageId;
+  private byte[] _serializedRecord;
+
+  @Setup
+  public void setup() {
+    // The discarding producer keeps no record, like a LiKafkaProducer without interceptors.
+    _splitter = new MessageSplitterImpl(segmentSize, new DefaultSegmentSerializer(), null, CompressionType.NONE, true);
+    _producer = new DiscardingProducer();
+    _callback = (metadata, e) -> { };
+    _messageId = UUID.randomUUID();
+    _serializedRecord = new byte[messageSize];
+    new Random(0).nextBytes(_serializedRecord);
+  }
+
+  @Benchmark
+  public List<ProducerRecord<byte[], byte[]>> split() {
+    return _splitter.split(TOPIC, null, 0L, _messageId, null, _serializedRecord, segmentSize);
+  }
+
+  @Benchmark
+  public Future<RecordMetadata> splitAndSend() {
+    return _splitter.splitAndSend(_producer, TOPIC, null, 0L, _messageId, null, _serializedRecord, _callback);
+  }
+
+  /**
+   * A producer that acknowledges every record immediately without keeping it.
+   */
+  private static class DiscardingProducer implements Producer<byte[], byte[]> {
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record) {
+      return send(record, null);
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+      if (callback != null) {
+        callback.onCompletion(null, null);
+      }
+      return null;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void close(long timeout, TimeUnit unit) {
+    }
+  }
+}
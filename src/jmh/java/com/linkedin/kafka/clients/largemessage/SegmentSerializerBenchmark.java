@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DefaultSegmentSerializer#serialize(String, LargeMessageSegment)} and
+ * {@link DefaultSegmentDeserializer#deserialize(String, byte[])}. A segment of a single-segment message is passed
+ * through without a header, so both the pass-through and the header path are covered by {@link #numberOfSegments}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SegmentSerializerBenchmark {
+  private static final String TOPIC = "benchmark";
+
+  @Param({"100", "10000", "100000", "800000"})
+  public int segmentSize;
+
+  @Param({"1", "2"})
+  public int numberOfSegments;
+
+  private DefaultSegmentSerializer _serializer;
+  private DefaultSegmentDeserializer _deserializer;
+  private LargeMessageSegment _segment;
+  private byte[] _serializedSegment;
+
+  @Setup
+  public void setup() {
+    _serializer = new DefaultSegmentSerializer();
+    _deserializer = new DefaultSegmentDeserializer();
+    byte[] payload = new byte[segmentSize];
+    new Random(0).nextBytes(payload);
+    _segment = new LargeMessageSegment(UUID.randomUUID(), 0, numberOfSegments, segmentSize * numberOfSegments,
+                                       ByteBuffer.wrap(payload));
+    _serializedSegment = _serializer.serialize(TOPIC, _segment);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return _serializer.serialize(TOPIC, _segment);
+  }
+
+  @Benchmark
+  public LargeMessageSegment deserialize() {
+    return _deserializer.deserialize(TOPIC, _serializedSegment);
+  }
+}
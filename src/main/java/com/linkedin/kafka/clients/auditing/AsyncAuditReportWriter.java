@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the serialized audit reports to an {@link AuditReportSink} on a dedicated daemon thread.
+ *
+ * The reports are handed over through a bounded queue. {@link #offer(ByteBuffer)} never blocks: when the queue is
+ * full because the sink is slow or unavailable, the report is dropped and counted in {@link #droppedReports()}, so
+ * the auditor is never held up by reporting.
+ *
+ * This class is thread safe.
+ */
+public class AsyncAuditReportWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAuditReportWriter.class);
+  private static final long POLL_INTERVAL_MS = 100L;
+
+  private final AuditReportSink _sink;
+  private final BlockingQueue<ByteBuffer> _queue;
+  private final Thread _writerThread;
+  private final AtomicLong _droppedReports;
+  private final AtomicLong _failedReports;
+  private volatile long _writtenReports;
+  private volatile boolean _closed;
+
+  /**
+   * Construct the writer and start its writer thread.
+   *
+   * @param sink the configured sink to write the reports to. The sink is closed by the writer thread when the writer
+   *             is closed.
+   * @param queueCapacity the maximum number of reports waiting to be written.
+   * @param threadName the name of the writer thread.
+   */
+  public AsyncAuditReportWriter(AuditReportSink sink, int queueCapacity, String threadName) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("The queue capacity must be at least 1, but it is " + queueCapacity);
+    }
+    _sink = sink;
+    _queue = new ArrayBlockingQueue<>(queueCapacity);
+    _droppedReports = new AtomicLong(0);
+    _failedReports = new AtomicLong(0);
+    _writtenReports = 0;
+    _closed = false;
+    _writerThread = new Thread(this::writeReports, threadName);
+    _writerThread.setDaemon(true);
+    _writerThread.start();
+  }
+
+  /**
+   * Hand a report over to the writer thread without blocking.
+   *
+   * @param report the serialized report.
+   * @return true if the report was queued, false if it was dropped because the queue is full or the writer is closed.
+   */
+  public boolean offer(ByteBuffer report) {
+    if (!_closed && _queue.offer(report)) {
+      return true;
+    }
+    long dropped = _droppedReports.incrementAndGet();
+    if (Long.bitCount(dropped) == 1) {
+      LOG.warn("Dropped {} audit reports in total because the audit report queue is full or closed.", dropped);
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of reports dropped because the queue was full or the writer was closed.
+   */
+  public long droppedReports() {
+    return _droppedReports.get();
+  }
+
+  /**
+   * @return the number of reports the sink failed to write.
+   */
+  public long failedReports() {
+    return _failedReports.get();
+  }
+
+  /**
+   * @return the number of reports written to the sink.
+   */
+  public long writtenReports() {
+    return _writtenReports;
+  }
+
+  /**
+   * Stop accepting reports, write the reports already queued and close the sink.
+   *
+   * @param timeout the maximum time to wait for the queued reports to be written.
+   * @param unit the time unit of the timeout.
+   */
+  public void close(long timeout, TimeUnit unit) {
+    _closed = true;
+    try {
+      _writerThread.join(unit.toMillis(timeout));
+    } catch (InterruptedException e) {
+      LOG.warn("Audit report writer closure interrupted");
+    }
+    if (_writerThread.isAlive()) {
+      LOG.warn("{} audit reports were not written in {} {} on closure.", _queue.size(), timeout, unit);
+      _writerThread.interrupt();
+    }
+  }
+
+  private void writeReports() {
+    try {
+      while (true) {
+        ByteBuffer report = _queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (report == null) {
+          if (_closed) {
+            break;
+          }
+          continue;
+        }
+        try {
+          _sink.write(report);
+          _writtenReports++;
+        } catch (Exception e) {
+          _failedReports.incrementAndGet();
+          LOG.warn("Failed to write audit report.", e);
+        }
+      }
+    } catch (InterruptedException e) {
+      LOG.warn("Audit report writer interrupted with {} reports not written.", _queue.size());
+    } finally {
+      _sink.close();
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditKey;
+import com.linkedin.kafka.clients.auditing.abstractimpl.CountingAuditStats;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of audit buckets in a columnar layout.
+ *
+ * Each row of the report is the message count and bytes count of one {@link AuditKey}. The topics and the audit types
+ * are dictionary encoded, so each distinct name is only serialized once per report. The serialized format is:
+ * <pre>
+ *   version: byte
+ *   bucketMs: long
+ *   numTopics: int, followed by each topic as (length: short, UTF-8 bytes)
+ *   numAuditTypes: short, followed by each audit type name as (length: short, UTF-8 bytes)
+ *   numRows: int
+ *   topic index column: int[numRows]
+ *   bucket column: long[numRows]
+ *   audit type index column: short[numRows]
+ *   message count column: long[numRows]
+ *   bytes count column: long[numRows]
+ * </pre>
+ */
+public final class AuditReport {
+  static final byte VERSION = 0;
+
+  private final long _bucketMs;
+  private final String[] _topics;
+  private final String[] _auditTypes;
+  private final int _numRows;
+  private final int[] _topicIndexes;
+  private final long[] _buckets;
+  private final short[] _auditTypeIndexes;
+  private final long[] _messageCounts;
+  private final long[] _bytesCounts;
+
+  private AuditReport(long bucketMs,
+                      String[] topics,
+                      String[] auditTypes,
+                      int numRows,
+                      int[] topicIndexes,
+                      long[] buckets,
+                      short[] auditTypeIndexes,
+                      long[] messageCounts,
+                      long[] bytesCounts) {
+    _bucketMs = bucketMs;
+    _topics = topics;
+    _auditTypes = auditTypes;
+    _numRows = numRows;
+    _topicIndexes = topicIndexes;
+    _buckets = buckets;
+    _auditTypeIndexes = auditTypeIndexes;
+    _messageCounts = messageCounts;
+    _bytesCounts = bytesCounts;
+  }
+
+  /**
+   * Convert the audit stats to reports of at most the given number of rows each.
+   *
+   * @param stats the audit stats keyed by {@link AuditKey}. The stats should have been closed.
+   * @param maxRowsPerReport the maximum number of rows in each report.
+   * @return the reports of the stats, empty if there is nothing in the stats.
+   */
+  public static List<AuditReport> fromStats(CountingAuditStats stats, int maxRowsPerReport) {
+    if (maxRowsPerReport < 1) {
+      throw new IllegalArgumentException("The maximum rows per report must be at least 1, but it is " + maxRowsPerReport);
+    }
+    Map<Object, CountingAuditStats.AuditInfo> statsMap = stats.stats();
+    if (statsMap.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<AuditReport> reports = new ArrayList<>();
+    Builder builder = new Builder(stats.bucketMs(), Math.min(maxRowsPerReport, statsMap.size()));
+    for (Map.Entry<Object, CountingAuditStats.AuditInfo> entry : statsMap.entrySet()) {
+      if (builder.isFull()) {
+        reports.add(builder.build());
+        int remainingRows = statsMap.size() - reports.size() * maxRowsPerReport;
+        builder = new Builder(stats.bucketMs(), Math.max(1, Math.min(maxRowsPerReport, remainingRows)));
+      }
+      builder.add((AuditKey) entry.getKey(), entry.getValue().messageCount(), entry.getValue().bytesCount());
+    }
+    reports.add(builder.build());
+    return reports;
+  }
+
+  /**
+   * Deserialize a report serialized by {@link #toByteBuffer()}.
+   *
+   * @param buffer the buffer positioned at the beginning of the report. The position is advanced to the end of it.
+   * @return the deserialized report.
+   */
+  public static AuditReport fromByteBuffer(ByteBuffer buffer) {
+    byte version = buffer.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unknown audit report version " + version);
+    }
+    long bucketMs = buffer.getLong();
+    String[] topics = new String[buffer.getInt()];
+    for (int i = 0; i < topics.length; i++) {
+      topics[i] = readString(buffer);
+    }
+    String[] auditTypes = new String[buffer.getShort()];
+    for (int i = 0; i < auditTypes.length; i++) {
+      auditTypes[i] = readString(buffer);
+    }
+    int numRows = buffer.getInt();
+    int[] topicIndexes = new int[numRows];
+    long[] buckets = new long[numRows];
+    short[] auditTypeIndexes = new short[numRows];
+    long[] messageCounts = new long[numRows];
+    long[] bytesCounts = new long[numRows];
+    buffer.asIntBuffer().get(topicIndexes);
+    buffer.position(buffer.position() + numRows * Integer.BYTES);
+    buffer.asLongBuffer().get(buckets);
+    buffer.position(buffer.position() + numRows * Long.BYTES);
+    buffer.asShortBuffer().get(auditTypeIndexes);
+    buffer.position(buffer.position() + numRows * Short.BYTES);
+    buffer.asLongBuffer().get(messageCounts);
+    buffer.position(buffer.position() + numRows * Long.BYTES);
+    buffer.asLongBuffer().get(bytesCounts);
+    buffer.position(buffer.position() + numRows * Long.BYTES);
+    return new AuditReport(bucketMs, topics, auditTypes, numRows, topicIndexes, buckets, auditTypeIndexes,
+                           messageCounts, bytesCounts);
+  }
+
+  /**
+   * @return the report serialized into a new heap buffer, ready to be read.
+   */
+  public ByteBuffer toByteBuffer() {
+    byte[][] topicBytes = encode(_topics);
+    byte[][] auditTypeBytes = encode(_auditTypes);
+    int size = Byte.BYTES + Long.BYTES + Integer.BYTES + encodedSize(topicBytes) + Short.BYTES + encodedSize(auditTypeBytes)
+        + Integer.BYTES + _numRows * (Integer.BYTES + Long.BYTES + Short.BYTES + Long.BYTES + Long.BYTES);
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.put(VERSION);
+    buffer.putLong(_bucketMs);
+    buffer.putInt(topicBytes.length);
+    writeStrings(buffer, topicBytes);
+    buffer.putShort((short) auditTypeBytes.length);
+    writeStrings(buffer, auditTypeBytes);
+    buffer.putInt(_numRows);
+    buffer.asIntBuffer().put(_topicIndexes, 0, _numRows);
+    buffer.position(buffer.position() + _numRows * Integer.BYTES);
+    buffer.asLongBuffer().put(_buckets, 0, _numRows);
+    buffer.position(buffer.position() + _numRows * Long.BYTES);
+    buffer.asShortBuffer().put(_auditTypeIndexes, 0, _numRows);
+    buffer.position(buffer.position() + _numRows * Short.BYTES);
+    buffer.asLongBuffer().put(_messageCounts, 0, _numRows);
+    buffer.position(buffer.position() + _numRows * Long.BYTES);
+    buffer.asLongBuffer().put(_bytesCounts, 0, _numRows);
+    buffer.position(buffer.position() + _numRows * Long.BYTES);
+    buffer.flip();
+    return buffer;
+  }
+
+  public long bucketMs() {
+    return _bucketMs;
+  }
+
+  public int numRows() {
+    return _numRows;
+  }
+
+  public String topic(int row) {
+    return _topics[_topicIndexes[row]];
+  }
+
+  public long bucket(int row) {
+    return _buckets[row];
+  }
+
+  public String auditType(int row) {
+    return _auditTypes[_auditTypeIndexes[row]];
+  }
+
+  public long messageCount(int row) {
+    return _messageCounts[row];
+  }
+
+  public long bytesCount(int row) {
+    return _bytesCounts[row];
+  }
+
+  private static byte[][] encode(String[] strings) {
+    byte[][] encoded = new byte[strings.length][];
+    for (int i = 0; i < strings.length; i++) {
+      encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+      if (encoded[i].length > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("The name " + strings[i] + " is too long to be audited.");
+      }
+    }
+    return encoded;
+  }
+
+  private static int encodedSize(byte[][] encoded) {
+    int size = 0;
+    for (byte[] bytes : encoded) {
+      size += Short.BYTES + bytes.length;
+    }
+    return size;
+  }
+
+  private static void writeStrings(ByteBuffer buffer, byte[][] encoded) {
+    for (byte[] bytes : encoded) {
+      buffer.putShort((short) bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Accumulates the rows of one report and builds the dictionaries of the topics and audit types in it.
+   */
+  private static final class Builder {
+    private final long _bucketMs;
+    private final Map<String, Integer> _topicIndexes = new HashMap<>();
+    private final Map<String, Short> _auditTypeIndexes = new HashMap<>();
+    private final int[] _topicIndexColumn;
+    private final long[] _bucketColumn;
+    private final short[] _auditTypeIndexColumn;
+    private final long[] _messageCountColumn;
+    private final long[] _bytesCountColumn;
+    private int _numRows = 0;
+
+    Builder(long bucketMs, int maxRows) {
+      _bucketMs = bucketMs;
+      _topicIndexColumn = new int[maxRows];
+      _bucketColumn = new long[maxRows];
+      _auditTypeIndexColumn = new short[maxRows];
+      _messageCountColumn = new long[maxRows];
+      _bytesCountColumn = new long[maxRows];
+    }
+
+    boolean isFull() {
+      return _numRows == _topicIndexColumn.length;
+    }
+
+    void add(AuditKey auditKey, long messageCount, long bytesCount) {
+      String auditType = auditKey.auditType().name();
+      Short auditTypeIndex = _auditTypeIndexes.get(auditType);
+      if (auditTypeIndex == null) {
+        if (_auditTypeIndexes.size() == Short.MAX_VALUE) {
+          throw new IllegalStateException("Too many audit types in one audit report.");
+        }
+        auditTypeIndex = (short) _auditTypeIndexes.size();
+        _auditTypeIndexes.put(auditType, auditTypeIndex);
+      }
+      _topicIndexColumn[_numRows] = _topicIndexes.computeIfAbsent(auditKey.topic(), t -> _topicIndexes.size());
+      _bucketColumn[_numRows] = auditKey.bucket();
+      _auditTypeIndexColumn[_numRows] = auditTypeIndex;
+      _messageCountColumn[_numRows] = messageCount;
+      _bytesCountColumn[_numRows] = bytesCount;
+      _numRows++;
+    }
+
+    AuditReport build() {
+      return new AuditReport(_bucketMs, dictionary(_topicIndexes), dictionary(_auditTypeIndexes), _numRows,
+                             _topicIndexColumn, _bucketColumn, _auditTypeIndexColumn, _messageCountColumn,
+                             _bytesCountColumn);
+    }
+
+    private static String[] dictionary(Map<String, ? extends Number> indexes) {
+      String[] dictionary = new String[indexes.size()];
+      for (Map.Entry<String, ? extends Number> entry : indexes.entrySet()) {
+        dictionary[entry.getValue().intValue()] = entry.getKey();
+      }
+      return dictionary;
+    }
+  }
+}
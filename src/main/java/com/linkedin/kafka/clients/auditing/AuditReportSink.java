@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import org.apache.kafka.common.Configurable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The destination of the serialized {@link AuditReport}s of a {@link ReportingAuditor}.
+ *
+ * The sink is only called by the writer thread of an {@link AsyncAuditReportWriter}, so the implementations do not
+ * need to be thread safe and may block without blocking the auditor or the recording threads.
+ */
+public interface AuditReportSink extends Configurable {
+
+  /**
+   * Write a serialized audit report.
+   *
+   * @param report the report serialized by {@link AuditReport#toByteBuffer()}. The sink may not keep a reference to
+   *               the buffer after this method returns.
+   * @throws IOException if the report could not be written.
+   */
+  void write(ByteBuffer report) throws IOException;
+
+  /**
+   * Close the sink. This is called by the writer thread after the last report has been written.
+   */
+  void close();
+}
@@ -57,6 +57,32 @@ public interface Auditor<K, V> extends Configurable {
               Long bytesCount,
               AuditType auditType);
 
+  /**
+   * Record the given event in the monitoring statistics with primitive timestamp and counts. This method is called by
+   * LiKafkaProducerImpl and LiKafkaConsumerImpl on the hot path for each record, so the implementations are encouraged
+   * to override it to avoid boxing the arguments. By default it calls
+   * {@link #record(String, Object, Object, Long, Long, Long, AuditType)}.
+   *
+   * This method may be called from multiple threads, so the implementation must be thread safe.
+   *
+   * @param topic The topic of the event.
+   * @param key The key of the event.
+   * @param value The value of the event.
+   * @param timestamp The timestamp of the event.
+   * @param messageCount The number of messages to record.
+   * @param bytesCount The number of bytes to record.
+   * @param auditType The type of the event to audit.
+   */
+  default void recordPrimitive(String topic,
+                               K key,
+                               V value,
+                               long timestamp,
+                               long messageCount,
+                               long bytesCount,
+                               AuditType auditType) {
+    record(topic, key, value, timestamp, messageCount, bytesCount, auditType);
+  }
+
   /**
    * Close the auditor with timeout.
    * This method will be called when producer is closed with a timeout.
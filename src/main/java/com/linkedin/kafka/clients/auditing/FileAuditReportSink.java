@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import org.apache.kafka.common.KafkaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * An {@link AuditReportSink} that appends the audit reports to a local file. Each report is prefixed with its size as
+ * a 4 byte int, so the file can be read back with {@link AuditReport#fromByteBuffer(ByteBuffer)}.
+ */
+public class FileAuditReportSink implements AuditReportSink {
+  private static final Logger LOG = LoggerFactory.getLogger(FileAuditReportSink.class);
+
+  public static final String REPORT_FILE = "auditor.report.file";
+
+  private final ByteBuffer _sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+  private FileChannel _channel;
+
+  @Override
+  public void configure(Map<String, ?> configs) {
+    String file = (String) configs.get(REPORT_FILE);
+    if (file == null) {
+      throw new IllegalArgumentException(REPORT_FILE + " must be set to use " + FileAuditReportSink.class.getSimpleName());
+    }
+    try {
+      _channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                  StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new KafkaException("Failed to open the audit report file " + file, e);
+    }
+  }
+
+  @Override
+  public void write(ByteBuffer report) throws IOException {
+    _sizeBuffer.clear();
+    _sizeBuffer.putInt(report.remaining());
+    _sizeBuffer.flip();
+    ByteBuffer[] buffers = {_sizeBuffer, report};
+    while (report.hasRemaining()) {
+      _channel.write(buffers);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close the audit report file.", e);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.producer.LiKafkaProducerConfig;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * An {@link AuditReportSink} that sends each audit report as a message to a Kafka topic.
+ *
+ * The reports are sent with the vanilla producer that LiKafkaProducer passes to its auditor as
+ * {@link LiKafkaProducerConfig#CURRENT_PRODUCER}, so no extra producer is created. The producer is shared, so it is not
+ * closed by this sink. The sends are asynchronous, a failed send is logged.
+ */
+public class KafkaAuditReportSink implements AuditReportSink {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaAuditReportSink.class);
+
+  public static final String REPORT_TOPIC = "auditor.report.topic";
+
+  private String _topic;
+  private Producer<byte[], byte[]> _producer;
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void configure(Map<String, ?> configs) {
+    _topic = (String) configs.get(REPORT_TOPIC);
+    if (_topic == null) {
+      throw new IllegalArgumentException(REPORT_TOPIC + " must be set to use " + KafkaAuditReportSink.class.getSimpleName());
+    }
+    _producer = (Producer<byte[], byte[]>) configs.get(LiKafkaProducerConfig.CURRENT_PRODUCER);
+    if (_producer == null) {
+      throw new IllegalArgumentException(KafkaAuditReportSink.class.getSimpleName() + " can only be used by the auditor "
+                                             + "of a LiKafkaProducer because it needs " + LiKafkaProducerConfig.CURRENT_PRODUCER);
+    }
+  }
+
+  @Override
+  public void write(ByteBuffer report) {
+    _producer.send(new ProducerRecord<>(_topic, Utils.toArray(report)), (metadata, e) -> {
+      if (e != null) {
+        LOG.warn("Failed to send audit report to topic " + _topic, e);
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    // The producer is shared with the LiKafkaProducer and closed by it.
+  }
+}
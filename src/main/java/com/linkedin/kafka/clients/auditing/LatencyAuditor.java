@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AbstractAuditor;
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditStats;
+import com.linkedin.kafka.clients.auditing.abstractimpl.LatencyAuditStats;
+import com.linkedin.kafka.clients.auditing.abstractimpl.LatencyHistogram;
+import org.apache.kafka.common.utils.SystemTime;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * An auditor that logs the latency percentiles of each topic for every reporting interval.
+ *
+ * The latency of a message is the time from its timestamp to the time it is audited as {@link AuditType#SUCCESS}.
+ * For a LiKafkaProducer this is the time from send to acknowledgement, unless the user sets the timestamp of the
+ * records. For a LiKafkaConsumer this is the time from the producer timestamp of the message to its consumption, i.e.
+ * the end to end latency. The latencies are aggregated into a fixed size {@link LatencyHistogram} per topic, so the
+ * memory used does not grow with the message rate. The messages without a timestamp are not audited.
+ */
+public class LatencyAuditor<K, V> extends AbstractAuditor<K, V> {
+  private static final Logger AUDIT_LOG = LoggerFactory.getLogger(LatencyAuditor.class);
+
+  public static final String LATENCY_PERCENTILES = "auditor.latency.percentiles";
+  private static final String LATENCY_PERCENTILES_DEFAULT = "50,99,99.9";
+
+  private final Time _time;
+  private double[] _percentiles;
+
+  public LatencyAuditor() {
+    super();
+    _time = new SystemTime();
+  }
+
+  public LatencyAuditor(String name, Time time) {
+    super(name, time);
+    _time = time;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void configure(Map<String, ?> configs) {
+    super.configure(configs);
+    String[] percentiles =
+        ((String) ((Map<String, Object>) configs).getOrDefault(LATENCY_PERCENTILES, LATENCY_PERCENTILES_DEFAULT)).split(",");
+    _percentiles = new double[percentiles.length];
+    for (int i = 0; i < percentiles.length; i++) {
+      _percentiles[i] = Double.parseDouble(percentiles[i].trim());
+    }
+  }
+
+  public void printSummary(AuditStats auditStats) {
+    Map<Object, LatencyHistogram> histograms = ((LatencyAuditStats) auditStats).histograms();
+    for (Map.Entry<Object, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      StringBuilder summary = new StringBuilder();
+      summary.append(histogram.count()).append(" messages");
+      for (double percentile : _percentiles) {
+        summary.append(", p").append(percentile).append(" = ").append(histogram.valueAtPercentile(percentile)).append(" ms");
+      }
+      summary.append(", max = ").append(histogram.max()).append(" ms");
+      AUDIT_LOG.info("{} : {}", entry.getKey(), summary);
+    }
+  }
+
+  @Override
+  public void onTick(AuditStats lastStats) {
+    printSummary(lastStats);
+  }
+
+  @Override
+  public void onClosed(AuditStats currentStats, AuditStats nextStats) {
+    AUDIT_LOG.info("Logging latency stats on closure...");
+    printSummary(currentStats);
+    printSummary(nextStats);
+  }
+
+  @Override
+  protected LatencyAuditStats createAuditStats() {
+    return new LatencyAuditStats(_time);
+  }
+
+  @Override
+  protected Object getAuditKey(String topic,
+                               K key,
+                               V value,
+                               Long timestamp,
+                               Long messageCount,
+                               Long sizeInBytes,
+                               AuditType auditType) {
+    return timestamp != null ? auditKey(topic, timestamp, auditType) : null;
+  }
+
+  @Override
+  protected Object getAuditKeyPrimitive(String topic,
+                                        K key,
+                                        V value,
+                                        long timestamp,
+                                        long messageCount,
+                                        long sizeInBytes,
+                                        AuditType auditType) {
+    return auditKey(topic, timestamp, auditType);
+  }
+
+  private Object auditKey(String topic, long timestamp, AuditType auditType) {
+    // The latencies are aggregated by topic. A negative timestamp means the message does not have one.
+    return auditType == AuditType.SUCCESS && timestamp >= 0 ? topic : null;
+  }
+}
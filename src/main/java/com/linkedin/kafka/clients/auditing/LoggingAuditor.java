@@ -14,6 +14,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A simple auditor that logs the message count aggregated by time buckets.
@@ -25,6 +27,9 @@ public class LoggingAuditor<K, V> extends AbstractAuditor<K, V> {
   private static final String BUCKET_MS_DEFAULT = "600000";
 
   private long _bucketMs = -1L;
+  // The audit keys of the latest bucket of each topic and audit type. They are reused for the events in the same
+  // bucket so auditing an event does not allocate a new audit key.
+  private final ConcurrentMap<String, ConcurrentMap<AuditType, AuditKey>> _auditKeys = new ConcurrentHashMap<>();
 
   public LoggingAuditor() {
     super();
@@ -79,6 +84,30 @@ public class LoggingAuditor<K, V> extends AbstractAuditor<K, V> {
                                Long messageCount,
                                Long sizeInBytes,
                                AuditType auditType) {
-    return new AuditKey(topic, timestamp / _bucketMs, auditType);
+    return auditKey(topic, timestamp / _bucketMs, auditType);
+  }
+
+  @Override
+  protected Object getAuditKeyPrimitive(String topic,
+                                        K key,
+                                        V value,
+                                        long timestamp,
+                                        long messageCount,
+                                        long sizeInBytes,
+                                        AuditType auditType) {
+    return auditKey(topic, timestamp / _bucketMs, auditType);
+  }
+
+  private AuditKey auditKey(String topic, long bucket, AuditType auditType) {
+    ConcurrentMap<AuditType, AuditKey> auditKeysForTopic = _auditKeys.get(topic);
+    if (auditKeysForTopic == null) {
+      auditKeysForTopic = _auditKeys.computeIfAbsent(topic, t -> new ConcurrentHashMap<>());
+    }
+    AuditKey auditKey = auditKeysForTopic.get(auditType);
+    if (auditKey == null || auditKey.bucket() != bucket) {
+      auditKey = new AuditKey(topic, bucket, auditType);
+      auditKeysForTopic.put(auditType, auditKey);
+    }
+    return auditKey;
   }
 }
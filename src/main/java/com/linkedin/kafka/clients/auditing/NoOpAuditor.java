@@ -33,6 +33,17 @@ public class NoOpAuditor<K, V> implements Auditor<K, V> {
 
   }
 
+  @Override
+  public void recordPrimitive(String topic,
+                              K key,
+                              V value,
+                              long timestamp,
+                              long messageCount,
+                              long bytesCount,
+                              AuditType auditType) {
+
+  }
+
   @Override
   public void close(long timeout, TimeUnit unit) {
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditStats;
+import com.linkedin.kafka.clients.auditing.abstractimpl.CountingAuditStats;
+import org.apache.kafka.common.utils.Time;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An auditor that reports the aggregated message counts to an {@link AuditReportSink} instead of logging them.
+ *
+ * On each tick the audit buckets of the last reporting interval are serialized into columnar {@link AuditReport}s and
+ * handed to an {@link AsyncAuditReportWriter}, which writes them to the sink on its own thread. A slow sink therefore
+ * delays neither the ticks nor the recording threads. When the writer falls behind by more than
+ * auditor.report.queue.capacity reports, the new reports are dropped.
+ * <p>
+ * The sink is configured with auditor.report.sink.class and receives the same configurations as the auditor. Two sinks
+ * are provided: {@link FileAuditReportSink} and {@link KafkaAuditReportSink}.
+ */
+public class ReportingAuditor<K, V> extends LoggingAuditor<K, V> {
+  public static final String REPORT_SINK_CLASS = "auditor.report.sink.class";
+  public static final String REPORT_QUEUE_CAPACITY = "auditor.report.queue.capacity";
+  public static final String REPORT_MAX_ROWS = "auditor.report.max.rows";
+  private static final String REPORT_QUEUE_CAPACITY_DEFAULT = "16";
+  private static final String REPORT_MAX_ROWS_DEFAULT = "10000";
+
+  private int _maxRowsPerReport;
+  private AsyncAuditReportWriter _writer;
+
+  public ReportingAuditor() {
+    super();
+  }
+
+  public ReportingAuditor(String name, Time time) {
+    super(name, time);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void configure(Map<String, ?> configs) {
+    super.configure(configs);
+    Map<String, Object> reportingConfigs = (Map<String, Object>) configs;
+    String sinkClass = (String) reportingConfigs.get(REPORT_SINK_CLASS);
+    if (sinkClass == null) {
+      throw new IllegalArgumentException(REPORT_SINK_CLASS + " must be set to use " + ReportingAuditor.class.getSimpleName());
+    }
+    int queueCapacity = Integer.parseInt((String) reportingConfigs.getOrDefault(REPORT_QUEUE_CAPACITY, REPORT_QUEUE_CAPACITY_DEFAULT));
+    _maxRowsPerReport = Integer.parseInt((String) reportingConfigs.getOrDefault(REPORT_MAX_ROWS, REPORT_MAX_ROWS_DEFAULT));
+    AuditReportSink sink;
+    try {
+      sink = Utils.newInstance(sinkClass, AuditReportSink.class);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Cannot find the audit report sink class " + sinkClass, e);
+    }
+    sink.configure(configs);
+    _writer = new AsyncAuditReportWriter(sink, queueCapacity, "likafka-audit-report-writer");
+  }
+
+  @Override
+  public void onTick(AuditStats lastStats) {
+    report(lastStats);
+  }
+
+  @Override
+  public void onClosed(AuditStats currentStats, AuditStats nextStats) {
+    report(currentStats);
+    report(nextStats);
+  }
+
+  @Override
+  public void close(long timeout, TimeUnit unit) {
+    // The auditor reports the remaining stats on closure, so only close the writer after that.
+    super.close(timeout, unit);
+    _writer.close(timeout, unit);
+  }
+
+  /**
+   * @return the writer of the audit reports.
+   */
+  public AsyncAuditReportWriter writer() {
+    return _writer;
+  }
+
+  private void report(AuditStats stats) {
+    for (AuditReport report : AuditReport.fromStats((CountingAuditStats) stats, _maxRowsPerReport)) {
+      _writer.offer(report.toByteBuffer());
+    }
+  }
+}
@@ -13,7 +13,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * An abstract Auditor that helps deal with tricky concurrency problems.
@@ -27,12 +31,25 @@ import java.util.concurrent.TimeUnit;
  * The {@link CountingAuditStats} aggregates the records that have been audited into different buckets.
  * At the end of each reporting interval, the abstract auditor would tick to roll out a new {@link AuditStats} and close
  * the old audit stats. The old audit stats will then be passed to the user through {@link #onTick} method.
+ * <p>
+ * The recording threads never block or fail because of a tick. Each {@link AuditStats} is wrapped in an epoch that
+ * counts the recording threads using it. A tick retires the epoch of the old audit stats so no new recording thread
+ * enters it, then waits without spinning until the recording threads already in it leave, and only then closes the
+ * old audit stats. A recording thread that picked an epoch right before it was retired simply records to the new
+ * audit stats instead.
  *
  * <p>
  * If auto.tick is set to false, the auditing thread would be disabled. In that case, user needs to call tick
  * manually to roll out new AuditStats.
  *
  * <p>
+ * By default each auditor ticks on its own auditing thread. If enable.shared.tick.scheduler is set to true, the
+ * auditor does not start its own thread. Instead, the ticks of all such auditors in the JVM are driven by a single
+ * shared daemon thread, so a process with many LiKafka clients does not run one sleeping thread per client. The shared
+ * thread exits when no auditor is using it. In this mode {@link #onClosed(AuditStats, AuditStats)} is called by the
+ * thread closing the auditor.
+ *
+ * <p>
  * Ideally, the timestamp of the audited records should always fall in the current reporting interval. But due to some
  * lag, it is possible that some audited records has an earlier timestamp that falls in the previous reporting interval.
  * Although this won't impact the auditing results, the abstract auditor allows user to specify a reporting.delay.ms to
@@ -46,6 +63,9 @@ import java.util.concurrent.TimeUnit;
  *   {@link #createAuditStats()}
  *   {@link #getAuditKey(String, Object, Object, Long, Long, Long, com.linkedin.kafka.clients.auditing.AuditType)}
  * </pre>
+ * and may override
+ * {@link #getAuditKeyPrimitive(String, Object, Object, long, long, long, com.linkedin.kafka.clients.auditing.AuditType)}
+ * to avoid boxing and allocating on the recording path of {@link #recordPrimitive}.
  *
  * <p>
  * For users who wants to have customized configurations, they may override the method:
@@ -62,24 +82,30 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
   public static final String REPORTING_INTERVAL_MS = "auditor.reporting.interval.ms";
   public static final String REPORTING_DELAY_MS = "auditor.reporting.delay.ms";
   public static final String ENABLE_AUTO_TICK = "enable.auto.tick";
+  public static final String ENABLE_SHARED_TICK_SCHEDULER = "enable.shared.tick.scheduler";
 
   // Config default values
   private static final String REPORTING_INTERVAL_MS_DEFAULT = "600000";
   private static final String REPORTING_DELAY_MS_DEFAULT = "60000";
   private static final String AUTO_TICK_DEFAULT = "true";
+  private static final String SHARED_TICK_SCHEDULER_DEFAULT = "false";
 
   // The timer that facilitates unit test.
-  private static Time _time;
+  private final Time _time;
 
   // The logging delay in millisecond.
-  private static long _reportingIntervalMs;
+  private long _reportingIntervalMs;
   // The reporting delay in millisecond. This is to tolerate some of the late arrivals.
-  private static long _reportingDelayMs;
+  private long _reportingDelayMs;
   // Whether disable the auditing thread.
-  private static boolean _enableAutoTick;
+  private boolean _enableAutoTick;
+  // Whether the ticks are driven by the shared tick scheduler instead of the auditing thread.
+  private boolean _useSharedTickScheduler;
+  // The next tick scheduled on the shared tick scheduler.
+  private ScheduledFuture<?> _scheduledTick;
 
-  private volatile AuditStats _currentStats;
-  private volatile AuditStats _nextStats;
+  private volatile StatsEpoch _currentEpoch;
+  private volatile StatsEpoch _nextEpoch;
   private volatile long _nextTick;
   private volatile long _ticks;
 
@@ -117,6 +143,8 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
     _reportingIntervalMs = Long.parseLong((String) ((Map<String, Object>) configs).getOrDefault(REPORTING_INTERVAL_MS, REPORTING_INTERVAL_MS_DEFAULT));
     _reportingDelayMs = Long.parseLong((String) ((Map<String, Object>) configs).getOrDefault(REPORTING_DELAY_MS, REPORTING_DELAY_MS_DEFAULT));
     _enableAutoTick = Boolean.parseBoolean((String) ((Map<String, Object>) configs).getOrDefault(ENABLE_AUTO_TICK, AUTO_TICK_DEFAULT));
+    _useSharedTickScheduler = Boolean.parseBoolean(
+        (String) ((Map<String, Object>) configs).getOrDefault(ENABLE_SHARED_TICK_SCHEDULER, SHARED_TICK_SCHEDULER_DEFAULT));
     _nextTick = _enableAutoTick ?
         (_time.milliseconds() / _reportingIntervalMs) * _reportingIntervalMs + _reportingIntervalMs : Long.MAX_VALUE;
     _ticks = 0;
@@ -145,10 +173,7 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
           }
         }
       } finally {
-        _currentStats.close();
-        _nextStats.close();
-        _shutdown = true;
-        onClosed(_currentStats, _nextStats);
+        closeStats();
       }
     } else {
       LOG.info("Auto auditing is set to false. Automatic ticking is disabled.");
@@ -156,19 +181,54 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
   }
 
 
+  /**
+   * Tick on the shared tick scheduler if the reporting interval has passed, and schedule the next check.
+   */
+  private synchronized void tickOnSharedScheduler() {
+    if (_shutdown) {
+      return;
+    }
+    try {
+      if (_time.milliseconds() >= _nextTick + _reportingDelayMs) {
+        tick();
+      }
+    } catch (Exception e) {
+      // We catch all the exceptions from the user's onTick() call but not exit.
+      LOG.error("Auditor encounter exception.", e);
+    }
+    scheduleTick();
+  }
+
+  private void scheduleTick() {
+    long delayMs = Math.max(0, _nextTick + _reportingDelayMs - _time.milliseconds());
+    _scheduledTick = SharedTickScheduler.INSTANCE.schedule(this::tickOnSharedScheduler, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Close the audit stats once no recording thread is using them and pass them to the user.
+   */
+  private void closeStats() {
+    _shutdown = true;
+    _currentEpoch.retire();
+    _nextEpoch.retire();
+    _currentEpoch.stats().close();
+    _nextEpoch.stats().close();
+    onClosed(_currentEpoch.stats(), _nextEpoch.stats());
+  }
+
   // protected methods
   /**
    * Get the current audit stats.
    */
   protected AuditStats currentStats() {
-    return _currentStats;
+    return _currentEpoch.stats();
   }
 
   /**
    * Get the next audit stats.
    */
   protected AuditStats nextStats() {
-    return _nextStats;
+    return _nextEpoch.stats();
   }
 
   /**
@@ -191,16 +251,18 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
   protected AuditStats tickAndGetStats() {
     // We only allow one thread to tick.
     synchronized (this) {
-      AuditStats prevStats = _currentStats;
-      _currentStats = _nextStats;
+      StatsEpoch prevEpoch = _currentEpoch;
+      _currentEpoch = _nextEpoch;
       // Only update next tick if reporting interval is non-negative.
       if (_reportingIntervalMs >= 0) {
         _nextTick += _reportingIntervalMs;
       }
-      _nextStats = createAuditStats();
+      _nextEpoch = new StatsEpoch(createAuditStats());
       _ticks++;
-      prevStats.close();
-      return prevStats;
+      // Wait for the recording threads still using the previous stats before closing it.
+      prevEpoch.retire();
+      prevEpoch.stats().close();
+      return prevEpoch.stats();
     }
   }
 
@@ -260,12 +322,40 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
                                         Long bytesCount,
                                         AuditType auditType);
 
+  /**
+   * Get the audit key of an event recorded by
+   * {@link #recordPrimitive(String, Object, Object, long, long, long, AuditType)}. By default it calls
+   * {@link #getAuditKey(String, Object, Object, Long, Long, Long, AuditType)}, the subclasses may override it to
+   * look up the audit key without boxing the arguments, e.g. by reusing the audit keys of the current bucket.
+   *
+   * @return An object that can be served as an key in a {@link java.util.HashMap}. Returning null means skipping the
+   * auditing.
+   */
+  protected Object getAuditKeyPrimitive(String topic,
+                                        K key,
+                                        V value,
+                                        long timestamp,
+                                        long messageCount,
+                                        long bytesCount,
+                                        AuditType auditType) {
+    return getAuditKey(topic, key, value, timestamp, messageCount, bytesCount, auditType);
+  }
+
   @Override
   public void start() {
     // Initialize the stats before starting auditor.
-    _currentStats = createAuditStats();
-    _nextStats = createAuditStats();
-    super.start();
+    _currentEpoch = new StatsEpoch(createAuditStats());
+    _nextEpoch = new StatsEpoch(createAuditStats());
+    if (!_useSharedTickScheduler) {
+      super.start();
+    } else if (_enableAutoTick) {
+      LOG.info("Starting auditor on the shared tick scheduler...");
+      synchronized (this) {
+        scheduleTick();
+      }
+    } else {
+      LOG.info("Auto auditing is set to false. Automatic ticking is disabled.");
+    }
   }
 
   @Override
@@ -276,24 +366,60 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
                      Long messageCount,
                      Long bytesCount,
                      AuditType auditType) {
-    boolean done = false;
-    do {
-      try {
-        AuditStats auditStats = timestamp == null || timestamp >= _nextTick ? _nextStats : _currentStats;
-        Object auditKey = getAuditKey(topic, key, value, timestamp, messageCount, bytesCount, auditType);
-        if (auditKey != null) {
-          auditStats.update(auditKey, messageCount, bytesCount);
+    Object auditKey = getAuditKey(topic, key, value, timestamp, messageCount, bytesCount, auditType);
+    if (auditKey != null) {
+      // An event without timestamp goes to the next stats.
+      recordToStats(timestamp == null ? AuditStats.NO_TIMESTAMP : timestamp, auditKey, messageCount, bytesCount);
+    }
+  }
+
+  @Override
+  public void recordPrimitive(String topic,
+                              K key,
+                              V value,
+                              long timestamp,
+                              long messageCount,
+                              long bytesCount,
+                              AuditType auditType) {
+    Object auditKey = getAuditKeyPrimitive(topic, key, value, timestamp, messageCount, bytesCount, auditType);
+    if (auditKey != null) {
+      recordToStats(timestamp, auditKey, messageCount, bytesCount);
+    }
+  }
+
+  private void recordToStats(long timestamp, Object auditKey, long messageCount, long bytesCount) {
+    while (true) {
+      StatsEpoch epoch = timestamp >= _nextTick ? _nextEpoch : _currentEpoch;
+      if (epoch.enter()) {
+        try {
+          epoch.stats().update(auditKey, timestamp, messageCount, bytesCount);
+        } finally {
+          epoch.exit();
         }
-        done = true;
-      } catch (IllegalStateException ise) {
-        // Ignore this exception and retry because we might be ticking.
+        return;
       }
-    } while (!done && !_shutdown);
+      // The epoch was retired by a tick after we picked it, pick again from the new epochs unless the auditor has
+      // been closed.
+      if (_shutdown) {
+        return;
+      }
+    }
   }
 
   @Override
   public void close(long timeout, TimeUnit unit) {
     LOG.info("Closing auditor with timeout {} {}", timeout, unit);
+    if (_useSharedTickScheduler) {
+      // Wait for the tick in progress, if any, and make sure no more tick is scheduled.
+      synchronized (this) {
+        if (!_shutdown && _enableAutoTick) {
+          _scheduledTick.cancel(false);
+          closeStats();
+        }
+        _shutdown = true;
+      }
+      return;
+    }
     _shutdown = true;
     interrupt();
     try {
@@ -307,4 +433,101 @@ public abstract class AbstractAuditor<K, V> extends Thread implements Auditor<K,
   public void close() {
     close(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
   }
+
+  /**
+   * The tick scheduler shared by all the auditors using it in the JVM. It is only created when the first such auditor
+   * starts. Its single daemon thread exits when there is no tick scheduled for a while.
+   */
+  private static final class SharedTickScheduler {
+    private static final long KEEP_ALIVE_MS = 60000L;
+    private static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+    private static ScheduledThreadPoolExecutor create() {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "likafka-auditor-tick-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.setRemoveOnCancelPolicy(true);
+      scheduler.setKeepAliveTime(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+      scheduler.allowCoreThreadTimeOut(true);
+      return scheduler;
+    }
+  }
+
+  /**
+   * An {@link AuditStats} with the number of recording threads using it. The recording threads enter the epoch before
+   * updating the stats and exit it afterwards, the ticking thread retires the epoch and waits for the recording
+   * threads in it to exit before closing the stats.
+   */
+  private static final class StatsEpoch {
+    private final AuditStats _stats;
+    // Striped counters so the recording threads do not contend with each other. LongAdder.sum() is not an atomic
+    // snapshot, so the number of recording threads in the epoch is not kept in a single adder that goes up and down.
+    // Both counters only grow, see retire() for how they are read.
+    private final LongAdder _entered;
+    private final LongAdder _exited;
+    private volatile boolean _retired;
+    private volatile Thread _retiringThread;
+
+    StatsEpoch(AuditStats stats) {
+      _stats = stats;
+      _entered = new LongAdder();
+      _exited = new LongAdder();
+      _retired = false;
+      _retiringThread = null;
+    }
+
+    AuditStats stats() {
+      return _stats;
+    }
+
+    /**
+     * Enter the epoch to update the stats.
+     *
+     * @return true if the stats can be updated, false if the epoch has been retired. The caller must call
+     * {@link #exit()} after updating the stats if and only if this method returns true.
+     */
+    boolean enter() {
+      // Claim the usage before checking the retired flag. The retiring thread sets the flag before it counts the
+      // recording threads, so it either sees this thread in the epoch or this thread sees the flag.
+      _entered.increment();
+      if (_retired) {
+        exit();
+        return false;
+      }
+      return true;
+    }
+
+    void exit() {
+      _exited.increment();
+      Thread retiringThread = _retiringThread;
+      if (retiringThread != null) {
+        LockSupport.unpark(retiringThread);
+      }
+    }
+
+    /**
+     * Retire the epoch and park until all the recording threads in it have exited. The recording threads unpark the
+     * retiring thread on exit, so the wait does not spin.
+     * <p>
+     * The exits are summed before the entries. A recording thread increments the entries before its exit, so every
+     * exit that is seen has its entry seen by the later sum as well, and the two sums are only equal when no thread
+     * that may have missed the retired flag is still updating the stats.
+     */
+    void retire() {
+      _retiringThread = Thread.currentThread();
+      _retired = true;
+      boolean interrupted = false;
+      while (_exited.sum() < _entered.sum()) {
+        LockSupport.park(this);
+        // The auditing thread is interrupted to wake it up for ticking. Clear the interrupt so park() does not return
+        // immediately and restore it afterwards.
+        interrupted |= Thread.interrupted();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 }
@@ -17,11 +17,15 @@ public final class AuditKey {
   private final String _topic;
   private final Long _bucket;
   private final AuditType _auditType;
+  // The audit keys are looked up for every audited event, so the hash code is only computed once.
+  private final int _hashCode;
 
   public AuditKey(String topic, Long bucket, AuditType auditType) {
     _topic = topic;
     _bucket = bucket;
     _auditType = auditType;
+    // The same as Objects.hash(_topic, _bucket, _auditType) without allocating the varargs array.
+    _hashCode = 31 * (31 * (31 + Objects.hashCode(_topic)) + Objects.hashCode(_bucket)) + Objects.hashCode(_auditType);
   }
 
   public String topic() {
@@ -45,13 +49,13 @@ public final class AuditKey {
       return false;
     }
     AuditKey auditKey = (AuditKey) obj;
-    return Objects.equals(_topic, auditKey.topic()) && Objects.equals(_bucket, auditKey.bucket())
+    return _hashCode == auditKey._hashCode && Objects.equals(_topic, auditKey.topic()) && Objects.equals(_bucket, auditKey.bucket())
         && Objects.equals(_auditType, auditKey.auditType());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(_topic, _bucket, _auditType);
+    return _hashCode;
   }
 
   @Override
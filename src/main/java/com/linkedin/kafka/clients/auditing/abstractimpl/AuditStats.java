@@ -14,6 +14,11 @@ package com.linkedin.kafka.clients.auditing.abstractimpl;
  */
 public interface AuditStats {
 
+  /**
+   * The timestamp passed to {@link #update(Object, long, long, long)} for the events that do not have a timestamp.
+   */
+  long NO_TIMESTAMP = Long.MAX_VALUE;
+
   /**
    * The method that record the message for audit.
    *
@@ -25,10 +30,26 @@ public interface AuditStats {
    */
   void update(Object auditKey, long messageCount, long bytesCount) throws IllegalStateException;
 
+  /**
+   * The method that record the message for audit with the timestamp of the event. This is the method called by
+   * {@link AbstractAuditor}. By default the timestamp is ignored.
+   *
+   * @param auditKey The audit key for the event. (e.g. combination of topic, key and audit type).
+   * @param timestamp The timestamp of the event, or {@link #NO_TIMESTAMP} if the event does not have a timestamp.
+   * @param messageCount The number of messages to record.
+   * @param bytesCount the number of bytes to record.
+   *
+   * @throws IllegalStateException Thrown if the audit stats is updated after it is closed.
+   */
+  default void update(Object auditKey, long timestamp, long messageCount, long bytesCount) throws IllegalStateException {
+    update(auditKey, messageCount, bytesCount);
+  }
+
   /**
    * Close the audit stats.
    *
-   * The implementation needs to ensure that the stats won't be changed after it is closed.
+   * The implementation needs to ensure that the stats won't be changed after it is closed. When used by
+   * {@link AbstractAuditor}, the audit stats is only closed after all the in progress updates have completed.
    */
   void close();
 }
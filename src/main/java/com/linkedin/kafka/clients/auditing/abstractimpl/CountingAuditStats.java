@@ -6,8 +6,7 @@ package com.linkedin.kafka.clients.auditing.abstractimpl;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A class that aggregate the statistics for auditing by simply counting the number of events of different auditing
@@ -20,14 +19,11 @@ public class CountingAuditStats implements AuditStats {
   private final long _bucketMs;
   private final Map<Object, AuditInfo> _stats;
 
-  // The variables for synchronization on ticks.
-  private final AtomicInteger _recordingInProgress;
   private volatile boolean _closed;
 
   public CountingAuditStats(long bucketMs) {
     _bucketMs = bucketMs;
     _stats = new ConcurrentHashMap<>();
-    _recordingInProgress = new AtomicInteger(0);
     _closed = false;
   }
 
@@ -40,57 +36,53 @@ public class CountingAuditStats implements AuditStats {
   }
 
   public void update(Object auditKey, long messageCount, long bytesCount) {
-    try {
-      // Increment the counter to claim usage. This is to make sure we do not close an AuditStats that is in use.
-      _recordingInProgress.incrementAndGet();
-      if (_closed) {
-        throw new IllegalStateException("Stats has been closed. The caller should get the new AuditStats and retry.");
-      }
+    if (_closed) {
+      throw new IllegalStateException("Stats has been closed. The caller should get the new AuditStats and retry.");
+    }
 
-      AuditInfo statsForTopic = _stats.get(auditKey);
-      if (statsForTopic == null) {
-        statsForTopic = new AuditInfo();
-        AuditInfo prev = _stats.putIfAbsent(auditKey, statsForTopic);
-        if (prev != null) {
-          statsForTopic = prev;
-        }
+    AuditInfo statsForTopic = _stats.get(auditKey);
+    if (statsForTopic == null) {
+      statsForTopic = new AuditInfo();
+      AuditInfo prev = _stats.putIfAbsent(auditKey, statsForTopic);
+      if (prev != null) {
+        statsForTopic = prev;
       }
-      statsForTopic.recordMessage(messageCount, bytesCount);
-    } finally {
-      _recordingInProgress.decrementAndGet();
     }
+    statsForTopic.recordMessage(messageCount, bytesCount);
   }
 
+  /**
+   * Close the stats so it rejects further updates. The stats is only closed by {@link AbstractAuditor} after all the
+   * recording threads using it have finished, so there is no need to wait for the in progress updates here.
+   */
   public void close() {
     _closed = true;
-    // We loop waiting if there is any other threads using this stats.
-    // This is a spin lock, we should be able to get out of the loop pretty quickly and never end up in a tight loop.
-    while (_recordingInProgress.get() > 0) { }
   }
 
   /**
-   * A container class that hosts the messages count and bytes count for each audit key.
+   * A container class that hosts the messages count and bytes count for each audit key. The counts are striped
+   * {@link LongAdder}s, so the threads recording the same audit key concurrently do not contend on a single counter.
    */
   public static final class AuditInfo {
-    private final AtomicLong _messageCount = new AtomicLong(0);
-    private final AtomicLong _bytesCount = new AtomicLong(0);
+    private final LongAdder _messageCount = new LongAdder();
+    private final LongAdder _bytesCount = new LongAdder();
 
     public void recordMessage(long messageCount, long bytesCount) {
-      _messageCount.addAndGet(messageCount);
-      _bytesCount.addAndGet(bytesCount);
+      _messageCount.add(messageCount);
+      _bytesCount.add(bytesCount);
     }
 
     public long messageCount() {
-      return _messageCount.get();
+      return _messageCount.sum();
     }
 
     public long bytesCount() {
-      return _bytesCount.get();
+      return _bytesCount.sum();
     }
 
     @Override
     public String toString() {
-      return "(" + _messageCount.get() + " messages, " + _bytesCount.get() + " bytes)";
+      return "(" + _messageCount.sum() + " messages, " + _bytesCount.sum() + " bytes)";
     }
   }
 
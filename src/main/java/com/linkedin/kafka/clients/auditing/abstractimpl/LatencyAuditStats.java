@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing.abstractimpl;
+
+import org.apache.kafka.common.utils.Time;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that aggregates the latency of the audited events for each audit key into a {@link LatencyHistogram}. The
+ * latency of an event is the time between its timestamp and the time it is recorded.
+ *
+ * This class is thread safe.
+ */
+public class LatencyAuditStats implements AuditStats {
+
+  private final Time _time;
+  private final Map<Object, LatencyHistogram> _histograms;
+
+  private volatile boolean _closed;
+
+  public LatencyAuditStats(Time time) {
+    _time = time;
+    _histograms = new ConcurrentHashMap<>();
+    _closed = false;
+  }
+
+  public Map<Object, LatencyHistogram> histograms() {
+    return _histograms;
+  }
+
+  /**
+   * Record the events without a timestamp. They have no latency, so they are not added to the histogram.
+   */
+  @Override
+  public void update(Object auditKey, long messageCount, long bytesCount) {
+    update(auditKey, NO_TIMESTAMP, messageCount, bytesCount);
+  }
+
+  @Override
+  public void update(Object auditKey, long timestamp, long messageCount, long bytesCount) {
+    if (_closed) {
+      throw new IllegalStateException("Stats has been closed. The caller should get the new AuditStats and retry.");
+    }
+
+    if (timestamp == NO_TIMESTAMP) {
+      return;
+    }
+    LatencyHistogram histogram = _histograms.get(auditKey);
+    if (histogram == null) {
+      histogram = _histograms.computeIfAbsent(auditKey, k -> new LatencyHistogram());
+    }
+    // Negative latencies, e.g. because of clock skew, are ignored by the histogram.
+    histogram.record(_time.milliseconds() - timestamp, messageCount);
+  }
+
+  @Override
+  public void close() {
+    _closed = true;
+  }
+}
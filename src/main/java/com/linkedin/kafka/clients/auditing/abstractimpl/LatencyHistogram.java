@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing.abstractimpl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free histogram of non negative values with a fixed memory footprint, in the spirit of HdrHistogram.
+ *
+ * The values from 0 to 31 have their own buckets. Above that, each power of 2 range is split into 16 linear buckets,
+ * so a value is reported with a relative error of at most 1/16. The values larger than {@link #MAX_VALUE} are
+ * recorded as {@link #MAX_VALUE}. The histogram always has {@link #NUM_BUCKETS} buckets, no matter how many values are
+ * recorded.
+ *
+ * This class is thread safe.
+ */
+public class LatencyHistogram {
+  public static final long MAX_VALUE = Integer.MAX_VALUE;
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+  private final AtomicLongArray _counts;
+  private final LongAccumulator _max;
+
+  public LatencyHistogram() {
+    _counts = new AtomicLongArray(NUM_BUCKETS);
+    _max = new LongAccumulator(Math::max, 0L);
+  }
+
+  /**
+   * Record a value.
+   *
+   * @param value the value to record. Negative values are ignored.
+   * @param count the number of times the value occurred.
+   */
+  public void record(long value, long count) {
+    if (value < 0) {
+      return;
+    }
+    long boundedValue = Math.min(value, MAX_VALUE);
+    _counts.addAndGet(bucketIndex(boundedValue), count);
+    _max.accumulate(boundedValue);
+  }
+
+  /**
+   * @return the total number of the recorded values.
+   */
+  public long count() {
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      count += _counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * @return the largest recorded value.
+   */
+  public long max() {
+    return _max.get();
+  }
+
+  /**
+   * Get the value at the given percentile. The value is the highest value that is in the same bucket as the value
+   * at the percentile, but not larger than {@link #max()}.
+   *
+   * @param percentile the percentile between 0 and 100.
+   * @return the value at the percentile, 0 if no value has been recorded.
+   */
+  public long valueAtPercentile(double percentile) {
+    long[] counts = new long[NUM_BUCKETS];
+    long total = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts[i] = _counts.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0L;
+    }
+    long countAtPercentile = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      count += counts[i];
+      if (count >= countAtPercentile) {
+        return Math.min(highestValueInBucket(i), max());
+      }
+    }
+    return max();
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    // The number of bits to drop so that the value has SUB_BUCKET_BITS significant bits.
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  static long highestValueInBucket(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+    long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
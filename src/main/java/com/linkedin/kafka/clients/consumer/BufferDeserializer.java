@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.consumer;
+
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A deserializer that is able to read the serialized data from a buffer provided by the caller.
+ * <p>
+ * When the value deserializer of a {@link LiKafkaConsumer} implements this interface, the consumer hands it the
+ * message in place instead of copying it to a new byte array first. For a message that was not split, the buffer is
+ * a slice of the value of the fetched record, so its backing array may contain bytes outside of the message. The
+ * deserializer must not modify the content of the buffer, and it must not hold on to the buffer after returning
+ * unless the returned object is meant to share the bytes of the fetched record.
+ * <p>
+ * A large message is handed to {@link #deserialize(String, ByteBuffer[])} as the payloads of its segments. By default
+ * the segments are copied into one buffer. A deserializer that is able to read the message incrementally, e.g. with a
+ * {@link com.linkedin.kafka.clients.utils.ByteBuffersInputStream}, should override that method so the message is never
+ * assembled in memory.
+ *
+ * @param <T> the type of the deserialized object.
+ */
+public interface BufferDeserializer<T> extends Deserializer<T> {
+
+  /**
+   * Deserialize the bytes between the position and the limit of the given buffer.
+   *
+   * @param topic the topic the data is from.
+   * @param data the serialized data, may be null.
+   * @return the deserialized object.
+   */
+  T deserialize(String topic, ByteBuffer data);
+
+  /**
+   * Deserialize a message that is split into a sequence of buffers. The message is the concatenation of the bytes
+   * between the position and the limit of each buffer.
+   *
+   * @param topic the topic the data is from.
+   * @param data the buffers of the serialized data, may be null.
+   * @return the deserialized object.
+   */
+  default T deserialize(String topic, ByteBuffer[] data) {
+    if (data == null) {
+      return deserialize(topic, (ByteBuffer) null);
+    }
+    return deserialize(topic, data.length == 1 ? data[0] : ByteBuffer.wrap(LiKafkaClientsUtils.concatenate(data)));
+  }
+
+  @Override
+  default T deserialize(String topic, byte[] data) {
+    return deserialize(topic, data == null ? null : ByteBuffer.wrap(data));
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.consumer;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * A {@link BufferDeserializer} that returns the message buffer as is. The returned buffer shares the bytes of the
+ * fetched record, so the values are delivered without any copy.
+ */
+public class ByteBufferPassThroughDeserializer implements BufferDeserializer<ByteBuffer> {
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+
+  }
+
+  @Override
+  public ByteBuffer deserialize(String topic, ByteBuffer data) {
+    return data;
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
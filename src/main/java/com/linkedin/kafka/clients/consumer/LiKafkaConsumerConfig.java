@@ -26,8 +26,10 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
 
   public static final String MESSAGE_ASSEMBLER_BUFFER_CAPACITY_CONFIG = "message.assembler.buffer.capacity";
   public static final String MESSAGE_ASSEMBLER_EXPIRATION_OFFSET_GAP_CONFIG = "message.assembler.expiration.offset.gap";
+  public static final String MESSAGE_ASSEMBLER_PREALLOCATE_MESSAGE_BUFFER_CONFIG = "message.assembler.preallocate.message.buffer";
   public static final String MAX_TRACKED_MESSAGES_PER_PARTITION_CONFIG = "max.tracked.messages.per.partition";
   public static final String EXCEPTION_ON_MESSAGE_DROPPED_CONFIG = "exception.on.message.dropped";
+  public static final String RECORDS_PROCESSING_PARALLELISM_CONFIG = "records.processing.parallelism";
   public static final String KEY_DESERIALIZER_CLASS_CONFIG = ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG;
   public static final String VALUE_DESERIALIZER_CLASS_CONFIG = ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG;
   public static final String SEGMENT_DESERIALIZER_CLASS_CONFIG = "segment.deserializer.class";
@@ -39,7 +41,7 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
   private static final String MESSAGE_ASSEMBLER_BUFFER_CAPACITY_DOC = "The maximum number of bytes the message assembler " +
       " uses to buffer the incomplete large message segments. The capacity is shared by messages from all the topics. " +
       "If the capacity of the message assembler has been reached, the consumer will drop the oldest incomplete message " +
-      "in the buffer.";
+      "in the buffer. It is also the maximum size a compressed large message may be decompressed into.";
 
   private static final String MESSAGE_ASSEMBLER_EXPIRATION_OFFSET_GAP_DOC = "The message assembler will expire and " +
       "discard the buffered large message segments of an incomplete large message if that message has sit in the buffer " +
@@ -49,6 +51,15 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
       "message will be removed. The consumer may throw an exception depending on whether the user has set " +
       "exception.on.message.dropped to true or false.";
 
+  private static final String MESSAGE_ASSEMBLER_PREALLOCATE_MESSAGE_BUFFER_DOC = "If set to true, the message assembler " +
+      "allocates a buffer of the full message size when it receives the first segment of a large message and copies " +
+      "each segment into that buffer at the position of the segment. The full message size is counted against " +
+      "message.assembler.buffer.capacity as soon as the buffer is allocated, so the capacity bounds the memory actually " +
+      "used, and the completed message is delivered without another copy. If set to false, the message assembler " +
+      "keeps the segments as they are. When the message is completed, a value deserializer implementing " +
+      "BufferDeserializer gets the segments without a copy, while other value deserializers get a byte array the " +
+      "segments are copied into.";
+
   private static final String MAX_TRACKED_MESSAGES_PER_PARTITION_DOC = "In order to support large messages, LiKafkaConsumer " +
       "keeps track of the messages that are delivered. This configuration sets the maximum number of messages to track. " +
       "For memory efficiency the consumer only tracks messages when necessary, the total number of messages being tracked " +
@@ -59,9 +70,18 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
       "full or the incomplete message has expired. The consumer will throw a LargeMessageDroppedException if this " +
       "configuration is set to true. Otherwise the consumer will drop the message silently.";
 
+  private static final String RECORDS_PROCESSING_PARALLELISM_DOC = "The number of threads used to assemble, " +
+      "deserialize and audit the records returned by a poll. The records of different partitions are processed in " +
+      "parallel while the records of the same partition are always processed in order. When it is set to 1 the records " +
+      "are processed by the thread calling poll(). When it is greater than 1 the key deserializer, the value " +
+      "deserializer and the auditor must be thread safe.";
+
   private static final String KEY_DESERIALIZER_CLASS_DOC = "The key deserializer class for the consumer.";
 
-  private static final String VALUE_DESERIALIZER_CLASS_DOC = "The value deserializer class for the consumer.";
+  private static final String VALUE_DESERIALIZER_CLASS_DOC = "The value deserializer class for the consumer. If the class " +
+      "implements " + BufferDeserializer.class.getName() + ", the messages are deserialized in place instead of being " +
+      "copied to a byte array first, e.g. " + ByteBufferPassThroughDeserializer.class.getName() + " or " +
+      StringBufferDeserializer.class.getName() + ".";
 
   private static final String SEGMENT_DESERIALIZER_CLASS_DOC = "The class used to deserialize the large message segments.";
 
@@ -93,6 +113,11 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
                 Range.atLeast(1),
                 Importance.MEDIUM,
                 MESSAGE_ASSEMBLER_EXPIRATION_OFFSET_GAP_DOC)
+        .define(MESSAGE_ASSEMBLER_PREALLOCATE_MESSAGE_BUFFER_CONFIG,
+                Type.BOOLEAN,
+                "false",
+                Importance.LOW,
+                MESSAGE_ASSEMBLER_PREALLOCATE_MESSAGE_BUFFER_DOC)
         .define(MAX_TRACKED_MESSAGES_PER_PARTITION_CONFIG,
                 Type.INT,
                 "500",
@@ -104,6 +129,12 @@ public class LiKafkaConsumerConfig extends AbstractConfig {
                 "false",
                 Importance.LOW,
                 EXCEPTION_ON_MESSAGE_DROPPED_DOC)
+        .define(RECORDS_PROCESSING_PARALLELISM_CONFIG,
+                Type.INT,
+                "1",
+                Range.atLeast(1),
+                Importance.LOW,
+                RECORDS_PROCESSING_PARALLELISM_DOC)
         .define(KEY_DESERIALIZER_CLASS_CONFIG,
                 Type.CLASS,
                 ByteArrayDeserializer.class.getName(),
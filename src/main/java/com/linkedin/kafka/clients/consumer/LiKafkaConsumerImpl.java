@@ -30,6 +30,7 @@ import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
@@ -69,11 +70,16 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
   private static final Logger LOG = LoggerFactory.getLogger(LiKafkaConsumerImpl.class);
   private final Consumer<byte[], byte[]> _kafkaConsumer;
   private final ConsumerRecordsProcessor<K, V> _consumerRecordsProcessor;
+  // The metrics of the large message assembly, reported together with the metrics of the raw byte consumer.
+  private final Metrics _metrics;
   private final LiKafkaConsumerRebalanceListener<K, V> _consumerRebalanceListener;
-  private final LiKafkaOffsetCommitCallback _offsetCommitCallback;
   private final boolean _autoCommitEnabled;
   private final long _autoCommitInterval;
   private final OffsetResetStrategy _offsetResetStrategy;
+  // The last known committed offsets of the assigned partitions, i.e. the safe offsets with the wrapped metadata as
+  // stored on the server. A partition is mapped to null if it has no committed offset. The cache is updated by the
+  // commits of this consumer and invalidated when the partition is no longer assigned to this consumer.
+  private final Map<TopicPartition, OffsetAndMetadata> _committedOffsets;
   private long _lastAutoCommitMs;
 
   public LiKafkaConsumerImpl(Properties props) {
@@ -112,6 +118,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     _offsetResetStrategy =
         OffsetResetStrategy.valueOf(configs.getString(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG).toUpperCase(Locale.ROOT));
     _lastAutoCommitMs = System.currentTimeMillis();
+    _committedOffsets = new HashMap<>();
     // We need to set the auto commit to false in KafkaConsumer because it is not large message aware.
     ByteArrayDeserializer byteArrayDeserializer = new ByteArrayDeserializer();
     _kafkaConsumer = new KafkaConsumer<>(configs.configForVanillaConsumer(),
@@ -127,8 +134,12 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     int messageAssemblerCapacity = configs.getInt(LiKafkaConsumerConfig.MESSAGE_ASSEMBLER_BUFFER_CAPACITY_CONFIG);
     int messageAssemblerExpirationOffsetGap = configs.getInt(LiKafkaConsumerConfig.MESSAGE_ASSEMBLER_EXPIRATION_OFFSET_GAP_CONFIG);
     boolean exceptionOnMessageDropped = configs.getBoolean(LiKafkaConsumerConfig.EXCEPTION_ON_MESSAGE_DROPPED_CONFIG);
+    boolean preallocateMessageBuffers =
+        configs.getBoolean(LiKafkaConsumerConfig.MESSAGE_ASSEMBLER_PREALLOCATE_MESSAGE_BUFFER_CONFIG);
+    _metrics = new Metrics();
     MessageAssembler assembler = new MessageAssemblerImpl(messageAssemblerCapacity, messageAssemblerExpirationOffsetGap,
-                                                          exceptionOnMessageDropped, segmentDeserializer);
+                                                          exceptionOnMessageDropped, preallocateMessageBuffers,
+                                                          segmentDeserializer, _metrics);
 
     // Instantiate delivered message offset tracker if needed.
     int maxTrackedMessagesPerPartition = configs.getInt(LiKafkaConsumerConfig.MAX_TRACKED_MESSAGES_PER_PARTITION_CONFIG);
@@ -149,15 +160,14 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     vDeserializer.configure(configs.originals(), false);
 
     // Instantiate consumer record processor
+    int recordsProcessingParallelism = configs.getInt(LiKafkaConsumerConfig.RECORDS_PROCESSING_PARALLELISM_CONFIG);
     _consumerRecordsProcessor = new ConsumerRecordsProcessor<>(assembler, kDeserializer, vDeserializer,
-                                                               messageOffsetTracker, auditor);
+                                                               messageOffsetTracker, auditor,
+                                                               recordsProcessingParallelism);
 
     // Instantiate consumer rebalance listener
     _consumerRebalanceListener = new LiKafkaConsumerRebalanceListener<>(_consumerRecordsProcessor,
                                                                         this, _autoCommitEnabled);
-
-    // Instantiate offset commit callback.
-    _offsetCommitCallback = new LiKafkaOffsetCommitCallback();
   }
 
   @Override
@@ -183,6 +193,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     for (TopicPartition tp : _kafkaConsumer.assignment()) {
       if (!newSubscription.contains(tp.topic())) {
         _consumerRecordsProcessor.clear(tp);
+        _committedOffsets.remove(tp);
       }
     }
     _consumerRebalanceListener.setUserListener(callback);
@@ -195,6 +206,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     for (TopicPartition tp : assignment()) {
       if (!partitionSet.contains(tp)) {
         _consumerRecordsProcessor.clear(tp);
+        _committedOffsets.remove(tp);
       }
     }
     _kafkaConsumer.assign(partitions);
@@ -212,6 +224,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
   public void unsubscribe() {
     // Clear all the state of the topic in consumer record processor.
     _consumerRecordsProcessor.clear();
+    _committedOffsets.clear();
     _kafkaConsumer.unsubscribe();
   }
 
@@ -244,15 +257,24 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
             throw oe;
         }
       }
-      // Check if we have enough high watermark for a partition. The high watermark is cleared during rebalance.
-      // We make this check so that after rebalance we do not deliver duplicate messages to the user.
-      if (!rawRecords.isEmpty() && _consumerRecordsProcessor.numConsumerHighWaterMarks() < assignment().size()) {
-        for (TopicPartition tp : rawRecords.partitions()) {
-          if (_consumerRecordsProcessor.consumerHighWaterMarkForPartition(tp) == null) {
-            OffsetAndMetadata offsetAndMetadata = committed(tp);
-            if (offsetAndMetadata != null) {
-              long hw = offsetAndMetadata.offset();
-              _consumerRecordsProcessor.setPartitionConsumerHighWaterMark(tp, hw);
+      if (!rawRecords.isEmpty()) {
+        // Make sure the committed offsets of all the assigned partitions are cached once messages are consumed, so the
+        // asynchronous commits do not need to look them up on the server. KafkaConsumer refreshes the committed offsets
+        // of all the assigned partitions at once when it needs to, so this rarely goes to the server either.
+        Set<TopicPartition> assignment = _kafkaConsumer.assignment();
+        if (_committedOffsets.size() < assignment.size()) {
+          loadCommittedOffsets(assignment);
+        }
+        // Check if we have enough high watermark for a partition. The high watermark is cleared during rebalance.
+        // We make this check so that after rebalance we do not deliver duplicate messages to the user.
+        if (_consumerRecordsProcessor.numConsumerHighWaterMarks() < assignment.size()) {
+          for (TopicPartition tp : rawRecords.partitions()) {
+            if (_consumerRecordsProcessor.consumerHighWaterMarkForPartition(tp) == null) {
+              OffsetAndMetadata offsetAndMetadata = toUserOffsetAndMetadata(cachedCommitted(tp));
+              if (offsetAndMetadata != null) {
+                long hw = offsetAndMetadata.offset();
+                _consumerRecordsProcessor.setPartitionConsumerHighWaterMark(tp, hw);
+              }
             }
           }
         }
@@ -266,7 +288,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
   @Override
   public void commitSync() {
     // Preserve the high watermark.
-    commitOffsets(currentOffsetAndMetadataMap(), false, null, true);
+    commitOffsets(currentOffsetAndMetadataMap(true), false, null, true);
   }
 
   @Override
@@ -277,19 +299,19 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
 
   @Override
   public void commitAsync() {
-    commitOffsets(currentOffsetAndMetadataMap(), false, null, false);
+    commitOffsets(currentOffsetAndMetadataMap(false), false, null, false);
   }
 
   @Override
   public void commitAsync(OffsetCommitCallback callback) {
     // preserve the high watermark.
-    commitOffsets(currentOffsetAndMetadataMap(), false, callback, false);
+    commitOffsets(currentOffsetAndMetadataMap(false), false, callback, false);
   }
 
   @Override
   public void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
     // Ignore the high watermark.
-    commitOffsets(offsets, false, null, true);
+    commitOffsets(offsets, true, callback, false);
   }
 
   // Private function to avoid duplicate code.
@@ -297,14 +319,25 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
                              boolean ignoreConsumerHighWatermark,
                              OffsetCommitCallback callback,
                              boolean sync) {
-    Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = getOffsetsToCommit(offsets, ignoreConsumerHighWatermark);
+    Map<TopicPartition, OffsetAndMetadata> offsetsToCommit =
+        getOffsetsToCommit(offsets, ignoreConsumerHighWatermark, sync);
     if (sync) {
       LOG.trace("Committing offsets synchronously: {}", offsetsToCommit);
       _kafkaConsumer.commitSync(offsetsToCommit);
+      updateCommittedOffsets(offsetsToCommit);
     } else {
       LOG.trace("Committing offsets asynchronously: {}", offsetsToCommit);
-      _offsetCommitCallback.setUserCallback(callback);
-      _kafkaConsumer.commitAsync(offsetsToCommit, _offsetCommitCallback);
+      // Each commit has its own callback so the callbacks of the in-flight commits are not lost.
+      LiKafkaOffsetCommitCallback offsetCommitCallback = new LiKafkaOffsetCommitCallback(callback);
+      // Update the cache before the commit completes so the callback of an earlier commit can never overwrite the
+      // offsets of a later one. If the commit fails, the cached offsets it wrote are fetched from the server again.
+      updateCommittedOffsets(offsetsToCommit);
+      _kafkaConsumer.commitAsync(offsetsToCommit, (committedOffsets, e) -> {
+        if (e != null) {
+          invalidateCommittedOffsets(offsetsToCommit);
+        }
+        offsetCommitCallback.onComplete(committedOffsets, e);
+      });
     }
   }
 
@@ -384,7 +417,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
   @Override
   public void seekToCommitted(Collection<TopicPartition> partitions) {
     for (TopicPartition tp : partitions) {
-      OffsetAndMetadata offsetAndMetadata = _kafkaConsumer.committed(tp);
+      OffsetAndMetadata offsetAndMetadata = fetchCommitted(tp);
       if (offsetAndMetadata == null) {
         throw new NoOffsetForPartitionException(tp);
       }
@@ -409,25 +442,12 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     // Not handling large message here. The committed will be the actual committed value.
     // The returned metadata includes the user committed offset and the user committed metadata, separated by the
     // first comma.
-    OffsetAndMetadata offsetAndMetadata = _kafkaConsumer.committed(partition);
-    if (offsetAndMetadata != null) {
-      String rawMetadata = offsetAndMetadata.metadata();
-      Long userOffset = LiKafkaClientsUtils.offsetFromWrappedMetadata(rawMetadata);
-      String userMetadata;
-      if (userOffset == null) {
-        userOffset = offsetAndMetadata.offset();
-        userMetadata = offsetAndMetadata.metadata();
-      } else {
-        userMetadata = LiKafkaClientsUtils.metadataFromWrappedMetadata(rawMetadata);
-      }
-      offsetAndMetadata = new OffsetAndMetadata(userOffset, userMetadata);
-    }
-    return offsetAndMetadata;
+    return toUserOffsetAndMetadata(fetchCommitted(partition));
   }
 
   @Override
   public Long committedSafeOffset(TopicPartition tp) {
-    OffsetAndMetadata rawOffsetAndMetadata = _kafkaConsumer.committed(tp);
+    OffsetAndMetadata rawOffsetAndMetadata = fetchCommitted(tp);
     if (rawOffsetAndMetadata == null || rawOffsetAndMetadata.metadata().isEmpty()) {
       return null;
     }
@@ -436,7 +456,9 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
 
   @Override
   public Map<MetricName, ? extends Metric> metrics() {
-    return _kafkaConsumer.metrics();
+    Map<MetricName, Metric> metrics = new HashMap<>(_kafkaConsumer.metrics());
+    metrics.putAll(_metrics.metrics());
+    return Collections.unmodifiableMap(metrics);
   }
 
   @Override
@@ -505,6 +527,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     }
     _kafkaConsumer.close();
     _consumerRecordsProcessor.close();
+    _metrics.close();
   }
 
   @Override
@@ -519,13 +542,20 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
    * @return The translated large message aware TopicPartition to OffsetAndMetadata mapping.
    */
   private Map<TopicPartition, OffsetAndMetadata> getOffsetsToCommit(Map<TopicPartition, OffsetAndMetadata> offsets,
-                                                                    boolean ignoreHighWaterMark) {
+                                                                    boolean ignoreHighWaterMark,
+                                                                    boolean sync) {
     Map<TopicPartition, OffsetAndMetadata> offsetsToCommit =
         _consumerRecordsProcessor.safeOffsetsToCommit(offsets, ignoreHighWaterMark);
     // If user did not consume any message before the first commit, in this case user will pass in the last
     // committed message offsets. We simply use the last committed safe offset.
     for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet()) {
-      OffsetAndMetadata committed = _kafkaConsumer.committed(entry.getKey());
+      if (!sync && !ignoreHighWaterMark && !_committedOffsets.containsKey(entry.getKey())) {
+        // The committed offset is unknown, so the high watermark may not be preserved. Skip the partition rather than
+        // risk moving the committed high watermark backwards, a later commit will include it.
+        offsetsToCommit.remove(entry.getKey());
+        continue;
+      }
+      OffsetAndMetadata committed = committedForCommit(entry.getKey(), sync);
       if (committed != null) {
         Long committedUserOffset = LiKafkaClientsUtils.offsetFromWrappedMetadata(committed.metadata());
         if (committedUserOffset != null && entry.getValue().offset() == committedUserOffset) {
@@ -553,9 +583,10 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
    * {@link ConsumerRecordsProcessor#safeOffsetsToCommit(Map, boolean)}, it will ensure the high watermark never rewind unless
    * user explicitly did so by calling seek() or provided a specific offset.
    *
+   * @param sync whether the offsets are committed synchronously. See {@link #committedForCommit(TopicPartition, boolean)}.
    * @return the offsetAndMetadata map ready to commit.
    */
-  private Map<TopicPartition, OffsetAndMetadata> currentOffsetAndMetadataMap() {
+  private Map<TopicPartition, OffsetAndMetadata> currentOffsetAndMetadataMap(boolean sync) {
     Map<TopicPartition, OffsetAndMetadata> offsetAndMetadataMap = new HashMap<>();
     Map<TopicPartition, Long> delivered = _consumerRecordsProcessor.delivered();
     for (TopicPartition tp : _kafkaConsumer.assignment()) {
@@ -570,7 +601,7 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
           // We may need to update the high watermark in case there are two rebalances happened back to back, in that
           // case we may lose high watermark if we don't fetch it from the server.
           if (hw == null) {
-            OffsetAndMetadata committed = committed(tp);
+            OffsetAndMetadata committed = toUserOffsetAndMetadata(committedForCommit(tp, sync));
             if (committed != null) {
               _consumerRecordsProcessor.setPartitionConsumerHighWaterMark(tp, committed.offset());
             }
@@ -593,4 +624,106 @@ public class LiKafkaConsumerImpl<K, V> implements LiKafkaConsumer<K, V> {
     LOG.trace("Current offset and metadata map: {}", offsetAndMetadataMap);
     return offsetAndMetadataMap;
   }
+
+  /**
+   * Invalidate the cached committed offsets of the given partitions. This is called for the revoked partitions on
+   * rebalance because other consumers may commit offsets for them.
+   */
+  void invalidateCommittedOffsets(Collection<TopicPartition> partitions) {
+    for (TopicPartition tp : partitions) {
+      _committedOffsets.remove(tp);
+    }
+  }
+
+  /**
+   * Invalidate the cached committed offsets written by a failed asynchronous commit. A partition is left alone if a
+   * later commit has cached its own offset since then.
+   */
+  private void invalidateCommittedOffsets(Map<TopicPartition, OffsetAndMetadata> failedOffsets) {
+    for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : failedOffsets.entrySet()) {
+      if (_committedOffsets.get(entry.getKey()) == entry.getValue()) {
+        _committedOffsets.remove(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Load the committed offsets of the assigned partitions into the committed offset cache in one pass, so the first
+   * poll after rebalance can seed the consumer high watermarks without going to the server. The partitions whose
+   * committed offsets are already cached are skipped. The cached offsets of the revoked partitions are invalidated
+   * before the assignment, so the partitions assigned back to this consumer are reloaded as well.
+   * <p>
+   * KafkaConsumer refreshes the committed offsets of all the assigned partitions with a single offset fetch request
+   * the first time one of them is looked up after the assignment changes. So only the first lookup here goes to the
+   * server, and the refreshed offsets are then also used by KafkaConsumer to initialize the fetch positions.
+   */
+  void loadCommittedOffsets(Collection<TopicPartition> partitions) {
+    for (TopicPartition tp : partitions) {
+      if (!_committedOffsets.containsKey(tp)) {
+        _committedOffsets.put(tp, _kafkaConsumer.committed(tp));
+      }
+    }
+  }
+
+  /**
+   * Get the committed offset of a partition with the wrapped metadata. The cached value is used if there is one,
+   * otherwise the committed offset is fetched from the server.
+   */
+  private OffsetAndMetadata cachedCommitted(TopicPartition tp) {
+    if (_committedOffsets.containsKey(tp)) {
+      return _committedOffsets.get(tp);
+    }
+    return fetchCommitted(tp);
+  }
+
+  /**
+   * Get the committed offset of a partition with the wrapped metadata when committing offsets. Asynchronous commits
+   * only look up the cache so they never block on the server. The asynchronous commits that preserve the high
+   * watermark skip the partitions whose committed offsets are not cached, see
+   * {@link #getOffsetsToCommit(Map, boolean, boolean)}. The committed offsets of all the assigned partitions are cached
+   * on rebalance and once messages are consumed, see {@link #poll(long)}.
+   */
+  private OffsetAndMetadata committedForCommit(TopicPartition tp, boolean sync) {
+    return sync ? cachedCommitted(tp) : _committedOffsets.get(tp);
+  }
+
+  /**
+   * Fetch the committed offset of a partition with the wrapped metadata from the server and cache it if the partition
+   * is assigned to this consumer.
+   */
+  private OffsetAndMetadata fetchCommitted(TopicPartition tp) {
+    OffsetAndMetadata committed = _kafkaConsumer.committed(tp);
+    if (_kafkaConsumer.assignment().contains(tp)) {
+      _committedOffsets.put(tp, committed);
+    }
+    return committed;
+  }
+
+  private void updateCommittedOffsets(Map<TopicPartition, OffsetAndMetadata> committedOffsets) {
+    Set<TopicPartition> assignment = _kafkaConsumer.assignment();
+    for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committedOffsets.entrySet()) {
+      if (assignment.contains(entry.getKey())) {
+        _committedOffsets.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Convert the committed offset and wrapped metadata to the user committed offset and metadata.
+   */
+  private static OffsetAndMetadata toUserOffsetAndMetadata(OffsetAndMetadata offsetAndMetadata) {
+    if (offsetAndMetadata == null) {
+      return null;
+    }
+    String rawMetadata = offsetAndMetadata.metadata();
+    Long userOffset = LiKafkaClientsUtils.offsetFromWrappedMetadata(rawMetadata);
+    String userMetadata;
+    if (userOffset == null) {
+      userOffset = offsetAndMetadata.offset();
+      userMetadata = offsetAndMetadata.metadata();
+    } else {
+      userMetadata = LiKafkaClientsUtils.metadataFromWrappedMetadata(rawMetadata);
+    }
+    return new OffsetAndMetadata(userOffset, userMetadata);
+  }
 }
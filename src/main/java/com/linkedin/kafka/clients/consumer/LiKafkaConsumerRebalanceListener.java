@@ -20,13 +20,13 @@ import java.util.Set;
 class LiKafkaConsumerRebalanceListener<K, V> implements ConsumerRebalanceListener {
   private static final Logger LOG = LoggerFactory.getLogger(LiKafkaConsumerRebalanceListener.class);
   private final ConsumerRecordsProcessor<K, V> _consumerRecordsProcessor;
-  private final LiKafkaConsumer _consumer;
+  private final LiKafkaConsumerImpl<K, V> _consumer;
   private final Set<TopicPartition> _partitionsRemoved;
   private final boolean _autoCommitEnabled;
   private ConsumerRebalanceListener _userListener;
 
   LiKafkaConsumerRebalanceListener(ConsumerRecordsProcessor<K, V> consumerRecordsProcessor,
-                                   LiKafkaConsumer consumer,
+                                   LiKafkaConsumerImpl<K, V> consumer,
                                    boolean autoCommitEnabled) {
     _consumerRecordsProcessor = consumerRecordsProcessor;
     _consumer = consumer;
@@ -48,6 +48,9 @@ class LiKafkaConsumerRebalanceListener<K, V> implements ConsumerRebalanceListene
     if (_autoCommitEnabled) {
       _consumer.commitSync();
     }
+    // Other consumers may commit offsets for the revoked partitions during the rebalance, including the partitions
+    // that are assigned back to this consumer, so their cached committed offsets are no longer valid.
+    _consumer.invalidateCommittedOffsets(topicPartitions);
   }
 
   @Override
@@ -58,6 +61,9 @@ class LiKafkaConsumerRebalanceListener<K, V> implements ConsumerRebalanceListene
     for (TopicPartition tp : _partitionsRemoved) {
       _consumerRecordsProcessor.clear(tp);
     }
+    // Load the committed offsets of the assigned partitions in bulk so the high watermarks of all the
+    // partitions are available in the first poll after rebalance.
+    _consumer.loadCommittedOffsets(topicPartitions);
     // Fire user listener.
     _userListener.onPartitionsAssigned(topicPartitions);
   }
@@ -13,10 +13,15 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * The offset commit callback for LiKafkaConsumer which is large message aware.
+ * The offset commit callback for LiKafkaConsumer which is large message aware. A new callback is created for each
+ * asynchronous commit.
  */
 class LiKafkaOffsetCommitCallback implements OffsetCommitCallback {
-  private OffsetCommitCallback _userCallback = null;
+  private final OffsetCommitCallback _userCallback;
+
+  LiKafkaOffsetCommitCallback(OffsetCommitCallback userCallback) {
+    _userCallback = userCallback;
+  }
 
   @Override
   public void onComplete(Map<TopicPartition, OffsetAndMetadata> topicPartitionOffsetAndMetadataMap, Exception e) {
@@ -34,8 +39,4 @@ class LiKafkaOffsetCommitCallback implements OffsetCommitCallback {
       _userCallback.onComplete(userOffsetMap, e);
     }
   }
-
-  public void setUserCallback(OffsetCommitCallback userCallback) {
-    _userCallback = userCallback;
-  }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.consumer;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Map;
+
+/**
+ * A {@link BufferDeserializer} that decodes the message buffer to a String. The encoding is configured the same way
+ * as {@link org.apache.kafka.common.serialization.StringDeserializer}, i.e. with key.deserializer.encoding,
+ * value.deserializer.encoding or deserializer.encoding. The default encoding is UTF-8.
+ */
+public class StringBufferDeserializer implements BufferDeserializer<String> {
+  private Charset _charset = StandardCharsets.UTF_8;
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    String propertyName = isKey ? "key.deserializer.encoding" : "value.deserializer.encoding";
+    Object encodingValue = configs.get(propertyName);
+    if (encodingValue == null) {
+      encodingValue = configs.get("deserializer.encoding");
+    }
+    if (encodingValue instanceof String) {
+      try {
+        _charset = Charset.forName((String) encodingValue);
+      } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+        throw new SerializationException("Unsupported encoding " + encodingValue, e);
+      }
+    }
+  }
+
+  @Override
+  public String deserialize(String topic, ByteBuffer data) {
+    if (data == null) {
+      return null;
+    }
+    if (data.hasArray()) {
+      return new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), _charset);
+    }
+    return _charset.decode(data.duplicate()).toString();
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
@@ -6,11 +6,14 @@ package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.auditing.AuditType;
 import com.linkedin.kafka.clients.auditing.Auditor;
+import com.linkedin.kafka.clients.consumer.BufferDeserializer;
 import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,9 +22,26 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
 
 /**
  * This class processes consumer records returned by {@link org.apache.kafka.clients.consumer.KafkaConsumer#poll(long)}
+ * <p>
+ * If the processor is created with a parallelism greater than 1, the records of different partitions in the same
+ * batch are processed concurrently by a dedicated {@link ForkJoinPool}, while the records of each partition are still
+ * processed in order by a single thread. In that case the key deserializer, the value deserializer and the auditor
+ * must be thread safe.
+ * <p>
+ * The value of a message that is the only segment of itself is handed to the value deserializer without copying it
+ * out of the raw record when the value deserializer is a {@link BufferDeserializer}. In that case the deserializer
+ * reads a slice of the raw record value, i.e. its backing array may also contain the segment header. The other value
+ * deserializers, including Kafka's ByteBufferDeserializer, always get a byte array with only the message bytes.
+ * A {@link BufferDeserializer} also gets the large messages as the payloads of their segments, so they are only
+ * assembled into one byte array if the deserializer needs it.
  */
 public class ConsumerRecordsProcessor<K, V> {
 
@@ -29,45 +49,88 @@ public class ConsumerRecordsProcessor<K, V> {
   private final MessageAssembler _messageAssembler;
   private final Deserializer<K> _keyDeserializer;
   private final Deserializer<V> _valueDeserializer;
+  // The value deserializer if it is able to read the assembled message buffer in place, otherwise null.
+  private final BufferDeserializer<V> _valueBufferDeserializer;
   private final DeliveredMessageOffsetTracker _deliveredMessageOffsetTracker;
   private final Map<TopicPartition, Long> _partitionConsumerHighWatermark;
   private final Auditor<K, V> _auditor;
+  private final ForkJoinPool _processingPool;
 
   public ConsumerRecordsProcessor(MessageAssembler messageAssembler,
                                   Deserializer<K> keyDeserializer,
                                   Deserializer<V> valueDeserializer,
                                   DeliveredMessageOffsetTracker deliveredMessageOffsetTracker,
                                   Auditor<K, V> auditor) {
+    this(messageAssembler, keyDeserializer, valueDeserializer, deliveredMessageOffsetTracker, auditor, 1);
+  }
+
+  public ConsumerRecordsProcessor(MessageAssembler messageAssembler,
+                                  Deserializer<K> keyDeserializer,
+                                  Deserializer<V> valueDeserializer,
+                                  DeliveredMessageOffsetTracker deliveredMessageOffsetTracker,
+                                  Auditor<K, V> auditor,
+                                  int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be at least 1, but it is " + parallelism);
+    }
     _messageAssembler = messageAssembler;
     _keyDeserializer = keyDeserializer;
     _valueDeserializer = valueDeserializer;
+    _valueBufferDeserializer = valueBufferDeserializer(valueDeserializer);
     _deliveredMessageOffsetTracker = deliveredMessageOffsetTracker;
     _auditor = auditor;
     _partitionConsumerHighWatermark = new HashMap<>();
+    _processingPool = parallelism > 1 ? new ForkJoinPool(parallelism, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("likafka-consumer-records-processor-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false) : null;
     if (_auditor == null) {
       LOG.info("Auditing is disabled because no auditor is defined.");
     }
   }
 
   /**
-   * This method filters out the incomplete message segment records.
+   * This method filters out the incomplete message segment records. The records of each partition are processed in
+   * order. When the partitions are processed in parallel and the processing of a partition fails, the exception is
+   * thrown after all the partitions in the batch have been processed.
    *
    * @param consumerRecords The consumer records to be filtered.
    * @return filtered consumer records.
    */
   public ConsumerRecords<K, V> process(ConsumerRecords<byte[], byte[]> consumerRecords) {
+    Set<TopicPartition> partitions = consumerRecords.partitions();
     Map<TopicPartition, List<ConsumerRecord<K, V>>> filteredRecords = new HashMap<>();
-    for (ConsumerRecord<byte[], byte[]> record : consumerRecords) {
-      TopicPartition tp = new TopicPartition(record.topic(), record.partition());
-      ConsumerRecord<K, V> handledRecord = handleConsumerRecord(record);
-      // Only put record into map if it is not null
-      if (handledRecord != null) {
-        List<ConsumerRecord<K, V>> list = filteredRecords.get(tp);
-        if (list == null) {
-          list = new ArrayList<>();
-          filteredRecords.put(tp, list);
+    if (_processingPool == null || partitions.size() < 2) {
+      for (TopicPartition tp : partitions) {
+        maybeAddRecords(filteredRecords, tp, processPartition(tp, consumerRecords.records(tp)));
+      }
+    } else {
+      // Each partition is processed by exactly one task so the per partition state is never shared between threads.
+      List<TopicPartition> partitionList = new ArrayList<>(partitions);
+      List<Future<List<ConsumerRecord<K, V>>>> futures = new ArrayList<>(partitionList.size());
+      for (TopicPartition tp : partitionList) {
+        List<ConsumerRecord<byte[], byte[]>> records = consumerRecords.records(tp);
+        futures.add(_processingPool.submit(() -> processPartition(tp, records)));
+      }
+      // Wait for all the tasks even if some of them failed, the state must not be modified after this method returns.
+      Throwable exception = null;
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          maybeAddRecords(filteredRecords, partitionList.get(i), futures.get(i).get());
+        } catch (ExecutionException e) {
+          if (exception == null) {
+            exception = e.getCause();
+          }
+        } catch (InterruptedException e) {
+          if (exception == null) {
+            exception = new InterruptException(e);
+          }
         }
-        list.add(handledRecord);
+      }
+      if (exception != null) {
+        rethrow(exception);
       }
     }
     return new ConsumerRecords<>(filteredRecords);
@@ -301,39 +364,149 @@ public class ConsumerRecordsProcessor<K, V> {
   }
 
   public void close() {
+    if (_processingPool != null) {
+      _processingPool.shutdown();
+    }
     _messageAssembler.close();
-    _auditor.close();
+    if (_auditor != null) {
+      _auditor.close();
+    }
   }
 
-  private ConsumerRecord<K, V> handleConsumerRecord(ConsumerRecord<byte[], byte[]> consumerRecord) {
-    TopicPartition tp = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
-    ConsumerRecord<K, V> handledRecord = null;
-    K key = _keyDeserializer.deserialize(tp.topic(), consumerRecord.key());
-    byte[] valueBytes = parseAndMaybeTrackRecord(tp, consumerRecord.offset(), consumerRecord.value());
-    V value = _valueDeserializer.deserialize(tp.topic(), valueBytes);
-    if (value != null) {
-      if (_auditor != null) {
-        _auditor.record(tp.topic(), key, value, consumerRecord.timestamp(), 1L,
-                        (long) consumerRecord.value().length, AuditType.SUCCESS);
+  private List<ConsumerRecord<K, V>> processPartition(TopicPartition tp, List<ConsumerRecord<byte[], byte[]>> records) {
+    List<ConsumerRecord<K, V>> handledRecords = new ArrayList<>(records.size());
+    int index = 0;
+    while (index < records.size()) {
+      if (_messageAssembler.hasIncompleteMessages(tp)) {
+        ConsumerRecord<byte[], byte[]> record = records.get(index++);
+        long offset = record.offset();
+        MessageAssembler.AssembleResult assembleResult = _messageAssembler.assemble(tp, offset, record.value());
+        maybeAddRecord(handledRecords, toConsumerRecord(tp, record, trackAssembleResult(tp, offset, assembleResult)));
+      } else {
+        index = processCompleteMessages(tp, records, index, handledRecords);
+      }
+    }
+    return handledRecords;
+  }
+
+  /**
+   * Process the records starting from the given index as long as each of them is a complete message by itself.
+   * This method is only called when the partition has no incomplete large message. In that case the safe offset after
+   * each message is the message offset + 1, so the offsets of the whole run are tracked at once instead of per message.
+   * The record that ends the run, if any, is processed the normal way because it has already been assembled.
+   *
+   * @return the index of the first record that has not been processed.
+   */
+  private int processCompleteMessages(TopicPartition tp,
+                                      List<ConsumerRecord<byte[], byte[]>> records,
+                                      int fromIndex,
+                                      List<ConsumerRecord<K, V>> handledRecords) {
+    Long hw = _partitionConsumerHighWatermark.get(tp);
+    long firstOffset = records.get(fromIndex).offset();
+    long lastOffset = -1L;
+    long lastDeliveredOffset = -1L;
+    int index = fromIndex;
+    try {
+      while (index < records.size()) {
+        ConsumerRecord<byte[], byte[]> record = records.get(index++);
+        long offset = record.offset();
+        MessageAssembler.AssembleResult assembleResult = _messageAssembler.assemble(tp, offset, record.value());
+        if (!assembleResult.hasMessage() || assembleResult.messageStartingOffset() != offset) {
+          // A large message segment, track the run so far before handling the segment.
+          trackCompleteMessages(tp, firstOffset, lastOffset, lastDeliveredOffset);
+          lastOffset = -1L;
+          maybeAddRecord(handledRecords, toConsumerRecord(tp, record, trackAssembleResult(tp, offset, assembleResult)));
+          break;
+        }
+        lastOffset = offset;
+        // We skip the messages whose offset is smaller than the high watermark.
+        if (hw == null || hw <= offset) {
+          lastDeliveredOffset = offset;
+          maybeAddRecord(handledRecords, toConsumerRecord(tp, record, assembleResult));
+        }
       }
-      handledRecord = new ConsumerRecord<>(
-          consumerRecord.topic(),
-          consumerRecord.partition(),
-          consumerRecord.offset(),
-          consumerRecord.timestamp(),
-          consumerRecord.timestampType(),
-          consumerRecord.checksum(),
-          consumerRecord.serializedKeySize(),
-          valueBytes.length,
-          _keyDeserializer.deserialize(consumerRecord.topic(), consumerRecord.key()),
-          value);
+    } finally {
+      trackCompleteMessages(tp, firstOffset, lastOffset, lastDeliveredOffset);
     }
-    return handledRecord;
+    return index;
+  }
+
+  private void trackCompleteMessages(TopicPartition tp, long firstOffset, long lastOffset, long lastDeliveredOffset) {
+    if (lastOffset >= 0) {
+      _deliveredMessageOffsetTracker.trackCompleteMessages(tp, firstOffset, lastOffset, lastDeliveredOffset);
+    }
+  }
+
+  private void maybeAddRecord(List<ConsumerRecord<K, V>> handledRecords, ConsumerRecord<K, V> handledRecord) {
+    // Only add the record if it is not null
+    if (handledRecord != null) {
+      handledRecords.add(handledRecord);
+    }
+  }
+
+  private void maybeAddRecords(Map<TopicPartition, List<ConsumerRecord<K, V>>> filteredRecords,
+                               TopicPartition tp,
+                               List<ConsumerRecord<K, V>> records) {
+    if (!records.isEmpty()) {
+      filteredRecords.put(tp, records);
+    }
+  }
+
+  private static void rethrow(Throwable t) {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else {
+      throw new KafkaException("Failed to process consumer records.", t);
+    }
+  }
+
+  private ConsumerRecord<K, V> toConsumerRecord(TopicPartition tp,
+                                                ConsumerRecord<byte[], byte[]> consumerRecord,
+                                                MessageAssembler.AssembleResult assembleResult) {
+    // Incomplete large message segments and skipped messages are dropped before anything is deserialized.
+    if (assembleResult == null) {
+      return null;
+    }
+    V value = deserializeValue(tp, assembleResult);
+    if (value == null) {
+      return null;
+    }
+    K key = _keyDeserializer.deserialize(tp.topic(), consumerRecord.key());
+    if (_auditor != null) {
+      _auditor.recordPrimitive(tp.topic(), key, value, consumerRecord.timestamp(), 1L, consumerRecord.value().length,
+                               AuditType.SUCCESS);
+    }
+    return new ConsumerRecord<>(
+        consumerRecord.topic(),
+        consumerRecord.partition(),
+        consumerRecord.offset(),
+        consumerRecord.timestamp(),
+        consumerRecord.timestampType(),
+        consumerRecord.checksum(),
+        consumerRecord.serializedKeySize(),
+        assembleResult.messageSize(),
+        key,
+        value);
+  }
+
+  private V deserializeValue(TopicPartition tp, MessageAssembler.AssembleResult assembleResult) {
+    if (_valueBufferDeserializer != null) {
+      return _valueBufferDeserializer.deserialize(tp.topic(), assembleResult.messageBuffers());
+    }
+    return _valueDeserializer.deserialize(tp.topic(), assembleResult.messageBytes());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> BufferDeserializer<V> valueBufferDeserializer(Deserializer<V> valueDeserializer) {
+    return valueDeserializer instanceof BufferDeserializer ? (BufferDeserializer<V>) valueDeserializer : null;
   }
 
-  private byte[] parseAndMaybeTrackRecord(TopicPartition tp, long messageOffset, byte[] bytes) {
-    MessageAssembler.AssembleResult assembledResult = _messageAssembler.assemble(tp, messageOffset, bytes);
-    if (assembledResult.messageBytes() != null) {
+  private MessageAssembler.AssembleResult trackAssembleResult(TopicPartition tp,
+                                                              long messageOffset,
+                                                              MessageAssembler.AssembleResult assembledResult) {
+    if (assembledResult.hasMessage()) {
       LOG.trace("Got message {} from partition {}", messageOffset, tp);
       boolean shouldSkip = shouldSkip(tp, messageOffset);
       // The safe offset is the smaller one of the current message offset + 1 and current safe offset.
@@ -349,7 +522,7 @@ public class ConsumerRecordsProcessor<K, V> {
                   messageOffset, tp);
         return null;
       } else {
-        return assembledResult.messageBytes();
+        return assembledResult;
       }
     } else {
       _deliveredMessageOffsetTracker.addNonMessageOffset(tp, messageOffset);
@@ -4,6 +4,7 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,8 +51,23 @@ public class DefaultSegmentDeserializer implements Deserializer<LargeMessageSegm
     int sequenceNumber = byteBuffer.getInt();
     int numberOfSegments = byteBuffer.getInt();
     int messageSizeInBytes = byteBuffer.getInt();
-    ByteBuffer payload = byteBuffer.slice();
-    return new LargeMessageSegment(messageId, sequenceNumber, numberOfSegments, messageSizeInBytes, payload);
+    if (version < LargeMessageSegment.COMPRESSED_VERSION) {
+      return new LargeMessageSegment(messageId, sequenceNumber, numberOfSegments, messageSizeInBytes, byteBuffer.slice());
+    }
+    if (byteBuffer.remaining() < LargeMessageSegment.COMPRESSION_INFO_OVERHEAD) {
+      LOG.debug("Serialized segment size too small for the compression info. not large message segment.");
+      return null;
+    }
+    CompressionType compressionType;
+    try {
+      compressionType = CompressionType.forId(byteBuffer.get());
+    } catch (IllegalArgumentException e) {
+      LOG.debug("Unknown compression codec. not large message segment.");
+      return null;
+    }
+    int uncompressedMessageSizeInBytes = byteBuffer.getInt();
+    return new LargeMessageSegment(messageId, sequenceNumber, numberOfSegments, messageSizeInBytes, compressionType,
+                                   uncompressedMessageSizeInBytes, byteBuffer.slice());
   }
 
   @Override
@@ -4,8 +4,6 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
-import org.apache.kafka.common.serialization.Serializer;
-
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -20,7 +18,7 @@ import java.util.Map;
  * 4 bytes  - message size in bytes
  * X bytes  - payload
  */
-public class DefaultSegmentSerializer implements Serializer<LargeMessageSegment> {
+public class DefaultSegmentSerializer implements SegmentBufferSerializer {
   private final int CHECKSUM_LENGTH = Integer.BYTES;
 
   @Override
@@ -30,23 +28,49 @@ public class DefaultSegmentSerializer implements Serializer<LargeMessageSegment>
 
   @Override
   public byte[] serialize(String s, LargeMessageSegment segment) {
-    if (segment.numberOfSegments > 1) {
-      ByteBuffer byteBuffer = ByteBuffer.allocate(1 + LargeMessageSegment.SEGMENT_INFO_OVERHEAD +
-          segment.payload.limit() + CHECKSUM_LENGTH);
-      byteBuffer.put(LargeMessageSegment.CURRENT_VERSION);
-      byteBuffer.putInt((int) (segment.messageId.getMostSignificantBits() + segment.messageId.getLeastSignificantBits()));
-      byteBuffer.putLong(segment.messageId.getMostSignificantBits());
-      byteBuffer.putLong(segment.messageId.getLeastSignificantBits());
-      byteBuffer.putInt(segment.sequenceNumber);
-      byteBuffer.putInt(segment.numberOfSegments);
-      byteBuffer.putInt(segment.messageSizeInBytes);
-      byteBuffer.put(segment.payload);
+    if (hasHeader(segment)) {
+      ByteBuffer byteBuffer = ByteBuffer.allocate(serializedSize(segment));
+      serialize(segment, byteBuffer);
       return byteBuffer.array();
     } else {
       return segment.payloadArray();
     }
   }
 
+  @Override
+  public int serializedSize(LargeMessageSegment segment) {
+    if (hasHeader(segment)) {
+      int compressionInfoSize = segment.isCompressed() ? LargeMessageSegment.COMPRESSION_INFO_OVERHEAD : 0;
+      return 1 + LargeMessageSegment.SEGMENT_INFO_OVERHEAD + compressionInfoSize + segment.payload.limit() + CHECKSUM_LENGTH;
+    } else {
+      return segment.payload.limit();
+    }
+  }
+
+  @Override
+  public void serialize(LargeMessageSegment segment, ByteBuffer buffer) {
+    if (hasHeader(segment)) {
+      buffer.put(segment.isCompressed() ? LargeMessageSegment.COMPRESSED_VERSION : LargeMessageSegment.UNCOMPRESSED_VERSION);
+      buffer.putInt((int) (segment.messageId.getMostSignificantBits() + segment.messageId.getLeastSignificantBits()));
+      buffer.putLong(segment.messageId.getMostSignificantBits());
+      buffer.putLong(segment.messageId.getLeastSignificantBits());
+      buffer.putInt(segment.sequenceNumber);
+      buffer.putInt(segment.numberOfSegments);
+      buffer.putInt(segment.messageSizeInBytes);
+      if (segment.isCompressed()) {
+        buffer.put((byte) segment.compressionType.id);
+        buffer.putInt(segment.uncompressedMessageSizeInBytes);
+      }
+    }
+    buffer.put(segment.payload.duplicate());
+  }
+
+  // A single segment message is sent as its raw payload unless it is compressed, in which case the consumer needs the
+  // header to know the message has to be decompressed.
+  private static boolean hasHeader(LargeMessageSegment segment) {
+    return segment.numberOfSegments > 1 || segment.isCompressed();
+  }
+
   @Override
   public void close() {
 
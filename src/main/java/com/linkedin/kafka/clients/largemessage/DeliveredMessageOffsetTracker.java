@@ -5,17 +5,12 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.largemessage.errors.OffsetNotTrackedException;
-import java.util.Collections;
-import java.util.Iterator;
 import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -52,6 +47,7 @@ public class DeliveredMessageOffsetTracker {
     LOG.debug("Tracking offset for partition {}: messageOffset = {}, safeOffset = {}, messageStartingOffset = {}",
               tp, messageOffset, safeOffset, messageStartingOffset);
     PartitionOffsetTracker offsetTracker = getAndMaybeCreateOffsetTracker(tp, messageOffset);
+    offsetTracker.discardFrom(messageOffset);
     offsetTracker.updateCurrentSafeOffset(safeOffset);
     // Only update the delivered offset if the message was delivered.
     if (delivered) {
@@ -59,10 +55,32 @@ public class DeliveredMessageOffsetTracker {
     }
 
     if (messageOffset != messageStartingOffset || safeOffset != messageOffset + 1) {
-      MessageStartingAndSafeOffset messageOffsetInfo = new MessageStartingAndSafeOffset(safeOffset, messageStartingOffset);
-      offsetTracker.put(messageOffset, messageOffsetInfo);
-      LOG.trace("Tracked message({}): {}. Tracked Offset Range: [{}, {}]", messageOffset, messageOffsetInfo,
-                offsetTracker.earliestTrackedDeliveredOffset(), offsetTracker.delivered());
+      offsetTracker.put(messageOffset, safeOffset, messageStartingOffset);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Tracked message({}): {safeOffset = {}, startingOffset = {}}. Tracked Offset Range: [{}, {}]",
+                  messageOffset, safeOffset, messageStartingOffset, offsetTracker.earliestTrackedDeliveredOffset(),
+                  offsetTracker.delivered());
+      }
+    }
+  }
+
+  /**
+   * Track a run of messages that were delivered while there was no incomplete large message in the partition, i.e.
+   * each message is complete by itself and the safe offset after it is its offset + 1. This is equivalent to calling
+   * {@link #track(TopicPartition, long, long, long, boolean)} for each message in the run, but only updates the
+   * partition state once.
+   *
+   * @param tp                  the partition the messages are from
+   * @param firstOffset         the offset of the first message in the run
+   * @param lastOffset          the offset of the last message in the run
+   * @param lastDeliveredOffset the offset of the last delivered message in the run, or -1 if none was delivered.
+   */
+  public void trackCompleteMessages(TopicPartition tp, long firstOffset, long lastOffset, long lastDeliveredOffset) {
+    PartitionOffsetTracker offsetTracker = getAndMaybeCreateOffsetTracker(tp, firstOffset);
+    offsetTracker.discardFrom(firstOffset);
+    offsetTracker.updateCurrentSafeOffset(lastOffset + 1);
+    if (lastDeliveredOffset >= 0) {
+      offsetTracker.updateDelivered(lastDeliveredOffset);
     }
   }
 
@@ -74,7 +92,7 @@ public class DeliveredMessageOffsetTracker {
    */
   public void addNonMessageOffset(TopicPartition tp, long offset) {
     PartitionOffsetTracker offsetTracker = getAndMaybeCreateOffsetTracker(tp, offset);
-    offsetTracker.trackNonMessageOffsets(Collections.singleton(offset));
+    offsetTracker.addNonMessageOffset(offset);
   }
 
   private PartitionOffsetTracker getAndMaybeCreateOffsetTracker(TopicPartition tp, long offset) {
@@ -100,7 +118,7 @@ public class DeliveredMessageOffsetTracker {
                                               + ", " + offsetTracker.delivered() + "], SafeOffset = "
                                               + offsetTracker.currentSafeOffset());
     }
-    return offsetTracker.get(messageOffset).safeOffset;
+    return offsetTracker.safeOffset(messageOffset);
   }
 
   public Map<TopicPartition, Long> safeOffsets() {
@@ -124,7 +142,7 @@ public class DeliveredMessageOffsetTracker {
                                               + ", " + offsetTracker.delivered() + "], SafeOffset = "
                                               + offsetTracker.currentSafeOffset());
     }
-    return offsetTracker.get(messageOffset).messageStartingOffset;
+    return offsetTracker.startingOffset(messageOffset);
   }
 
   public Long closestDeliveredUpTo(TopicPartition tp, long upToMessageOffset) {
@@ -178,16 +196,31 @@ public class DeliveredMessageOffsetTracker {
     return offsetTracker != null && offsetTracker.delivered() > 0;
   }
 
-  private class PartitionOffsetTracker extends LinkedHashMap<Long, MessageStartingAndSafeOffset> {
+  /**
+   * The tracked state of a partition. The offsets are tracked in increasing order, so the tracked messages and the
+   * non message offsets are kept in sorted primitive ring buffers and looked up with binary searches. The non message
+   * offsets are kept as ranges of contiguous offsets, e.g. all the segments of a large message except the last one
+   * usually take a single range, so they are added, looked up and evicted in O(log ranges). If an offset
+   * that is not greater than a tracked offset is tracked again, e.g. the same records are processed again, the tracked
+   * offsets from that offset on are discarded.
+   */
+  private class PartitionOffsetTracker {
+    private static final int SAFE_OFFSET = 1;
+    private static final int STARTING_OFFSET = 2;
+    private static final int RANGE_END = 1;
     volatile private long _earliestTrackedOffset;
     private long _currentSafeOffset;
-    private Long _delivered;
-    private TreeSet<Long> _nonMessageOffsets;
+    private long _delivered;
+    // The messages whose safe offset or starting offset is not implied by their offset.
+    private final LongRingBuffer _messages;
+    // The non message offsets as [start, end] ranges. Adjacent ranges are always merged.
+    private final LongRingBuffer _nonMessageOffsets;
 
-    PartitionOffsetTracker(Long earliestTrackedOffset) {
+    PartitionOffsetTracker(long earliestTrackedOffset) {
       _currentSafeOffset = earliestTrackedOffset;
       _earliestTrackedOffset = earliestTrackedOffset;
-      _nonMessageOffsets = new TreeSet<>();
+      _messages = new LongRingBuffer(3);
+      _nonMessageOffsets = new LongRingBuffer(2);
       _delivered = -1L;
     }
 
@@ -213,84 +246,208 @@ public class DeliveredMessageOffsetTracker {
      */
     long earliestTrackedDeliveredOffset() {
       long earliestTrackedOffset = _earliestTrackedOffset;
-      while (_nonMessageOffsets.contains(earliestTrackedOffset)) {
-        earliestTrackedOffset++;
+      int index = nonMessageRangeIndex(earliestTrackedOffset);
+      return index < 0 ? earliestTrackedOffset : _nonMessageOffsets.get(index, RANGE_END) + 1;
+    }
+
+    void addNonMessageOffset(long offset) {
+      discardFrom(offset);
+      int last = _nonMessageOffsets.size() - 1;
+      if (last >= 0 && _nonMessageOffsets.get(last, RANGE_END) == offset - 1) {
+        _nonMessageOffsets.set(last, RANGE_END, offset);
+      } else {
+        _nonMessageOffsets.set(_nonMessageOffsets.append(offset), RANGE_END, offset);
       }
-      return earliestTrackedOffset;
     }
 
-    void trackNonMessageOffsets(Set<Long> offsets) {
-      _nonMessageOffsets.addAll(offsets);
+    /**
+     * Discard the tracked offsets that are greater than or equal to the given offset, which is being tracked again.
+     */
+    void discardFrom(long offset) {
+      _messages.discardFrom(offset);
+      _nonMessageOffsets.discardFrom(offset);
+      int last = _nonMessageOffsets.size() - 1;
+      if (last >= 0 && _nonMessageOffsets.get(last, RANGE_END) >= offset) {
+        _nonMessageOffsets.set(last, RANGE_END, offset - 1);
+      }
     }
 
     boolean isTrackedMessageOffset(long messageOffset) {
       return messageOffset >= _earliestTrackedOffset
           && messageOffset <= _delivered
-          && !_nonMessageOffsets.contains(messageOffset);
+          && !isNonMessageOffset(messageOffset);
     }
 
     boolean isOffsetInTrackedRange(long messageOffset) {
       return messageOffset >= _earliestTrackedOffset && messageOffset <= _delivered;
     }
 
-    Long delivered() {
+    long delivered() {
       return _delivered;
     }
 
     Long closestDeliveredUpTo(long upToMessageOffset) {
-      long closestSmallerMessageOffset = upToMessageOffset;
-      while (_nonMessageOffsets.contains(closestSmallerMessageOffset)) {
-        closestSmallerMessageOffset--;
-      }
+      // Adjacent ranges are merged, so the offset before a range is always a message offset.
+      int index = nonMessageRangeIndex(upToMessageOffset);
+      long closestSmallerMessageOffset = index < 0 ? upToMessageOffset : _nonMessageOffsets.key(index) - 1;
       return closestSmallerMessageOffset < _earliestTrackedOffset ? null : closestSmallerMessageOffset;
     }
 
-    @Override
-    public MessageStartingAndSafeOffset get(Object key) {
-      Long messageOffset = (Long) key;
-      assert (!_nonMessageOffsets.contains(messageOffset));
-      MessageStartingAndSafeOffset messageStartingAndSafeOffset = super.get(messageOffset);
-      if (messageStartingAndSafeOffset == null) {
-        messageStartingAndSafeOffset = new MessageStartingAndSafeOffset(messageOffset + 1, messageOffset);
-      }
-      return messageStartingAndSafeOffset;
-    }
-
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<Long, MessageStartingAndSafeOffset> entry) {
-      boolean shouldRemove = this.size() > _maxMessagesToTrack;
-      if (shouldRemove) {
-        _earliestTrackedOffset = entry.getKey() + 1;
-        // Remove all the old offsets from the non-message set.
-        Iterator<Long> iter = _nonMessageOffsets.iterator();
-        while (iter.hasNext()) {
-          long offset = iter.next();
-          if (offset < entry.getKey()) {
-            iter.remove();
-          } else {
-            break;
-          }
-        }
+    long safeOffset(long messageOffset) {
+      assert (!isNonMessageOffset(messageOffset));
+      int index = messageIndex(messageOffset);
+      return index < 0 ? messageOffset + 1 : _messages.get(index, SAFE_OFFSET);
+    }
+
+    long startingOffset(long messageOffset) {
+      assert (!isNonMessageOffset(messageOffset));
+      int index = messageIndex(messageOffset);
+      return index < 0 ? messageOffset : _messages.get(index, STARTING_OFFSET);
+    }
+
+    void put(long messageOffset, long safeOffset, long messageStartingOffset) {
+      int index = _messages.append(messageOffset);
+      _messages.set(index, SAFE_OFFSET, safeOffset);
+      _messages.set(index, STARTING_OFFSET, messageStartingOffset);
+      if (_messages.size() > _maxMessagesToTrack) {
+        long evictedOffset = _messages.key(0);
+        _messages.removeFirst(1);
+        _earliestTrackedOffset = evictedOffset + 1;
+        // Remove all the old offsets from the non-message offsets. The evicted offset is a message offset so no range
+        // contains it.
+        _nonMessageOffsets.removeFirst(_nonMessageOffsets.floorIndex(evictedOffset) + 1);
         LOG.trace("Removed message({}) from delivered message offset tracker. New earliest tracked offset = {}, " +
-                      "total message tracked = {}, total invalid offsets = {}", entry.getKey(), _earliestTrackedOffset,
-                  this.size(), _nonMessageOffsets.size());
+                      "total message tracked = {}, total invalid offset ranges = {}", evictedOffset, _earliestTrackedOffset,
+                  _messages.size(), _nonMessageOffsets.size());
       }
-      return shouldRemove;
+    }
+
+    private int messageIndex(long messageOffset) {
+      int index = _messages.floorIndex(messageOffset);
+      return index >= 0 && _messages.key(index) == messageOffset ? index : -1;
+    }
+
+    private boolean isNonMessageOffset(long offset) {
+      return nonMessageRangeIndex(offset) >= 0;
+    }
+
+    /**
+     * @return the index of the non message offset range containing the given offset, or -1 if the offset is not a
+     * non message offset.
+     */
+    private int nonMessageRangeIndex(long offset) {
+      int index = _nonMessageOffsets.floorIndex(offset);
+      return index >= 0 && _nonMessageOffsets.get(index, RANGE_END) >= offset ? index : -1;
     }
   }
 
-  private class MessageStartingAndSafeOffset {
-    final long safeOffset;
-    final long messageStartingOffset;
+  /**
+   * A growable ring buffer of records of {@code width} longs. The first long of a record is its key and the records
+   * are kept in increasing key order: appending a key removes the records whose key is not smaller than it first.
+   */
+  private static class LongRingBuffer {
+    private static final long[] EMPTY = new long[0];
+    private static final int MIN_CAPACITY = 8;
+    private final int _width;
+    private long[] _buffer;
+    private int _head;
+    private int _size;
+
+    LongRingBuffer(int width) {
+      _width = width;
+      _buffer = EMPTY;
+      _head = 0;
+      _size = 0;
+    }
+
+    int size() {
+      return _size;
+    }
+
+    long key(int index) {
+      return _buffer[position(index)];
+    }
+
+    long get(int index, int field) {
+      return _buffer[position(index) + field];
+    }
+
+    void set(int index, int field, long value) {
+      _buffer[position(index) + field] = value;
+    }
+
+    /**
+     * Append a record with the given key and return its index.
+     */
+    int append(long key) {
+      discardFrom(key);
+      if (_size == capacity()) {
+        grow();
+      }
+      int index = _size++;
+      _buffer[position(index)] = key;
+      return index;
+    }
+
+    /**
+     * Remove the records whose key is greater than or equal to the given key.
+     */
+    void discardFrom(long key) {
+      if (_size > 0 && key(_size - 1) >= key) {
+        _size = floorIndex(key - 1) + 1;
+      }
+    }
+
+    void removeFirst(int count) {
+      if (count >= _size) {
+        _head = 0;
+        _size = 0;
+      } else if (count > 0) {
+        _head = (_head + count) % capacity();
+        _size -= count;
+      }
+    }
+
+    /**
+     * @return the index of the last record whose key is smaller than or equals to the given key, or -1 if there
+     * is no such record.
+     */
+    int floorIndex(long key) {
+      int low = 0;
+      int high = _size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        long midKey = key(mid);
+        if (midKey < key) {
+          low = mid + 1;
+        } else if (midKey > key) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return high;
+    }
+
+    private int capacity() {
+      return _buffer.length / _width;
+    }
 
-    MessageStartingAndSafeOffset(long safeOffset, long messageStartingOffset) {
-      this.safeOffset = safeOffset;
-      this.messageStartingOffset = messageStartingOffset;
+    private int position(int index) {
+      int slot = _head + index;
+      int capacity = capacity();
+      return (slot < capacity ? slot : slot - capacity) * _width;
     }
 
-    @Override
-    public String toString() {
-      return String.format("{safeOffset = %d, startingOffset = %d}", safeOffset, messageStartingOffset);
+    private void grow() {
+      int capacity = capacity();
+      long[] buffer = new long[Math.max(MIN_CAPACITY, capacity * 2) * _width];
+      // Copy the records in order so the head of the new buffer is at 0.
+      int firstPart = Math.min(_size, capacity - _head);
+      System.arraycopy(_buffer, _head * _width, buffer, 0, firstPart * _width);
+      System.arraycopy(_buffer, 0, buffer, firstPart * _width, (_size - firstPart) * _width);
+      _buffer = buffer;
+      _head = 0;
     }
   }
 }
@@ -5,18 +5,33 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.largemessage.errors.InvalidSegmentException;
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
 import org.apache.kafka.common.TopicPartition;
 
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 /**
  * The class to buffer incomplete message segments.
+ * <p>
+ * By default the segments are buffered as they are. When the message is completed the segments are handed over in
+ * order, and they are only copied into one byte array if {@link SegmentAddResult#serializedMessage()} is called.
+ * If the message buffer is preallocated, a buffer of the full message size is allocated when the first segment is
+ * added, and every segment is copied into the buffer at its position in the message. The position of a segment is
+ * derived from the size of the segments, which is the same for all the segments except the last one.
  */
 public class LargeMessage {
+  // The buffered segments when the message buffer is not preallocated.
   private final Map<Integer, ByteBuffer> _segments;
+  // The message buffer and the sequence numbers of the segments that have been copied into it when the message
+  // buffer is preallocated.
+  private final boolean _preallocateMessageBuffer;
+  private byte[] _messageBuffer;
+  private final BitSet _receivedSegments;
+  private int _segmentSize;
   private final int _messageSize;
   private final int _numberOfSegments;
   private final TopicPartition _tp;
@@ -25,9 +40,22 @@ public class LargeMessage {
   private long _bufferedBytes;
 
   LargeMessage(TopicPartition tp, UUID messageId, long startingOffset, int messageSize, int numberOfSegments) {
+    this(tp, messageId, startingOffset, messageSize, numberOfSegments, false);
+  }
+
+  LargeMessage(TopicPartition tp,
+               UUID messageId,
+               long startingOffset,
+               int messageSize,
+               int numberOfSegments,
+               boolean preallocateMessageBuffer) {
     _messageSize = messageSize;
     _numberOfSegments = numberOfSegments;
-    _segments = new HashMap<>();
+    _preallocateMessageBuffer = preallocateMessageBuffer;
+    _segments = preallocateMessageBuffer ? null : new HashMap<>();
+    _receivedSegments = preallocateMessageBuffer ? new BitSet() : null;
+    _messageBuffer = null;
+    _segmentSize = -1;
     _bufferedBytes = 0;
     _tp = tp;
     _messageId = messageId;
@@ -38,7 +66,33 @@ public class LargeMessage {
     return _bufferedBytes;
   }
 
+  /**
+   * @return The number of bytes of memory held by this message. It is the full message size once the first segment
+   * is added if the message buffer is preallocated, otherwise it is the size of the buffered segments.
+   */
+  public synchronized long memorySizeInBytes() {
+    if (_preallocateMessageBuffer) {
+      return _messageBuffer == null ? 0 : _messageSize;
+    } else {
+      return _bufferedBytes;
+    }
+  }
+
+  /**
+   * @return The number of bytes of memory adding the given segment to this message may take.
+   */
+  synchronized long memorySizeToAdd(LargeMessageSegment segment) {
+    if (_preallocateMessageBuffer) {
+      return _messageBuffer == null ? _messageSize : 0;
+    } else {
+      return segment.payload.remaining();
+    }
+  }
+
   public synchronized SegmentAddResult addSegment(LargeMessageSegment segment, long offset) {
+    if (_preallocateMessageBuffer) {
+      return copySegment(segment);
+    }
     int seq = segment.sequenceNumber;
     int segmentSize = segment.payload.remaining();
     validateSegment(segment);
@@ -47,8 +101,8 @@ public class LargeMessage {
       _segments.put(seq, segment.payload);
       _bufferedBytes += segmentSize;
       if (_segments.size() == _numberOfSegments) {
-        // If we have got all the segments, assemble the original serialized message.
-        return new SegmentAddResult(assembleMessage(), segmentSize, _startingOffset);
+        // If we have got all the segments, hand over the segments of the original serialized message.
+        return new SegmentAddResult(messageSegments(), segmentSize, _startingOffset);
       }
     } else {
       // duplicate segment
@@ -75,6 +129,57 @@ public class LargeMessage {
         _tp, _messageId, _numberOfSegments, _messageSize, _bufferedBytes);
   }
 
+  private SegmentAddResult copySegment(LargeMessageSegment segment) {
+    int seq = segment.sequenceNumber;
+    int segmentSize = segment.payload.remaining();
+    validateSegment(segment);
+    // Ignore duplicated segment.
+    if (_receivedSegments.get(seq)) {
+      return new SegmentAddResult(null, 0, _startingOffset);
+    }
+    int position = segmentPosition(segment);
+    if (_messageBuffer == null) {
+      _messageBuffer = new byte[_messageSize];
+    }
+    segment.payload.duplicate().get(_messageBuffer, position, segmentSize);
+    _receivedSegments.set(seq);
+    _bufferedBytes += segmentSize;
+    if (_receivedSegments.cardinality() == _numberOfSegments) {
+      if (_bufferedBytes != _messageSize) {
+        throw new InvalidSegmentException("Buffered bytes in the message should equal to message size."
+            + " Buffered bytes = " + _bufferedBytes + "message size = " + _messageSize);
+      }
+      // The message buffer is handed over as the assembled message without another copy.
+      return new SegmentAddResult(new ByteBuffer[]{ByteBuffer.wrap(_messageBuffer)}, segmentSize, _startingOffset);
+    }
+    return new SegmentAddResult(null, segmentSize, _startingOffset);
+  }
+
+  private int segmentPosition(LargeMessageSegment segment) {
+    int seq = segment.sequenceNumber;
+    int segmentSize = segment.payload.remaining();
+    if (seq == _numberOfSegments - 1) {
+      // The last segment ends at the end of the message.
+      if (_segmentSize > 0 && (long) _segmentSize * seq + segmentSize != _messageSize) {
+        throw new InvalidSegmentException("Invalid segment: " + segment + ". The last segment size " + segmentSize
+            + " does not match the segment size " + _segmentSize + " and the message size " + _messageSize);
+      }
+      return _messageSize - segmentSize;
+    }
+    if (_segmentSize < 0) {
+      _segmentSize = segmentSize;
+    } else if (_segmentSize != segmentSize) {
+      throw new InvalidSegmentException("Invalid segment: " + segment + ". All the segments except the last one "
+          + "should have the same size " + _segmentSize);
+    }
+    long position = (long) seq * segmentSize;
+    if (position + segmentSize > _messageSize) {
+      throw new InvalidSegmentException("Invalid segment: " + segment + ". The segment ends at " + (position + segmentSize)
+          + " which is beyond the message size " + _messageSize);
+    }
+    return (int) position;
+  }
+
   private void validateSegment(LargeMessageSegment segment) {
     int segmentSize = segment.payload.remaining();
     int seq = segment.sequenceNumber;
@@ -88,53 +193,71 @@ public class LargeMessage {
       throw new InvalidSegmentException("Detected UUID conflict. Segment: " + segment);
     }
 
-    if (!_segments.containsKey(seq) && _bufferedBytes + segmentSize > _messageSize) {
+    boolean received = _preallocateMessageBuffer ? _receivedSegments.get(seq) : _segments.containsKey(seq);
+    if (!received && _bufferedBytes + segmentSize > _messageSize) {
       throw new InvalidSegmentException("Invalid segment: " + segment + ". Segments have more bytes than the " +
           "message has. Message size =" + _messageSize + ", segments total bytes = " +
           (_bufferedBytes + segmentSize));
     }
   }
 
-  private byte[] assembleMessage() {
+  private ByteBuffer[] messageSegments() {
     if (_bufferedBytes != _messageSize) {
       throw new InvalidSegmentException("Buffered bytes in the message should equal to message size."
           + " Buffered bytes = " + _bufferedBytes + "message size = " + _messageSize);
     }
-    byte[] serializedMessage = new byte[_messageSize];
-    int segmentStart = 0;
+    ByteBuffer[] segments = new ByteBuffer[_numberOfSegments];
     for (int i = 0; i < _numberOfSegments; i++) {
-      ByteBuffer payload = _segments.get(i);
-      int payloadSize = payload.remaining();
-      payload.get(serializedMessage, segmentStart, payloadSize);
-      segmentStart += payloadSize;
+      segments[i] = _segments.get(i);
     }
-    assert (segmentStart == _messageSize);
-    return serializedMessage;
+    return segments;
   }
 
   /**
    * This is the container class to return the result of a segment addition.
    */
   class SegmentAddResult {
-    private final byte[] _serializedMessage;
+    private final ByteBuffer[] _messageSegments;
+    private byte[] _serializedMessage;
     private final long _startingOffset;
     private final int _bytesAdded;
 
-    SegmentAddResult(byte[] serializedMessage, int bytesAdded, long startingOffset) {
-      _serializedMessage = serializedMessage;
+    SegmentAddResult(ByteBuffer[] messageSegments, int bytesAdded, long startingOffset) {
+      _messageSegments = messageSegments;
+      _serializedMessage = null;
       _bytesAdded = bytesAdded;
       _startingOffset = startingOffset;
     }
 
     /**
-     * Return the completed large message in its serialized bytes format.
+     * @return true if a large message is completed, false otherwise.
+     */
+    boolean isMessageCompleted() {
+      return _messageSegments != null;
+    }
+
+    /**
+     * Return the completed large message in its serialized bytes format. The message is copied into a new byte array
+     * unless it is a single buffer that spans its whole backing array.
      *
      * @return The assembled serialized message if a large message is completed, otherwise null.
      */
     byte[] serializedMessage() {
+      if (_serializedMessage == null && _messageSegments != null) {
+        _serializedMessage = LiKafkaClientsUtils.toByteArray(_messageSegments);
+      }
       return _serializedMessage;
     }
 
+    /**
+     * Return the completed large message as the payloads of its segments in order, without copying them.
+     *
+     * @return The segments of the serialized message if a large message is completed, otherwise null.
+     */
+    ByteBuffer[] messageSegments() {
+      return _messageSegments;
+    }
+
     /**
      * @return The size of segment in bytes that has been added to the buffer. It does not count for duplicate segment.
      */
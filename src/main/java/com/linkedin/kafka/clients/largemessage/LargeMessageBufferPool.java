@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
  */
 
 package com.linkedin.kafka.clients.largemessage;
@@ -7,120 +7,273 @@ package com.linkedin.kafka.clients.largemessage;
 import com.linkedin.kafka.clients.largemessage.errors.InvalidSegmentException;
 import com.linkedin.kafka.clients.largemessage.errors.LargeMessageDroppedException;
 import com.linkedin.kafka.clients.utils.QueuedMap;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Count;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Rate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * The class to hold incomplete messages. This class assumes it has full control over the segment buffered.
  * So once the segment is passed to this class, user should not change the segment anymore.
  * <p>
- * This class is thread safe. We simply use the synchronized method here because large messages are expected
- * to be sparse.
+ * This class is thread safe. The incomplete messages are kept in per partition shards, each shard is guarded by its
+ * own lock so the segments from different partitions can be assembled concurrently. The buffer capacity is shared
+ * by all the partitions and tracked with an atomic counter. When the buffer is full, the eldest incomplete message
+ * across all the partitions is evicted.
+ * <p>
+ * A thread never holds the locks of two shards at the same time, so evicting a message from another partition does
+ * not block on the partition the thread is adding a segment to.
+ * <p>
+ * If a {@link Metrics} is given, the pool reports its buffer usage, the number of incomplete messages, the evicted and
+ * expired messages, and for each assembled message the number of segments and the time and offset span from its first
+ * to its last segment.
  */
 public class LargeMessageBufferPool {
   private static final Logger LOG = LoggerFactory.getLogger(LargeMessageBufferPool.class);
-  private final QueuedMap<UUID, LargeMessage> _incompleteMessageMap;
-  private final Map<TopicPartition, Set<UUID>> _incompleteMessageByPartition;
-  private final LargeMessageOffsetTracker _offsetTracker;
+  private final ConcurrentMap<TopicPartition, PartitionShard> _shards;
   private final long _bufferCapacity;
   private final long _expirationOffsetGap;
   private final boolean _exceptionOnMessageDropped;
-  private long _bufferUsed;
+  private final boolean _preallocateMessageBuffers;
+  private final AtomicLong _bufferUsed;
+  // The sequence used to order the incomplete messages across partitions by the time they are created.
+  private final AtomicLong _messageSequence;
+  // The sensors of the pool, null if no metrics is given.
+  private final Sensor _evictionSensor;
+  private final Sensor _expirationSensor;
+  private final Sensor _segmentsPerMessageSensor;
+  private final Sensor _assemblyTimeSensor;
+  private final Sensor _assemblyOffsetSpanSensor;
 
 
   // Constructor for unit test purpose.
   LargeMessageBufferPool(long bufferCapacity, long expirationOffsetGap, boolean exceptionOnMessaegDropped) {
-    _incompleteMessageMap = new QueuedMap<>();
-    _incompleteMessageByPartition = new HashMap<>();
+    this(bufferCapacity, expirationOffsetGap, exceptionOnMessaegDropped, false);
+  }
+
+  LargeMessageBufferPool(long bufferCapacity,
+                         long expirationOffsetGap,
+                         boolean exceptionOnMessaegDropped,
+                         boolean preallocateMessageBuffers) {
+    this(bufferCapacity, expirationOffsetGap, exceptionOnMessaegDropped, preallocateMessageBuffers, null);
+  }
+
+  /**
+   * @param bufferCapacity the maximum number of bytes used to buffer the incomplete messages.
+   * @param expirationOffsetGap the offset gap after which an incomplete message expires.
+   * @param exceptionOnMessaegDropped whether to throw exception when a message is dropped due to buffer full.
+   * @param preallocateMessageBuffers whether to allocate a buffer of the full message size when the first segment
+   *                                  of a message arrives. The full message size is charged against the buffer
+   *                                  capacity when the buffer is allocated. See {@link LargeMessage}.
+   * @param metrics the metrics to register the sensors of the pool to, or null if the metrics are not needed.
+   */
+  LargeMessageBufferPool(long bufferCapacity,
+                         long expirationOffsetGap,
+                         boolean exceptionOnMessaegDropped,
+                         boolean preallocateMessageBuffers,
+                         Metrics metrics) {
+    _preallocateMessageBuffers = preallocateMessageBuffers;
+    _shards = new ConcurrentHashMap<>();
     _bufferCapacity = bufferCapacity;
     _expirationOffsetGap = expirationOffsetGap;
-    _offsetTracker = new LargeMessageOffsetTracker();
-    _bufferUsed = 0L;
+    _bufferUsed = new AtomicLong(0L);
+    _messageSequence = new AtomicLong(0L);
     _exceptionOnMessageDropped = exceptionOnMessaegDropped;
+    if (metrics != null) {
+      metrics.addMetric(metricName(metrics, "message-assembler-buffer-bytes-used",
+                                   "The number of bytes used to buffer the incomplete large messages."),
+                        (config, now) -> bufferUsed());
+      metrics.addMetric(metricName(metrics, "message-assembler-incomplete-messages",
+                                   "The number of incomplete large messages in the buffer."),
+                        (config, now) -> size());
+
+      _evictionSensor = metrics.sensor("large-message-evictions");
+      _evictionSensor.add(metricName(metrics, "large-message-eviction-rate",
+                                     "The number of incomplete large messages evicted per second because the buffer is full."),
+                          new Rate(new Count()));
+      _expirationSensor = metrics.sensor("large-message-expirations");
+      _expirationSensor.add(metricName(metrics, "large-message-expiration-rate",
+                                       "The number of incomplete large messages expired per second by the expiration offset gap."),
+                            new Rate(new Count()));
+
+      _segmentsPerMessageSensor = metrics.sensor("assembled-message-segments");
+      _segmentsPerMessageSensor.add(metricName(metrics, "segments-per-assembled-message-avg",
+                                               "The average number of segments of an assembled large message."),
+                                    new Avg());
+      _segmentsPerMessageSensor.add(metricName(metrics, "segments-per-assembled-message-max",
+                                               "The max number of segments of an assembled large message."),
+                                    new Max());
+      _assemblyTimeSensor = metrics.sensor("large-message-assembly-time");
+      _assemblyTimeSensor.add(metricName(metrics, "large-message-assembly-time-avg",
+                                         "The average time in ms from the first to the last segment of an assembled large message."),
+                              new Avg());
+      _assemblyTimeSensor.add(metricName(metrics, "large-message-assembly-time-max",
+                                         "The max time in ms from the first to the last segment of an assembled large message."),
+                              new Max());
+      _assemblyOffsetSpanSensor = metrics.sensor("large-message-offset-span");
+      _assemblyOffsetSpanSensor.add(metricName(metrics, "large-message-offset-span-avg",
+                                               "The average offset span from the first to the last segment of an assembled large message."),
+                                    new Avg());
+      _assemblyOffsetSpanSensor.add(metricName(metrics, "large-message-offset-span-max",
+                                               "The max offset span from the first to the last segment of an assembled large message."),
+                                    new Max());
+    } else {
+      _evictionSensor = null;
+      _expirationSensor = null;
+      _segmentsPerMessageSensor = null;
+      _assemblyTimeSensor = null;
+      _assemblyOffsetSpanSensor = null;
+    }
   }
 
-  synchronized long bufferUsed() {
-    return _bufferUsed;
+  long bufferUsed() {
+    return _bufferUsed.get();
   }
 
-  synchronized int size() {
-    return _incompleteMessageMap.size();
+  int numPartitions() {
+    return _shards.size();
   }
 
-  synchronized LargeMessage.SegmentAddResult tryCompleteMessage(TopicPartition tp, long offset, LargeMessageSegment segment) {
-    LargeMessage message = validateSegmentAndGetMessage(tp, segment, offset);
+  int size() {
+    int size = 0;
+    for (PartitionShard shard : _shards.values()) {
+      synchronized (shard) {
+        size += shard.size();
+      }
+    }
+    return size;
+  }
 
-    int segmentSize = segment.payload.remaining();
-    maybeEvictMessagesForSpace(segmentSize);
+  LargeMessage.SegmentAddResult tryCompleteMessage(TopicPartition tp, long offset, LargeMessageSegment segment) {
+    validateSegment(segment);
+    PartitionShard shard;
+    LargeMessage message;
+    long spaceNeeded;
+    while (true) {
+      shard = shard(tp);
+      synchronized (shard) {
+        // The shard may have been removed by clear() after we got it, get the new shard of the partition in that case.
+        if (shard.isRemoved()) {
+          continue;
+        }
+        message = shard.getOrCreateMessage(segment, offset);
+        spaceNeeded = message.memorySizeToAdd(segment);
+        break;
+      }
+    }
+
+    // Reserve the space without holding the lock of the shard because it may evict messages from other shards.
+    maybeEvictMessagesForSpace(spaceNeeded);
 
-    // Check if this segment completes the large message.
     UUID messageId = segment.messageId;
-    LargeMessage.SegmentAddResult segmentAddResult = message.addSegment(segment, offset);
-    _bufferUsed += segmentAddResult.bytesAdded();
-    LOG.trace("Added {} bytes to messageId={}", segmentAddResult.bytesAdded(), messageId);
-    if (segmentAddResult.serializedMessage() != null) {
-      LOG.debug("Message {} completed.", messageId);
-      removeMessage(messageId);
-      _offsetTracker.untrackMessage(tp, messageId);
-      _incompleteMessageByPartition.get(tp).remove(messageId);
-    } else {
-      Set<UUID> uuidSetForPartition = _incompleteMessageByPartition.get(tp);
-      if (uuidSetForPartition == null) {
-        uuidSetForPartition = new HashSet<>();
-        _incompleteMessageByPartition.put(tp, uuidSetForPartition);
+    long spaceUsed = 0;
+    try {
+      synchronized (shard) {
+        if (!shard.contains(message)) {
+          // The message has been evicted to make room for other segments.
+          return message.new SegmentAddResult(null, 0, message.startingOffset());
+        }
+        // Check if this segment completes the large message.
+        long memorySizeBefore = message.memorySizeInBytes();
+        LargeMessage.SegmentAddResult segmentAddResult = message.addSegment(segment, offset);
+        spaceUsed = message.memorySizeInBytes() - memorySizeBefore;
+        LOG.trace("Added {} bytes to messageId={}", segmentAddResult.bytesAdded(), messageId);
+        if (segmentAddResult.isMessageCompleted()) {
+          LOG.debug("Message {} completed.", messageId);
+          BufferedMessage completed = shard.removeMessage(messageId);
+          if (_segmentsPerMessageSensor != null) {
+            long now = System.currentTimeMillis();
+            _segmentsPerMessageSensor.record(segment.numberOfSegments, now);
+            _assemblyTimeSensor.record(now - completed.createTimeMs, now);
+            _assemblyOffsetSpanSensor.record(offset - message.startingOffset(), now);
+          }
+        }
+
+        // Expire message if necessary.
+        shard.expireMessagesUntilOffset(offset - _expirationOffsetGap);
+        return segmentAddResult;
       }
-      uuidSetForPartition.add(messageId);
-      _offsetTracker.maybeTrackMessage(tp, messageId, offset);
+    } finally {
+      // Release the reserved space that is not used, e.g. for duplicate segments.
+      _bufferUsed.addAndGet(spaceUsed - spaceNeeded);
     }
+  }
 
-    // Expire message if necessary.
-    for (UUID expiredMessageId : _offsetTracker.expireMessageUntilOffset(tp, offset - _expirationOffsetGap)) {
-      removeMessage(expiredMessageId);
-      _incompleteMessageByPartition.get(tp).remove(expiredMessageId);
+  public Map<TopicPartition, Long> safeOffsets() {
+    Map<TopicPartition, Long> safeOffsetMap = new HashMap<>();
+    for (PartitionShard shard : _shards.values()) {
+      synchronized (shard) {
+        LargeMessage eldest = shard.eldestMessage();
+        if (eldest != null) {
+          safeOffsetMap.put(shard.topicPartition(), eldest.startingOffset());
+        }
+      }
     }
-
-    return segmentAddResult;
+    return safeOffsetMap.isEmpty() ? Collections.emptyMap() : safeOffsetMap;
   }
 
-  public synchronized Map<TopicPartition, Long> safeOffsets() {
-    return _offsetTracker.safeOffsets();
+  public long safeOffset(TopicPartition tp) {
+    PartitionShard shard = _shards.get(tp);
+    if (shard == null) {
+      return Long.MAX_VALUE;
+    }
+    synchronized (shard) {
+      LargeMessage eldest = shard.eldestMessage();
+      return eldest == null ? Long.MAX_VALUE : eldest.startingOffset();
+    }
   }
 
-  public synchronized long safeOffset(TopicPartition tp) {
-    return _offsetTracker.safeOffset(tp);
+  public void clear() {
+    for (PartitionShard shard : _shards.values()) {
+      removeShard(shard);
+    }
   }
 
-  public synchronized void clear() {
-    _incompleteMessageMap.clear();
-    _offsetTracker.clear();
-    _bufferUsed = 0L;
+  public void clear(TopicPartition tp) {
+    PartitionShard shard = _shards.get(tp);
+    if (shard != null) {
+      removeShard(shard);
+    }
   }
 
-  public synchronized void clear(TopicPartition tp) {
-    Set<UUID> uuidSetForPartition = _incompleteMessageByPartition.get(tp);
-    if (uuidSetForPartition != null) {
-      for (UUID messageId : uuidSetForPartition) {
-        removeMessage(messageId);
-        _offsetTracker.untrackMessage(tp, messageId);
-      }
-      _incompleteMessageByPartition.remove(tp);
-      _offsetTracker.clear(tp);
+  /**
+   * Drop the incomplete messages of a partition and remove its shard, so the shards of the partitions that are no
+   * longer consumed do not accumulate. A thread still holding the removed shard sees that it is removed and uses the
+   * new shard of the partition instead.
+   */
+  private void removeShard(PartitionShard shard) {
+    synchronized (shard) {
+      shard.clear();
+      shard.markRemoved();
+      _shards.remove(shard.topicPartition(), shard);
     }
   }
 
-  private void removeMessage(UUID messageId) {
-    LargeMessage message = _incompleteMessageMap.remove(messageId);
-    if (message != null) {
-      _bufferUsed -= message.bufferedSizeInBytes();
+  private PartitionShard shard(TopicPartition tp) {
+    PartitionShard shard = _shards.get(tp);
+    if (shard == null) {
+      PartitionShard newShard = new PartitionShard(tp);
+      shard = _shards.putIfAbsent(tp, newShard);
+      if (shard == null) {
+        shard = newShard;
+      }
     }
+    return shard;
   }
 
   private void maybeEvictMessagesForSpace(long freeSpaceNeeded) {
@@ -130,50 +283,84 @@ public class LargeMessageBufferPool {
     }
     // When the eldest message is the current message, the message will not be completed. This indicates the buffer
     // capacity is too small to hold even one message.
-    while (bufferUsed() + freeSpaceNeeded > _bufferCapacity) {
-      LargeMessage message = evictEldestMessage();
-      if (message != null) {
-        _offsetTracker.untrackMessage(message.topicPartition(), message.messageId());
-        _incompleteMessageByPartition.get(message.topicPartition()).remove(message.messageId());
-        if (_exceptionOnMessageDropped) {
-          throw new LargeMessageDroppedException("The following large Message is dropped due to buffer full. "
-              + message);
-        } else {
-          LOG.warn("Incomplete message buffer pool is full. Removing the eldest incomplete message." + message);
+    while (true) {
+      long bufferUsed = _bufferUsed.get();
+      if (bufferUsed + freeSpaceNeeded <= _bufferCapacity) {
+        if (_bufferUsed.compareAndSet(bufferUsed, bufferUsed + freeSpaceNeeded)) {
+          return;
         }
+        continue;
+      }
+      LargeMessage message = evictEldestMessage();
+      if (message == null) {
+        // There is no message to evict, the buffer is held by the segments other threads are adding at this
+        // moment. Take the space anyways instead of waiting for them.
+        _bufferUsed.addAndGet(freeSpaceNeeded);
+        return;
+      }
+      if (_exceptionOnMessageDropped) {
+        throw new LargeMessageDroppedException("The following large Message is dropped due to buffer full. "
+            + message);
+      } else {
+        LOG.warn("Incomplete message buffer pool is full. Removing the eldest incomplete message." + message);
       }
     }
   }
 
   private LargeMessage evictEldestMessage() {
-    UUID eldestKey = _incompleteMessageMap.getEldestKey();
-    LargeMessage message = null;
-    if (eldestKey != null) {
-      message = _incompleteMessageMap.get(eldestKey);
-      long offsetBeforeRemoval = safeOffset(message.topicPartition());
-      removeMessage(eldestKey);
-      long offsetAfterRemoval = safeOffset(message.topicPartition());
+    while (true) {
+      // Find the shard with the globally eldest message, looking at one shard at a time.
+      PartitionShard eldestShard = null;
+      long eldestSequence = Long.MAX_VALUE;
+      for (PartitionShard shard : _shards.values()) {
+        synchronized (shard) {
+          long sequence = shard.eldestMessageSequence();
+          if (sequence < eldestSequence) {
+            eldestSequence = sequence;
+            eldestShard = shard;
+          }
+        }
+      }
+      if (eldestShard == null) {
+        return null;
+      }
+      synchronized (eldestShard) {
+        // The eldest message may have been completed or removed in the meantime, in that case look again.
+        if (eldestShard.eldestMessageSequence() == eldestSequence) {
+          LargeMessage message = eldestShard.eldestMessage();
+          long offsetBeforeRemoval = message.startingOffset();
+          eldestShard.removeMessage(message.messageId());
+          LargeMessage next = eldestShard.eldestMessage();
+          long offsetAfterRemoval = next == null ? Long.MAX_VALUE : next.startingOffset();
 
-      String errMsg = "Large message " + message.toString() + " is evicted. "
-          + "Offset of " + message.topicPartition() + " has advanced from " + offsetBeforeRemoval
-          + " to " + offsetAfterRemoval;
-      LOG.warn(errMsg);
+          String errMsg = "Large message " + message.toString() + " is evicted. "
+              + "Offset of " + message.topicPartition() + " has advanced from " + offsetBeforeRemoval
+              + " to " + offsetAfterRemoval;
+          LOG.warn(errMsg);
+          if (_evictionSensor != null) {
+            _evictionSensor.record();
+          }
+          return message;
+        }
+      }
     }
-    return message;
   }
 
-  private LargeMessage validateSegmentAndGetMessage(TopicPartition tp, LargeMessageSegment segment, long offset) {
+  private static MetricName metricName(Metrics metrics, String name, String description) {
+    return metrics.metricName(name, MessageAssemblerImpl.METRIC_GROUP, description);
+  }
+
+  private void validateSegment(LargeMessageSegment segment) {
     if (segment.payload == null) {
       throw new InvalidSegmentException("Payload cannot be null");
     }
     segment.payload.rewind();
     long segmentSize = segment.payload.remaining();
-    UUID messageId = segment.messageId;
     int messageSizeInBytes = segment.messageSizeInBytes;
     int numberOfSegments = segment.numberOfSegments;
     int seq = segment.sequenceNumber;
 
-    if (messageId == null) {
+    if (segment.messageId == null) {
       throw new InvalidSegmentException("Message Id can not be null");
     }
     if (segmentSize > messageSizeInBytes) {
@@ -184,17 +371,108 @@ public class LargeMessageBufferPool {
       throw new InvalidSegmentException("Sequence number " + seq
           + " should fall between [0," + (numberOfSegments - 1) + "].");
     }
+  }
+
+  /**
+   * The incomplete messages of one partition. The messages are kept in the order they are created, which is also
+   * the order of their starting offsets, so the eldest message determines the safe offset of the partition.
+   * All the methods must be called while holding the lock of the shard.
+   */
+  private class PartitionShard {
+    private final TopicPartition _tp;
+    private final QueuedMap<UUID, BufferedMessage> _incompleteMessages;
+    private boolean _removed;
+
+    PartitionShard(TopicPartition tp) {
+      _tp = tp;
+      _incompleteMessages = new QueuedMap<>();
+      _removed = false;
+    }
+
+    boolean isRemoved() {
+      return _removed;
+    }
+
+    void markRemoved() {
+      _removed = true;
+    }
+
+    TopicPartition topicPartition() {
+      return _tp;
+    }
+
+    int size() {
+      return _incompleteMessages.size();
+    }
+
+    LargeMessage getOrCreateMessage(LargeMessageSegment segment, long offset) {
+      UUID messageId = segment.messageId;
+      BufferedMessage bufferedMessage = _incompleteMessages.get(messageId);
+      if (bufferedMessage == null) {
+        LargeMessage message = new LargeMessage(_tp, messageId, offset, segment.messageSizeInBytes,
+                                                segment.numberOfSegments, _preallocateMessageBuffers);
+        bufferedMessage = new BufferedMessage(message, _messageSequence.getAndIncrement(), System.currentTimeMillis());
+        _incompleteMessages.put(messageId, bufferedMessage);
+        LOG.trace("Incomplete message {} is created.", messageId);
+      }
+      if (bufferedMessage.message.startingOffset() > offset) {
+        throw new InvalidSegmentException("Out of order segment offsets detected.");
+      }
+      return bufferedMessage.message;
+    }
+
+    boolean contains(LargeMessage message) {
+      BufferedMessage bufferedMessage = _incompleteMessages.get(message.messageId());
+      return bufferedMessage != null && bufferedMessage.message == message;
+    }
+
+    LargeMessage eldestMessage() {
+      UUID eldestKey = _incompleteMessages.getEldestKey();
+      return eldestKey == null ? null : _incompleteMessages.get(eldestKey).message;
+    }
 
-    // Create the incomplete message if needed.
-    LargeMessage message = _incompleteMessageMap.get(messageId);
-    if (message == null) {
-      message = new LargeMessage(tp, messageId, offset, messageSizeInBytes, numberOfSegments);
-      _incompleteMessageMap.put(messageId, message);
-      LOG.trace("Incomplete message {} is created.", messageId);
+    long eldestMessageSequence() {
+      UUID eldestKey = _incompleteMessages.getEldestKey();
+      return eldestKey == null ? Long.MAX_VALUE : _incompleteMessages.get(eldestKey).sequence;
     }
-    if (message.startingOffset() > offset) {
-      throw new InvalidSegmentException("Out of order segment offsets detected.");
+
+    BufferedMessage removeMessage(UUID messageId) {
+      BufferedMessage bufferedMessage = _incompleteMessages.remove(messageId);
+      if (bufferedMessage != null) {
+        _bufferUsed.addAndGet(-bufferedMessage.message.memorySizeInBytes());
+      }
+      return bufferedMessage;
+    }
+
+    void expireMessagesUntilOffset(long offset) {
+      LargeMessage eldest = eldestMessage();
+      while (eldest != null && eldest.startingOffset() < offset) {
+        removeMessage(eldest.messageId());
+        if (_expirationSensor != null) {
+          _expirationSensor.record();
+        }
+        eldest = eldestMessage();
+      }
+    }
+
+    void clear() {
+      UUID eldestKey = _incompleteMessages.getEldestKey();
+      while (eldestKey != null) {
+        removeMessage(eldestKey);
+        eldestKey = _incompleteMessages.getEldestKey();
+      }
+    }
+  }
+
+  private static class BufferedMessage {
+    private final LargeMessage message;
+    private final long sequence;
+    private final long createTimeMs;
+
+    BufferedMessage(LargeMessage message, long sequence, long createTimeMs) {
+      this.message = message;
+      this.sequence = sequence;
+      this.createTimeMs = createTimeMs;
     }
-    return message;
   }
 }
@@ -7,6 +7,7 @@ package com.linkedin.kafka.clients.largemessage;
 import com.linkedin.kafka.clients.largemessage.errors.LargeMessageSendException;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.metrics.Sensor;
 
 /**
  * This is the callback class for large message. It works in the following way:
@@ -14,20 +15,30 @@ import org.apache.kafka.clients.producer.RecordMetadata;
  * 2. The user callback will only fire once When all the segments of the large messages are acked. If all the segments
  * are sent successfully, the user callback will receive no exception. If exceptions are received by several
  * segments, the user callback will receive the first exception.
+ * 3. If a send latency sensor is given, the time from the creation of the callback, i.e. right before the first
+ * segment is sent, to the last ack is recorded in milliseconds.
  * Because the callback will only be called by one single thread, no synchronization is needed.
  */
 public class LargeMessageCallback implements Callback {
   private final int _numSegments;
   private final Callback _userCallback;
+  private final Sensor _sendLatencySensor;
+  private final long _sendStartNs;
   private int _acksReceived;
   private int _segmentsSent;
   private Exception _exception;
 
   public LargeMessageCallback(int numSegments, Callback userCallback) {
+    this(numSegments, userCallback, null);
+  }
+
+  public LargeMessageCallback(int numSegments, Callback userCallback, Sensor sendLatencySensor) {
     _numSegments = numSegments;
     _acksReceived = 0;
     _segmentsSent = 0;
     _userCallback = userCallback;
+    _sendLatencySensor = sendLatencySensor;
+    _sendStartNs = sendLatencySensor == null ? 0L : System.nanoTime();
     _exception = null;
   }
 
@@ -45,6 +56,9 @@ public class LargeMessageCallback implements Callback {
     }
     // Invoke user callback when receive the last callback of the large message.
     if (_acksReceived == _numSegments) {
+      if (_sendLatencySensor != null) {
+        _sendLatencySensor.record((System.nanoTime() - _sendStartNs) / 1000000.0);
+      }
       if (_exception == null) {
         _userCallback.onCompletion(recordMetadata, null);
       } else {
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import com.linkedin.kafka.clients.largemessage.errors.InvalidSegmentException;
+import com.linkedin.kafka.clients.utils.ByteBuffersInputStream;
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.KafkaLZ4BlockInputStream;
+import org.apache.kafka.common.record.KafkaLZ4BlockOutputStream;
+import org.xerial.snappy.SnappyInputStream;
+import org.xerial.snappy.SnappyOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The whole-message compression of large messages. A large message is compressed before it is split into segments,
+ * and decompressed after all its segments are assembled, so the codec sees the entire message instead of one segment
+ * at a time. The codecs are the ones shipped with kafka-clients.
+ */
+final class LargeMessageCompression {
+
+  private LargeMessageCompression() {
+  }
+
+  /**
+   * Compress a serialized message.
+   *
+   * @param message the serialized message to compress.
+   * @param compressionType the codec to compress the message with.
+   * @return the compressed message.
+   */
+  static byte[] compress(byte[] message, CompressionType compressionType) {
+    // Assume the message compresses at least as well as Kafka estimates for the codec to avoid growing the buffer.
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) (message.length * Math.min(compressionType.rate, 1.0f)) + 64);
+    try (OutputStream compressionStream = wrapForOutput(out, compressionType)) {
+      compressionStream.write(message);
+      // KafkaLZ4BlockOutputStream writes the end mark before the buffered block on close(), so flush the block first.
+      compressionStream.flush();
+    } catch (IOException e) {
+      throw new KafkaException("Failed to compress the message with " + compressionType.name, e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decompress a message from the payloads of its segments, without assembling the compressed message first.
+   *
+   * @param compressedMessage the payloads of the segments of the compressed message in order.
+   * @param compressionType the codec the message is compressed with.
+   * @param uncompressedSize the size of the message before compression.
+   * @param maxUncompressedSize the max allowed size of the message before compression. The uncompressed size comes
+   *                            from the segment header, so it is checked before the message is allocated.
+   * @return the decompressed message.
+   */
+  static byte[] decompress(ByteBuffer[] compressedMessage,
+                           CompressionType compressionType,
+                           int uncompressedSize,
+                           long maxUncompressedSize) {
+    if (uncompressedSize < 0) {
+      throw new InvalidSegmentException("Invalid uncompressed message size " + uncompressedSize);
+    }
+    if (uncompressedSize > maxUncompressedSize) {
+      throw new InvalidSegmentException("The uncompressed message size " + uncompressedSize + " is larger than the "
+          + "max allowed size " + maxUncompressedSize);
+    }
+    byte[] message = new byte[uncompressedSize];
+    try (InputStream in = wrapForInput(new ByteBuffersInputStream(compressedMessage), compressionType)) {
+      LiKafkaClientsUtils.readFully(in, message, 0, uncompressedSize);
+      if (in.read() >= 0) {
+        throw new InvalidSegmentException("The decompressed message is larger than the uncompressed message size "
+            + uncompressedSize);
+      }
+    } catch (IOException e) {
+      throw new InvalidSegmentException("Failed to decompress the message with " + compressionType.name + ": " + e);
+    }
+    return message;
+  }
+
+  private static OutputStream wrapForOutput(OutputStream out, CompressionType compressionType) throws IOException {
+    switch (compressionType) {
+      case GZIP:
+        return new GZIPOutputStream(out);
+      case SNAPPY:
+        return new SnappyOutputStream(out);
+      case LZ4:
+        return new KafkaLZ4BlockOutputStream(out);
+      default:
+        throw new IllegalArgumentException("Unsupported compression type " + compressionType);
+    }
+  }
+
+  private static InputStream wrapForInput(InputStream in, CompressionType compressionType) throws IOException {
+    switch (compressionType) {
+      case GZIP:
+        return new GZIPInputStream(in);
+      case SNAPPY:
+        return new SnappyInputStream(in);
+      case LZ4:
+        return new KafkaLZ4BlockInputStream(in);
+      default:
+        throw new IllegalArgumentException("Unsupported compression type " + compressionType);
+    }
+  }
+}
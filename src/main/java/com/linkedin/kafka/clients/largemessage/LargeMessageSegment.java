@@ -4,6 +4,8 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import org.apache.kafka.common.record.CompressionType;
+
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.UUID;
@@ -17,8 +19,13 @@ import java.util.UUID;
  *   <li><b>SequenceNumber:</b> The sequence number of the segment.</li>
  *   <li><b>NumberOfSegments:</b> The total number of segments the original large message has.</li>
  *   <li><b>MessageSizeInBytes:</b> The size of the original large message in bytes.</li>
+ *   <li><b>CompressionType:</b> The codec the original large message is compressed with before it is split.</li>
+ *   <li><b>UncompressedMessageSizeInBytes:</b> The size of the original large message before compression.</li>
  *   <li><b>payload:</b> The payload ByteBuffer of the segment.</li>
  * </ul>
+ * If the large message is compressed, the message size and the payloads are those of the compressed message, and the
+ * segment is serialized with {@link #COMPRESSED_VERSION} so that the consumers know to decompress the message after
+ * assembling it. Uncompressed segments are still serialized with {@link #UNCOMPRESSED_VERSION}.
  *
  * Please notice that it is not guaranteed that the payload ByteBuffer has a dedicated underlying byte array. To
  * get a dedicated byte array representation of the payload, {@link #payloadArray()} method should be called.
@@ -29,23 +36,48 @@ public class LargeMessageSegment {
   public final int sequenceNumber;
   public final int numberOfSegments;
   public final int messageSizeInBytes;
+  public final CompressionType compressionType;
+  public final int uncompressedMessageSizeInBytes;
   public final ByteBuffer payload;
   // The segment information over head bytes when serialize.
   public static final int SEGMENT_INFO_OVERHEAD = 16 + Integer.BYTES + Integer.BYTES + Integer.BYTES;
-  public static final byte CURRENT_VERSION = 0;
+  // The additional segment information over head bytes of a compressed segment, i.e. the codec and uncompressed size.
+  public static final int COMPRESSION_INFO_OVERHEAD = 1 + Integer.BYTES;
+  public static final byte UNCOMPRESSED_VERSION = 0;
+  public static final byte COMPRESSED_VERSION = 1;
+  public static final byte CURRENT_VERSION = COMPRESSED_VERSION;
+
+  public LargeMessageSegment(UUID messageId,
+                             int sequenceNumber,
+                             int numberOfSegments,
+                             int messageSizeInBytes,
+                             ByteBuffer payload) {
+    this(messageId, sequenceNumber, numberOfSegments, messageSizeInBytes, CompressionType.NONE, messageSizeInBytes, payload);
+  }
 
   public LargeMessageSegment(UUID messageId,
                              int sequenceNumber,
                              int numberOfSegments,
                              int messageSizeInBytes,
+                             CompressionType compressionType,
+                             int uncompressedMessageSizeInBytes,
                              ByteBuffer payload) {
     this.messageId = messageId;
     this.sequenceNumber = sequenceNumber;
     this.numberOfSegments = numberOfSegments;
     this.messageSizeInBytes = messageSizeInBytes;
+    this.compressionType = compressionType;
+    this.uncompressedMessageSizeInBytes = uncompressedMessageSizeInBytes;
     this.payload = payload;
   }
 
+  /**
+   * @return true if the original large message is compressed, false otherwise.
+   */
+  public boolean isCompressed() {
+    return compressionType != CompressionType.NONE;
+  }
+
   /**
    * Notice that the payload as a ByteBuffer does not guarantee to have a dedicated underlying byte array. So calling
    * {@code payload.array()} will not always give the payload byte array. This method should be called if user wants
@@ -64,6 +96,7 @@ public class LargeMessageSegment {
   @Override
   public String toString() {
     return "[messageId=" + messageId + ",seq=" + sequenceNumber + ",numSegs=" + numberOfSegments + ",messageSize=" +
-        messageSizeInBytes + ",payloadSize=" + payload.limit() + "]";
+        messageSizeInBytes + ",compressionType=" + compressionType + ",uncompressedMessageSize=" +
+        uncompressedMessageSizeInBytes + ",payloadSize=" + payload.limit() + "]";
   }
 }
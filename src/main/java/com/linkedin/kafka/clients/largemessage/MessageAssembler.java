@@ -4,8 +4,10 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
 import org.apache.kafka.common.TopicPartition;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -44,6 +46,17 @@ public interface MessageAssembler {
    */
   long safeOffset(TopicPartition tp);
 
+  /**
+   * Check whether there is any incomplete message buffered for a partition. When there is none, a segment can only
+   * complete a message if it is the only segment of that message.
+   *
+   * @param tp the topic partition to check.
+   * @return true if the partition has at least one incomplete message, false otherwise.
+   */
+  default boolean hasIncompleteMessages(TopicPartition tp) {
+    return safeOffset(tp) != Long.MAX_VALUE;
+  }
+
   /**
    * This method is to clean up all the states in the message assembler.
    */
@@ -61,19 +74,94 @@ public interface MessageAssembler {
    */
   void close();
 
+  /**
+   * The result of assembling a segment. The message is either a byte array, a slice of the segment bytes when the
+   * segment is the only segment of the message, or the payloads of all the segments of a large message in order. The
+   * message is only copied to a byte array when {@link #messageBytes()} is called, so the callers that can read
+   * {@link ByteBuffer}s should use {@link #messageBuffers()} instead.
+   */
   static class AssembleResult {
     private final byte[] _messageBytes;
+    private final ByteBuffer[] _messageBuffers;
+    private final int _messageSize;
     private final long _messageStartingOffset;
     private final long _messageEndingOffset;
 
     AssembleResult(byte[] messageBytes, long startingOffset, long endingOffset) {
       _messageBytes = messageBytes;
+      _messageBuffers = null;
+      _messageSize = messageBytes == null ? 0 : messageBytes.length;
       _messageStartingOffset = startingOffset;
       _messageEndingOffset = endingOffset;
     }
 
+    AssembleResult(ByteBuffer messageBuffer, long startingOffset, long endingOffset) {
+      this(messageBuffer == null ? null : new ByteBuffer[]{messageBuffer}, startingOffset, endingOffset);
+    }
+
+    AssembleResult(ByteBuffer[] messageBuffers, long startingOffset, long endingOffset) {
+      _messageBytes = null;
+      _messageBuffers = messageBuffers;
+      long messageSize = 0;
+      if (messageBuffers != null) {
+        for (ByteBuffer buffer : messageBuffers) {
+          messageSize += buffer.remaining();
+        }
+      }
+      _messageSize = (int) messageSize;
+      _messageStartingOffset = startingOffset;
+      _messageEndingOffset = endingOffset;
+    }
+
+    /**
+     * @return true if the segment completed a message, false otherwise.
+     */
+    public boolean hasMessage() {
+      return _messageBytes != null || _messageBuffers != null;
+    }
+
+    /**
+     * @return the message as a byte array, or null if the segment did not complete a message. If the message is a
+     * slice of the segment bytes or consists of multiple segments, this method copies the message to a new array.
+     */
     public byte[] messageBytes() {
-      return _messageBytes;
+      if (_messageBuffers == null) {
+        return _messageBytes;
+      }
+      return LiKafkaClientsUtils.toByteArray(_messageBuffers);
+    }
+
+    /**
+     * @return the message as one ByteBuffer, or null if the segment did not complete a message. The message is only
+     * copied if it consists of multiple segments.
+     */
+    public ByteBuffer messageBuffer() {
+      if (_messageBuffers == null) {
+        return _messageBytes == null ? null : ByteBuffer.wrap(_messageBytes);
+      }
+      return _messageBuffers.length == 1 ? _messageBuffers[0].duplicate() : ByteBuffer.wrap(messageBytes());
+    }
+
+    /**
+     * @return the message as a sequence of ByteBuffers whose concatenation is the message, without copying it, or
+     * null if the segment did not complete a message.
+     */
+    public ByteBuffer[] messageBuffers() {
+      if (_messageBuffers == null) {
+        return _messageBytes == null ? null : new ByteBuffer[]{ByteBuffer.wrap(_messageBytes)};
+      }
+      ByteBuffer[] buffers = new ByteBuffer[_messageBuffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = _messageBuffers[i].duplicate();
+      }
+      return buffers;
+    }
+
+    /**
+     * @return the size of the message in bytes, or 0 if the segment did not complete a message.
+     */
+    public int messageSize() {
+      return _messageSize;
     }
 
     public long messageStartingOffset() {
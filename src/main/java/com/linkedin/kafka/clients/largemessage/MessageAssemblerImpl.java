@@ -5,10 +5,12 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 
@@ -16,16 +18,43 @@ import java.util.Map;
  * The implementation of {@link MessageAssembler}
  */
 public class MessageAssemblerImpl implements MessageAssembler {
+  public static final String METRIC_GROUP = "likafka-consumer-metrics";
   private static final Logger LOG = LoggerFactory.getLogger(MessageAssemblerImpl.class);
   private final LargeMessageBufferPool _messagePool;
   private final Deserializer<LargeMessageSegment> _segmentDeserializer;
+  // A compressed message cannot be decompressed into more bytes than an uncompressed message may buffer.
+  private final long _maxUncompressedMessageSize;
 
   public MessageAssemblerImpl(long bufferCapacity,
                               long expirationOffsetGap,
                               boolean exceptionOnMessageDropped,
                               Deserializer<LargeMessageSegment> segmentDeserializer) {
-    _messagePool = new LargeMessageBufferPool(bufferCapacity, expirationOffsetGap, exceptionOnMessageDropped);
+    this(bufferCapacity, expirationOffsetGap, exceptionOnMessageDropped, false, segmentDeserializer);
+  }
+
+  public MessageAssemblerImpl(long bufferCapacity,
+                              long expirationOffsetGap,
+                              boolean exceptionOnMessageDropped,
+                              boolean preallocateMessageBuffers,
+                              Deserializer<LargeMessageSegment> segmentDeserializer) {
+    this(bufferCapacity, expirationOffsetGap, exceptionOnMessageDropped, preallocateMessageBuffers, segmentDeserializer,
+         null);
+  }
+
+  /**
+   * Construct a message assembler that reports the buffer usage and the assembly of the large messages in the given
+   * metrics, see {@link LargeMessageBufferPool}.
+   */
+  public MessageAssemblerImpl(long bufferCapacity,
+                              long expirationOffsetGap,
+                              boolean exceptionOnMessageDropped,
+                              boolean preallocateMessageBuffers,
+                              Deserializer<LargeMessageSegment> segmentDeserializer,
+                              Metrics metrics) {
+    _messagePool = new LargeMessageBufferPool(bufferCapacity, expirationOffsetGap, exceptionOnMessageDropped,
+                                              preallocateMessageBuffers, metrics);
     _segmentDeserializer = segmentDeserializer;
+    _maxUncompressedMessageSize = bufferCapacity;
   }
 
   @Override
@@ -34,16 +63,30 @@ public class MessageAssemblerImpl implements MessageAssembler {
     if (segment == null) {
       return new AssembleResult(segmentBytes, offset, offset);
     } else {
-      // Return immediately if it is a single segment message.
+      // Return immediately if it is a single segment message. The payload is handed off as a slice of the segment
+      // bytes, it is only copied if the caller needs a byte array.
       if (segment.numberOfSegments == 1) {
-        return new AssembleResult(segment.payloadArray(), offset, offset);
+        if (segment.isCompressed()) {
+          return new AssembleResult(decompress(new ByteBuffer[]{segment.payload}, segment), offset, offset);
+        }
+        return new AssembleResult(segment.payload, offset, offset);
       } else {
         LargeMessage.SegmentAddResult result = _messagePool.tryCompleteMessage(tp, offset, segment);
-        return new AssembleResult(result.serializedMessage(), result.startingOffset(), offset);
+        ByteBuffer[] messageSegments = result.messageSegments();
+        // A compressed message is decompressed from its segments once all of them are assembled.
+        if (messageSegments != null && segment.isCompressed()) {
+          return new AssembleResult(decompress(messageSegments, segment), result.startingOffset(), offset);
+        }
+        return new AssembleResult(messageSegments, result.startingOffset(), offset);
       }
     }
   }
 
+  private byte[] decompress(ByteBuffer[] compressedMessage, LargeMessageSegment segment) {
+    return LargeMessageCompression.decompress(compressedMessage, segment.compressionType,
+                                              segment.uncompressedMessageSizeInBytes, _maxUncompressedMessageSize);
+  }
+
   @Override
   public Map<TopicPartition, Long> safeOffsets() {
     return _messagePool.safeOffsets();
@@ -4,10 +4,17 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * Message splitter for large messages
@@ -116,5 +123,84 @@ public interface MessageSplitter {
                                              byte[] serializedRecord,
                                              int maxSegmentSize);
 
-}
+  /**
+   * Split the large message and send the segments with the given producer. The callback will only be fired once
+   * after all the segments are acked (see {@link LargeMessageCallback}).
+   * <p>
+   * Unlike the split methods, this method does not need to hold the serialized bytes of all the segments at the
+   * same time. An implementation may reuse the value array of a segment record for the next segment once
+   * {@link Producer#send(ProducerRecord, Callback)} of that segment returns, so the producer must have copied the
+   * value by then. {@link org.apache.kafka.clients.producer.KafkaProducer} copies the value into its record
+   * accumulator before send() returns.
+   *
+   * @param producer         the producer to send the segments with.
+   * @param topic            the topic to send the message to.
+   * @param partition        The partition to send the message to.
+   * @param timestamp        The timestamp of the message.
+   * @param messageId        the message id of this large message. The message id is used to group all the segments of
+   *                         this large message.
+   * @param key              The key associated with the message.
+   * @param serializedRecord the serialized bytes of large message to split
+   * @param callback         the callback to fire when all the segments are acked.
+   * @return the future of the last segment.
+   */
+  default Future<RecordMetadata> splitAndSend(Producer<byte[], byte[]> producer,
+                                              String topic,
+                                              Integer partition,
+                                              Long timestamp,
+                                              UUID messageId,
+                                              byte[] key,
+                                              byte[] serializedRecord,
+                                              Callback callback) {
+    List<ProducerRecord<byte[], byte[]>> segmentRecords = split(topic, partition, timestamp, messageId, key, serializedRecord);
+    Callback largeMessageCallback = new LargeMessageCallback(segmentRecords.size(), callback);
+    Future<RecordMetadata> future = null;
+    for (ProducerRecord<byte[], byte[]> segmentRecord : segmentRecords) {
+      future = producer.send(segmentRecord, largeMessageCallback);
+    }
+    return future;
+  }
 
+  /**
+   * Split the large message read from the given input stream and send the segments with the given producer. The
+   * callback will only be fired once after all the segments are acked (see {@link LargeMessageCallback}).
+   * <p>
+   * An implementation should read the message one segment at a time and send each segment before reading the next
+   * one, so the serialized message never needs to be held in memory as a whole. The default implementation reads the
+   * whole message and calls {@link #splitAndSend(Producer, String, Integer, Long, UUID, byte[], byte[], Callback)}.
+   * <p>
+   * If reading the input stream fails after some segments have been sent, the exception is thrown and the callback
+   * is never fired. The segments already sent are not recalled, they are left on the broker as an incomplete message
+   * that the consumers drop once it expires.
+   *
+   * @param producer         the producer to send the segments with.
+   * @param topic            the topic to send the message to.
+   * @param partition        The partition to send the message to.
+   * @param timestamp        The timestamp of the message.
+   * @param messageId        the message id of this large message. The message id is used to group all the segments of
+   *                         this large message.
+   * @param key              The key associated with the message.
+   * @param serializedRecord the input stream to read the serialized bytes of the large message from.
+   * @param length           the number of bytes of the large message to read from the input stream, must be positive.
+   * @param callback         the callback to fire when all the segments are acked.
+   * @return the future of the last segment.
+   * @throws IOException if the input stream fails to read or ends before length bytes are read.
+   * @throws IllegalArgumentException if the length is not positive.
+   */
+  default Future<RecordMetadata> splitAndSend(Producer<byte[], byte[]> producer,
+                                              String topic,
+                                              Integer partition,
+                                              Long timestamp,
+                                              UUID messageId,
+                                              byte[] key,
+                                              InputStream serializedRecord,
+                                              int length,
+                                              Callback callback) throws IOException {
+    if (length <= 0) {
+      throw new IllegalArgumentException("The message length must be positive, but it is " + length);
+    }
+    byte[] serializedBytes = new byte[length];
+    LiKafkaClientsUtils.readFully(serializedRecord, serializedBytes, 0, length);
+    return splitAndSend(producer, topic, partition, timestamp, messageId, key, serializedBytes, callback);
+  }
+}
@@ -5,27 +5,156 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Count;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * This class is used by {@link com.linkedin.kafka.clients.producer.LiKafkaProducerImpl} to split to split
  * serialized records.
  */
 public class MessageSplitterImpl implements MessageSplitter {
+  public static final String METRIC_GROUP = "likafka-producer-metrics";
+  // The memory used by each percentiles stat, i.e. 1000 buckets.
+  private static final int PERCENTILES_SIZE_IN_BYTES = 4000;
+  private static final double MAX_SEGMENTS_PER_MESSAGE = 1000;
+  private static final double MAX_SEND_LATENCY_MS = 60000;
+
   // This class does not do anything with the original record, so no key serializer is needed.
   private final int _maxSegmentSize;
   private final Serializer<LargeMessageSegment> _segmentSerializer;
+  // The codec to compress the messages split by splitAndSend() with before splitting them.
+  private final CompressionType _compressionType;
+  // Whether splitAndSend() may serialize the segments into a value array that is reused across the sent records.
+  private final boolean _reuseSegmentValues;
+  // The sensors of the messages split by splitAndSend(), null if no metrics is given.
+  private final Sensor _splitMessageSensor;
+  private final Sensor _segmentOverheadSensor;
+  private final Sensor _sendLatencySensor;
+  private final Sensor _compressionRateSensor;
 
   public MessageSplitterImpl(int maxSegmentSize,
                              Serializer<LargeMessageSegment> segmentSerializer) {
+    this(maxSegmentSize, segmentSerializer, null);
+  }
+
+  /**
+   * Construct a message splitter that records the large messages sent by
+   * {@link #splitAndSend(Producer, String, Integer, Long, UUID, byte[], byte[], Callback)} in the given metrics.
+   *
+   * @param maxSegmentSize the max segment size.
+   * @param segmentSerializer the serializer of the segments.
+   * @param metrics the metrics to register the sensors to, or null if the metrics are not needed.
+   */
+  public MessageSplitterImpl(int maxSegmentSize,
+                             Serializer<LargeMessageSegment> segmentSerializer,
+                             Metrics metrics) {
+    this(maxSegmentSize, segmentSerializer, metrics, CompressionType.NONE);
+  }
+
+  /**
+   * Construct a message splitter that compresses the large messages sent by
+   * {@link #splitAndSend(Producer, String, Integer, Long, UUID, byte[], byte[], Callback)} before splitting them.
+   * The segments of a compressed message carry the codec, so that the consumers decompress the message after
+   * assembling it.
+   *
+   * @param maxSegmentSize the max segment size.
+   * @param segmentSerializer the serializer of the segments.
+   * @param metrics the metrics to register the sensors to, or null if the metrics are not needed.
+   * @param compressionType the codec to compress the large messages with, or {@link CompressionType#NONE}.
+   */
+  public MessageSplitterImpl(int maxSegmentSize,
+                             Serializer<LargeMessageSegment> segmentSerializer,
+                             Metrics metrics,
+                             CompressionType compressionType) {
+    this(maxSegmentSize, segmentSerializer, metrics, compressionType, false);
+  }
+
+  /**
+   * Construct a message splitter that may reuse the segment value arrays of the records it sends.
+   * <p>
+   * {@link org.apache.kafka.clients.producer.KafkaProducer} copies the record value when send() returns, but the
+   * producer interceptors see the record before that and may keep it. So the segment value arrays should only be
+   * reused if the producer has no interceptors and does not keep the records in any other way.
+   *
+   * @param maxSegmentSize the max segment size.
+   * @param segmentSerializer the serializer of the segments.
+   * @param metrics the metrics to register the sensors to, or null if the metrics are not needed.
+   * @param compressionType the codec to compress the large messages with, or {@link CompressionType#NONE}.
+   * @param reuseSegmentValues whether the segment value array can be reused after the producer's send() returns.
+   */
+  public MessageSplitterImpl(int maxSegmentSize,
+                             Serializer<LargeMessageSegment> segmentSerializer,
+                             Metrics metrics,
+                             CompressionType compressionType,
+                             boolean reuseSegmentValues) {
     _maxSegmentSize = maxSegmentSize;
     _segmentSerializer = segmentSerializer;
+    _compressionType = compressionType;
+    _reuseSegmentValues = reuseSegmentValues;
+    if (metrics != null) {
+      _splitMessageSensor = metrics.sensor("split-messages");
+      _splitMessageSensor.add(metricName(metrics, "split-message-rate", "The number of messages split into segments per second."),
+                              new Rate(new Count()));
+      _splitMessageSensor.add(metricName(metrics, "segment-rate", "The number of segments of the split messages sent per second."),
+                              new Rate());
+      _splitMessageSensor.add(metricName(metrics, "segments-per-message-avg", "The average number of segments of a split message."),
+                              new Avg());
+      _splitMessageSensor.add(metricName(metrics, "segments-per-message-max", "The max number of segments of a split message."),
+                              new Max());
+      _splitMessageSensor.add(new Percentiles(PERCENTILES_SIZE_IN_BYTES, MAX_SEGMENTS_PER_MESSAGE, Percentiles.BucketSizing.LINEAR,
+          new Percentile(metricName(metrics, "segments-per-message-p50", "The median number of segments of a split message."), 50),
+          new Percentile(metricName(metrics, "segments-per-message-p99", "The 99th percentile of the number of segments of a split message."), 99)));
+
+      _segmentOverheadSensor = metrics.sensor("segment-overhead-bytes");
+      _segmentOverheadSensor.add(metricName(metrics, "segment-overhead-bytes-rate",
+                                            "The number of bytes per second added to the split messages by the segment serializer."),
+                                 new Rate());
+      _segmentOverheadSensor.add(metricName(metrics, "segment-overhead-bytes-avg",
+                                            "The average number of bytes added to a split message by the segment serializer."),
+                                 new Avg());
+
+      _sendLatencySensor = metrics.sensor("large-message-send-latency");
+      _sendLatencySensor.add(metricName(metrics, "large-message-send-latency-avg",
+                                        "The average time in ms from sending the first segment of a split message to the ack of its last segment."),
+                             new Avg());
+      _sendLatencySensor.add(metricName(metrics, "large-message-send-latency-max",
+                                        "The max time in ms from sending the first segment of a split message to the ack of its last segment."),
+                             new Max());
+      _sendLatencySensor.add(new Percentiles(PERCENTILES_SIZE_IN_BYTES, MAX_SEND_LATENCY_MS, Percentiles.BucketSizing.LINEAR,
+          new Percentile(metricName(metrics, "large-message-send-latency-p50", "The median send latency in ms of a split message."), 50),
+          new Percentile(metricName(metrics, "large-message-send-latency-p99", "The 99th percentile send latency in ms of a split message."), 99)));
+
+      _compressionRateSensor = metrics.sensor("large-message-compression-rate");
+      _compressionRateSensor.add(metricName(metrics, "large-message-compression-rate-avg",
+                                            "The average ratio of the compressed size to the uncompressed size of a split message."),
+                                 new Avg());
+    } else {
+      _splitMessageSensor = null;
+      _segmentOverheadSensor = null;
+      _sendLatencySensor = null;
+      _compressionRateSensor = null;
+    }
   }
 
   @Override
@@ -61,7 +190,19 @@ public class MessageSplitterImpl implements MessageSplitter {
                                                     byte[] key,
                                                     byte[] serializedRecord,
                                                     int maxSegmentSize) {
+    return split(topic, partition, timestamp, messageId, key, serializedRecord, maxSegmentSize, CompressionType.NONE,
+                 serializedRecord.length);
+  }
 
+  private List<ProducerRecord<byte[], byte[]>> split(String topic,
+                                                     Integer partition,
+                                                     Long timestamp,
+                                                     UUID messageId,
+                                                     byte[] key,
+                                                     byte[] serializedRecord,
+                                                     int maxSegmentSize,
+                                                     CompressionType compressionType,
+                                                     int uncompressedSize) {
     if (topic == null) {
       throw new IllegalArgumentException("Topic cannot be empty for LiKafkaGenericMessageSplitter.");
     }
@@ -85,7 +226,7 @@ public class MessageSplitterImpl implements MessageSplitter {
       ByteBuffer payload = bytebuffer.slice();
       payload.limit(segmentLength);
       LargeMessageSegment segment = new LargeMessageSegment(segmentMessageId, seq,
-          numberOfSegments, messageSizeInBytes, payload);
+          numberOfSegments, messageSizeInBytes, compressionType, uncompressedSize, payload);
 
       // NOTE: we have to use null topic here to serialize because the segment should be topic independent.
       byte[] segmentValue = _segmentSerializer.serialize(null, segment);
@@ -96,4 +237,178 @@ public class MessageSplitterImpl implements MessageSplitter {
 
     return segments;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the segment serializer is a {@link SegmentBufferSerializer}, each segment is serialized directly into its record
+   * value, so the payload is copied only once. If the segment value arrays can be reused, all the segments of the same
+   * size are serialized into one array, so at most two segment arrays are allocated per large message regardless of
+   * the number of segments.
+   * <p>
+   * If a compression type is configured, the message is compressed as a whole before it is split, unless compression
+   * does not make it smaller.
+   */
+  @Override
+  public Future<RecordMetadata> splitAndSend(Producer<byte[], byte[]> producer,
+                                             String topic,
+                                             Integer partition,
+                                             Long timestamp,
+                                             UUID messageId,
+                                             byte[] key,
+                                             byte[] serializedRecord,
+                                             Callback callback) {
+    if (_compressionType != CompressionType.NONE) {
+      byte[] compressedRecord = LargeMessageCompression.compress(serializedRecord, _compressionType);
+      if (_compressionRateSensor != null) {
+        _compressionRateSensor.record((double) compressedRecord.length / serializedRecord.length);
+      }
+      if (compressedRecord.length < serializedRecord.length) {
+        return splitAndSend(producer, topic, partition, timestamp, messageId, key, compressedRecord, _compressionType,
+                            serializedRecord.length, callback);
+      }
+    }
+    return splitAndSend(producer, topic, partition, timestamp, messageId, key, serializedRecord, CompressionType.NONE,
+                        serializedRecord.length, callback);
+  }
+
+  private Future<RecordMetadata> splitAndSend(Producer<byte[], byte[]> producer,
+                                              String topic,
+                                              Integer partition,
+                                              Long timestamp,
+                                              UUID messageId,
+                                              byte[] key,
+                                              byte[] serializedRecord,
+                                              CompressionType compressionType,
+                                              int uncompressedSize,
+                                              Callback callback) {
+    if (!(_segmentSerializer instanceof SegmentBufferSerializer)) {
+      List<ProducerRecord<byte[], byte[]>> segmentRecords =
+          split(topic, partition, timestamp, messageId, key, serializedRecord, _maxSegmentSize, compressionType, uncompressedSize);
+      Callback largeMessageCallback = new LargeMessageCallback(segmentRecords.size(), callback, _sendLatencySensor);
+      Future<RecordMetadata> future = null;
+      long segmentBytes = 0;
+      for (ProducerRecord<byte[], byte[]> segmentRecord : segmentRecords) {
+        segmentBytes += segmentRecord.value().length;
+        future = producer.send(segmentRecord, largeMessageCallback);
+      }
+      recordSplit(segmentRecords.size(), segmentBytes - serializedRecord.length);
+      return future;
+    }
+    if (topic == null) {
+      throw new IllegalArgumentException("Topic cannot be empty for LiKafkaGenericMessageSplitter.");
+    }
+    SegmentBufferSerializer segmentSerializer = (SegmentBufferSerializer) _segmentSerializer;
+    UUID segmentMessageId = messageId == null ? UUID.randomUUID() : messageId;
+    int numberOfSegments = (serializedRecord.length + (_maxSegmentSize - 1)) / _maxSegmentSize;
+    int messageSizeInBytes = serializedRecord.length;
+    ByteBuffer bytebuffer = ByteBuffer.wrap(serializedRecord);
+    byte[] segmentKey = key == null ? LiKafkaClientsUtils.uuidToBytes(segmentMessageId) : key;
+    Callback largeMessageCallback = new LargeMessageCallback(numberOfSegments, callback, _sendLatencySensor);
+
+    Future<RecordMetadata> future = null;
+    byte[] segmentValue = null;
+    long segmentBytes = 0;
+    for (int seq = 0; seq < numberOfSegments; seq++) {
+      int segmentStart = seq * _maxSegmentSize;
+      int segmentLength = Math.min(serializedRecord.length - segmentStart, _maxSegmentSize);
+      bytebuffer.position(segmentStart);
+      ByteBuffer payload = bytebuffer.slice();
+      payload.limit(segmentLength);
+      LargeMessageSegment segment = new LargeMessageSegment(segmentMessageId, seq,
+          numberOfSegments, messageSizeInBytes, compressionType, uncompressedSize, payload);
+
+      // The producer has copied the previous segment value when send() returned, so the array can be reused as long
+      // as the serialized size does not change, i.e. for all the segments except the last one.
+      int serializedSize = segmentSerializer.serializedSize(segment);
+      if (!_reuseSegmentValues || segmentValue == null || segmentValue.length != serializedSize) {
+        segmentValue = new byte[serializedSize];
+      }
+      segmentSerializer.serialize(segment, ByteBuffer.wrap(segmentValue));
+      segmentBytes += serializedSize;
+      future = producer.send(new ProducerRecord<>(topic, partition, timestamp, segmentKey, segmentValue),
+                             largeMessageCallback);
+    }
+    recordSplit(numberOfSegments, segmentBytes - serializedRecord.length);
+    return future;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Only one segment of the message is read from the input stream at a time. If the segment serializer is a
+   * {@link SegmentBufferSerializer}, the payload array is reused for all the segments of the same size. If the segment
+   * value arrays can be reused as well, the memory used per large message is bounded by twice the segment size.
+   * <p>
+   * The message is never compressed, because the number of segments of a compressed message has to be known before
+   * its first segment is sent.
+   */
+  @Override
+  public Future<RecordMetadata> splitAndSend(Producer<byte[], byte[]> producer,
+                                             String topic,
+                                             Integer partition,
+                                             Long timestamp,
+                                             UUID messageId,
+                                             byte[] key,
+                                             InputStream serializedRecord,
+                                             int length,
+                                             Callback callback) throws IOException {
+    if (topic == null) {
+      throw new IllegalArgumentException("Topic cannot be empty for LiKafkaGenericMessageSplitter.");
+    }
+    // A message without any segment could never fire the callback.
+    if (length <= 0) {
+      throw new IllegalArgumentException("The message length must be positive, but it is " + length);
+    }
+    UUID segmentMessageId = messageId == null ? UUID.randomUUID() : messageId;
+    int numberOfSegments = (int) (((long) length + _maxSegmentSize - 1) / _maxSegmentSize);
+    byte[] segmentKey = key == null ? LiKafkaClientsUtils.uuidToBytes(segmentMessageId) : key;
+    Callback largeMessageCallback = new LargeMessageCallback(numberOfSegments, callback, _sendLatencySensor);
+    boolean serializeToBuffer = _segmentSerializer instanceof SegmentBufferSerializer;
+
+    Future<RecordMetadata> future = null;
+    byte[] payloadBytes = null;
+    byte[] segmentValue = null;
+    long segmentBytes = 0;
+    for (int seq = 0; seq < numberOfSegments; seq++) {
+      int segmentLength = (int) Math.min((long) length - (long) seq * _maxSegmentSize, _maxSegmentSize);
+      // A serializer that does not write into a buffer may return the payload array as the segment value, so the
+      // payload array can only be reused if the payload is copied into the segment value.
+      if (!serializeToBuffer || payloadBytes == null || payloadBytes.length != segmentLength) {
+        payloadBytes = new byte[segmentLength];
+      }
+      LiKafkaClientsUtils.readFully(serializedRecord, payloadBytes, 0, segmentLength);
+      LargeMessageSegment segment = new LargeMessageSegment(segmentMessageId, seq,
+          numberOfSegments, length, ByteBuffer.wrap(payloadBytes));
+
+      byte[] value;
+      if (serializeToBuffer) {
+        SegmentBufferSerializer segmentSerializer = (SegmentBufferSerializer) _segmentSerializer;
+        int serializedSize = segmentSerializer.serializedSize(segment);
+        if (!_reuseSegmentValues || segmentValue == null || segmentValue.length != serializedSize) {
+          segmentValue = new byte[serializedSize];
+        }
+        segmentSerializer.serialize(segment, ByteBuffer.wrap(segmentValue));
+        value = segmentValue;
+      } else {
+        // NOTE: we have to use null topic here to serialize because the segment should be topic independent.
+        value = _segmentSerializer.serialize(null, segment);
+      }
+      segmentBytes += value.length;
+      future = producer.send(new ProducerRecord<>(topic, partition, timestamp, segmentKey, value), largeMessageCallback);
+    }
+    recordSplit(numberOfSegments, segmentBytes - length);
+    return future;
+  }
+
+  private void recordSplit(int numberOfSegments, long overheadBytes) {
+    if (_splitMessageSensor != null) {
+      _splitMessageSensor.record(numberOfSegments);
+      _segmentOverheadSensor.record(overheadBytes);
+    }
+  }
+
+  private static MetricName metricName(Metrics metrics, String name, String description) {
+    return metrics.metricName(name, METRIC_GROUP, description);
+  }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A segment serializer that is able to write a serialized {@link LargeMessageSegment} into a buffer provided by the
+ * caller.
+ * <p>
+ * When the segment serializer implements this interface, {@link MessageSplitterImpl} serializes the segments of a
+ * large message into a reused buffer instead of allocating a new byte array for every segment.
+ */
+public interface SegmentBufferSerializer extends Serializer<LargeMessageSegment> {
+
+  /**
+   * @param segment the segment to serialize.
+   * @return the number of bytes {@link #serialize(LargeMessageSegment, ByteBuffer)} will write for the segment.
+   */
+  int serializedSize(LargeMessageSegment segment);
+
+  /**
+   * Serialize the segment into the given buffer, starting from the current position of the buffer. The buffer must
+   * have at least {@link #serializedSize(LargeMessageSegment)} bytes remaining. The position of the segment payload
+   * is not changed.
+   *
+   * @param segment the segment to serialize.
+   * @param buffer the buffer to write the serialized segment to.
+   */
+  void serialize(LargeMessageSegment segment, ByteBuffer buffer);
+}
@@ -13,6 +13,7 @@ import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -40,6 +41,38 @@ public interface LiKafkaProducer<K, V> extends Producer<K, V> {
   @InterfaceOrigin.ApacheKafka
   Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback);
 
+  /**
+   * Send a value of the given length read from an input stream, and invoke the given callback when the value has been
+   * acknowledged by the server. The value is read as serialized bytes, i.e. the value serializer is not used.
+   * <p>
+   * If large message support is enabled and the value is larger than max.message.segment.bytes, the value is read
+   * and sent one segment at a time, so the producer never holds the whole value in memory. The callback is fired
+   * once after all the segments are acked. Otherwise the value is read into memory and sent like any other record.
+   * <p>
+   * If reading the input stream fails after some segments of a large value have been sent, a
+   * {@link org.apache.kafka.common.KafkaException} is thrown and the callback is not invoked. The segments already
+   * sent are left on the broker as an incomplete message that the consumers drop once it expires.
+   * <p>
+   * A {@link java.nio.channels.ReadableByteChannel} can be sent with {@link java.nio.channels.Channels#newInputStream}.
+   *
+   * @param topic The topic to send the value to
+   * @param partition The partition to send the value to, or null to choose the partition with the key
+   * @param timestamp The timestamp of the value, or null to use the current time
+   * @param key The key of the value
+   * @param serializedValue The input stream to read the serialized value from
+   * @param length The number of bytes of the serialized value
+   * @param callback The callback to invoke when the value has been acknowledged, may be null
+   * @return A future which will eventually contain the response information
+   */
+  @InterfaceOrigin.LiKafkaClients
+  Future<RecordMetadata> send(String topic,
+                              Integer partition,
+                              Long timestamp,
+                              K key,
+                              InputStream serializedValue,
+                              int length,
+                              Callback callback);
+
   /**
    * Flush any accumulated records from the producer. Blocks until all sends are complete.
    */
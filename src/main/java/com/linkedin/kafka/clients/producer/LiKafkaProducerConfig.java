@@ -26,10 +26,12 @@ public class LiKafkaProducerConfig extends AbstractConfig {
 
   public static final String LARGE_MESSAGE_ENABLED_CONFIG = "large.message.enabled";
   public static final String MAX_MESSAGE_SEGMENT_BYTES_CONFIG = "max.message.segment.bytes";
+  public static final String LARGE_MESSAGE_COMPRESSION_TYPE_CONFIG = "large.message.compression.type";
   public static final String AUDITOR_CLASS_CONFIG = "auditor.class";
   public static final String KEY_SERIALIZER_CLASS_CONFIG = ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG;
   public static final String VALUE_SERIALIZER_CLASS_CONFIG = ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG;
   public static final String SEGMENT_SERIALIZER_CLASS_CONFIG = "segment.serializer";
+  public static final String INTERCEPTOR_CLASSES_CONFIG = ProducerConfig.INTERCEPTOR_CLASSES_CONFIG;
   public static final String CURRENT_PRODUCER = "current.producer";
 
   public static final String LARGE_MESSAGE_ENABLED_DOC = "Configure the producer to support large messages or not. " +
@@ -41,6 +43,13 @@ public class LiKafkaProducerConfig extends AbstractConfig {
       "the producer will only split the messages whose size is greater the maximum allowed segment bytes. " +
       "This configuration does not have any effect if large message is not enabled.";
 
+  public static final String LARGE_MESSAGE_COMPRESSION_TYPE_DOC = "The codec to compress a large message with as a whole " +
+      "before it is split into segments. Valid values are none, gzip, snappy and lz4. The compressed segments can only be " +
+      "assembled by consumers that support compressed large messages, so the consumers should be upgraded before this " +
+      "configuration is enabled. Messages that are not larger than max.message.segment.bytes, messages sent from an " +
+      "input stream and messages that do not get smaller are not compressed. This configuration does not have any " +
+      "effect if large message is not enabled.";
+
   public static final String AUDITOR_CLASS_DOC = "The auditor class to do auditing. If no auditor is configured, a " +
       "default no-op auditor will be used.";
 
@@ -51,6 +60,10 @@ public class LiKafkaProducerConfig extends AbstractConfig {
   public static final String SEGMENT_SERIALIZER_CLASS_DOC = "The class of segment serializer. The segment serializer " +
       "will be used to serialize large message segments when large message is enabled for LiKafkaProducer.";
 
+  public static final String INTERCEPTOR_CLASSES_DOC = ProducerConfig.INTERCEPTOR_CLASSES_DOC + " The interceptors are " +
+      "passed to the underlying producer. If any is configured, the segments of a large message are not serialized " +
+      "into a shared array because the interceptors may keep the records.";
+
   public static final String CURRENT_PRODUCER_DOC = "A Producer<byte[], byte[]> that can be used to send events to the " +
       "same Kafka cluster as the LiKafkaProducer is sending records to. Technically speaking this is not a " +
       "configuration. We add this configuration because in many cases the auditor needs a producer to send " +
@@ -60,10 +73,13 @@ public class LiKafkaProducerConfig extends AbstractConfig {
     CONFIG = new ConfigDef()
         .define(LARGE_MESSAGE_ENABLED_CONFIG, Type.BOOLEAN, "false", Importance.MEDIUM, LARGE_MESSAGE_ENABLED_DOC)
         .define(MAX_MESSAGE_SEGMENT_BYTES_CONFIG, Type.INT, "800000", Importance.MEDIUM, MAX_MESSAGE_SEGMENT_BYTES_DOC)
+        .define(LARGE_MESSAGE_COMPRESSION_TYPE_CONFIG, Type.STRING, "none", ConfigDef.ValidString.in("none", "gzip", "snappy", "lz4"),
+                Importance.LOW, LARGE_MESSAGE_COMPRESSION_TYPE_DOC)
         .define(AUDITOR_CLASS_CONFIG, Type.CLASS, NoOpAuditor.class.getName(), Importance.MEDIUM, AUDITOR_CLASS_DOC)
         .define(KEY_SERIALIZER_CLASS_CONFIG, Type.CLASS, ByteArraySerializer.class.getName(), Importance.MEDIUM, KEY_SERIALIZER_CLASS_DOC)
         .define(VALUE_SERIALIZER_CLASS_CONFIG, Type.CLASS, ByteArraySerializer.class.getName(), Importance.MEDIUM, VALUE_SERIALIZER_CLASS_DOC)
-        .define(SEGMENT_SERIALIZER_CLASS_CONFIG, Type.CLASS, DefaultSegmentSerializer.class.getName(), Importance.MEDIUM, SEGMENT_SERIALIZER_CLASS_DOC);
+        .define(SEGMENT_SERIALIZER_CLASS_CONFIG, Type.CLASS, DefaultSegmentSerializer.class.getName(), Importance.MEDIUM, SEGMENT_SERIALIZER_CLASS_DOC)
+        .define(INTERCEPTOR_CLASSES_CONFIG, Type.LIST, null, Importance.LOW, INTERCEPTOR_CLASSES_DOC);
   }
 
   LiKafkaProducerConfig(Map<?, ?> props) {
@@ -6,10 +6,11 @@ package com.linkedin.kafka.clients.producer;
 
 import com.linkedin.kafka.clients.auditing.AuditType;
 import com.linkedin.kafka.clients.auditing.Auditor;
-import com.linkedin.kafka.clients.largemessage.LargeMessageCallback;
+import com.linkedin.kafka.clients.largemessage.DefaultSegmentSerializer;
 import com.linkedin.kafka.clients.largemessage.LargeMessageSegment;
 import com.linkedin.kafka.clients.largemessage.MessageSplitter;
 import com.linkedin.kafka.clients.largemessage.MessageSplitterImpl;
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
@@ -20,11 +21,16 @@ import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -106,6 +112,8 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
   private final boolean _largeMessageEnabled;
   private final int _maxMessageSegmentSize;
   private final MessageSplitter _messageSplitter;
+  // Whether the segment serializer sends single-segment messages without any wrapping.
+  private final boolean _passThroughSingleSegment;
 
   // serializers
   private Serializer<K> _keySerializer;
@@ -114,6 +122,8 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
   // raw byte producer
   private final Producer<byte[], byte[]> _producer;
   /*package private for testing*/ Auditor<K, V> _auditor;
+  // The metrics of the large message handling, reported together with the metrics of the raw byte producer.
+  private final Metrics _metrics;
 
   // A counter of the threads in the middle of sending messages. This is needed to ensure when we close the producer
   // everything is audited.
@@ -168,7 +178,16 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
     Serializer<LargeMessageSegment> segmentSerializer = largeMessageSegmentSerializer != null ? largeMessageSegmentSerializer :
         configs.getConfiguredInstance(LiKafkaProducerConfig.SEGMENT_SERIALIZER_CLASS_CONFIG, Serializer.class);
     segmentSerializer.configure(configs.originals(), false);
-    _messageSplitter = new MessageSplitterImpl(_maxMessageSegmentSize, segmentSerializer);
+    _metrics = new Metrics();
+    CompressionType largeMessageCompressionType =
+        CompressionType.forName(configs.getString(LiKafkaProducerConfig.LARGE_MESSAGE_COMPRESSION_TYPE_CONFIG));
+    // The interceptors see the segment records before the producer copies their values, so the segment value arrays
+    // are only reused if there is no interceptor.
+    List<String> interceptorClasses = configs.getList(LiKafkaProducerConfig.INTERCEPTOR_CLASSES_CONFIG);
+    boolean reuseSegmentValues = interceptorClasses == null || interceptorClasses.isEmpty();
+    _messageSplitter = new MessageSplitterImpl(_maxMessageSegmentSize, segmentSerializer, _metrics,
+                                               largeMessageCompressionType, reuseSegmentValues);
+    _passThroughSingleSegment = segmentSerializer.getClass() == DefaultSegmentSerializer.class;
 
     // Instantiate auditor if necessary
     _auditor = auditor != null ? auditor :
@@ -187,6 +206,7 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
   @Override
   public Future<RecordMetadata> send(ProducerRecord<K, V> producerRecord, Callback callback) {
     _numThreadsInSend.incrementAndGet();
+    long timestamp = producerRecord.timestamp() == null ? System.currentTimeMillis() : producerRecord.timestamp();
     try {
       if (_closed) {
         throw new IllegalStateException("LiKafkaProducer has been closed.");
@@ -194,9 +214,7 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
       String topic = producerRecord.topic();
       K key = producerRecord.key();
       V value = producerRecord.value();
-      Long timestamp = producerRecord.timestamp() == null ? System.currentTimeMillis() : producerRecord.timestamp();
       Integer partition = producerRecord.partition();
-      Future<RecordMetadata> future = null;
       UUID messageId = getUuid(key, value);
       if (LOG.isTraceEnabled()) {
         LOG.trace("Sending event: [{}, {}] with key {} to kafka topic {}",
@@ -212,44 +230,106 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
         serializedKey = _keySerializer.serialize(topic, key);
       } catch (Throwable t) {
         // Audit the attempt and the failure.
-        _auditor.record(topic, key, value, timestamp, 1L, 0L, AuditType.ATTEMPT);
-        _auditor.record(topic, key, value, timestamp, 1L, 0L, AuditType.FAILURE);
+        _auditor.recordPrimitive(topic, key, value, timestamp, 1L, 0L, AuditType.ATTEMPT);
+        _auditor.recordPrimitive(topic, key, value, timestamp, 1L, 0L, AuditType.FAILURE);
         throw new KafkaException(t);
       }
       int sizeInBytes = (serializedKey == null ? 0 : serializedKey.length)
           + (serializedValue == null ? 0 : serializedValue.length);
       // Audit the attempt.
-      _auditor.record(topic, key, value, timestamp, 1L, (long) sizeInBytes, AuditType.ATTEMPT);
+      _auditor.recordPrimitive(topic, key, value, timestamp, 1L, sizeInBytes, AuditType.ATTEMPT);
       // We wrap the user callback for error logging and auditing purpose.
       Callback errorLoggingCallback =
           new ErrorLoggingCallback<>(messageId, key, value, topic, timestamp, sizeInBytes, _auditor, callback);
-      if (_largeMessageEnabled && serializedValue != null && serializedValue.length > _maxMessageSegmentSize) {
-        List<ProducerRecord<byte[], byte[]>> segmentRecords =
-            _messageSplitter.split(topic, partition, timestamp, messageId, serializedKey, serializedValue);
-        Callback largeMessageCallback = new LargeMessageCallback(segmentRecords.size(), errorLoggingCallback);
-        for (ProducerRecord<byte[], byte[]> segmentRecord : segmentRecords) {
-          future = _producer.send(segmentRecord, largeMessageCallback);
-        }
-      } else {
-        // In order to make sure consumer can consume both large message segment and the ordinary message,
-        // we wrap the normal message as a single segment large message. When consumer sees it, it will
-        // be returned by message assembler immediately. We set a pretty large maxSegmentSize to make sure
-        // the message will end up in one segment.
-        List<ProducerRecord<byte[], byte[]>> wrappedRecord =
-            _messageSplitter.split(topic, partition, timestamp, messageId, serializedKey, serializedValue, Integer.MAX_VALUE / 2);
-        assert (wrappedRecord.size() == 1);
-        future = _producer.send(wrappedRecord.get(0), errorLoggingCallback);
+      return sendSerialized(topic, partition, timestamp, messageId, serializedKey, serializedValue, errorLoggingCallback);
+    } catch (Throwable t) {
+      _auditor.recordPrimitive(producerRecord.topic(), producerRecord.key(), producerRecord.value(), timestamp, 1L, 0L,
+          AuditType.FAILURE);
+      throw new KafkaException(t);
+    } finally {
+      _numThreadsInSend.decrementAndGet();
+    }
+  }
+
+  @Override
+  public Future<RecordMetadata> send(String topic,
+                                     Integer partition,
+                                     Long timestamp,
+                                     K key,
+                                     InputStream serializedValue,
+                                     int length,
+                                     Callback callback) {
+    _numThreadsInSend.incrementAndGet();
+    long messageTimestamp = timestamp == null ? System.currentTimeMillis() : timestamp;
+    try {
+      if (_closed) {
+        throw new IllegalStateException("LiKafkaProducer has been closed.");
       }
-      return future;
+      if (length < 0) {
+        throw new IllegalArgumentException("The value length cannot be negative, but it is " + length);
+      }
+      UUID messageId = getUuid(key, null);
+      LOG.trace("Sending {} bytes from an input stream with key {} and message id {} to kafka topic {}",
+          length, key, messageId, topic);
+      byte[] serializedKey;
+      try {
+        serializedKey = _keySerializer.serialize(topic, key);
+      } catch (Throwable t) {
+        // Audit the attempt and the failure.
+        _auditor.recordPrimitive(topic, key, null, messageTimestamp, 1L, 0L, AuditType.ATTEMPT);
+        _auditor.recordPrimitive(topic, key, null, messageTimestamp, 1L, 0L, AuditType.FAILURE);
+        throw new KafkaException(t);
+      }
+      int sizeInBytes = (serializedKey == null ? 0 : serializedKey.length) + length;
+      // Audit the attempt. The value is never deserialized, so it is audited as null.
+      _auditor.recordPrimitive(topic, key, null, messageTimestamp, 1L, sizeInBytes, AuditType.ATTEMPT);
+      Callback errorLoggingCallback =
+          new ErrorLoggingCallback<>(messageId, key, null, topic, messageTimestamp, sizeInBytes, _auditor, callback);
+      if (_largeMessageEnabled && length > _maxMessageSegmentSize) {
+        return _messageSplitter.splitAndSend(_producer, topic, partition, messageTimestamp, messageId, serializedKey,
+                                             serializedValue, length, errorLoggingCallback);
+      }
+      // The value fits in one segment, so it is read into memory and sent the same way as the other records.
+      byte[] valueBytes = new byte[length];
+      LiKafkaClientsUtils.readFully(serializedValue, valueBytes, 0, length);
+      return sendSerialized(topic, partition, messageTimestamp, messageId, serializedKey, valueBytes, errorLoggingCallback);
     } catch (Throwable t) {
-      _auditor.record(producerRecord.topic(), producerRecord.key(), producerRecord.value(), producerRecord.timestamp(),
-          1L, 0L, AuditType.FAILURE);
+      _auditor.recordPrimitive(topic, key, null, messageTimestamp, 1L, 0L, AuditType.FAILURE);
       throw new KafkaException(t);
     } finally {
       _numThreadsInSend.decrementAndGet();
     }
   }
 
+  private Future<RecordMetadata> sendSerialized(String topic,
+                                                Integer partition,
+                                                Long timestamp,
+                                                UUID messageId,
+                                                byte[] serializedKey,
+                                                byte[] serializedValue,
+                                                Callback errorLoggingCallback) {
+    if (_largeMessageEnabled && serializedValue != null && serializedValue.length > _maxMessageSegmentSize) {
+      return _messageSplitter.splitAndSend(_producer, topic, partition, timestamp, messageId, serializedKey,
+                                           serializedValue, errorLoggingCallback);
+    } else if (_passThroughSingleSegment) {
+      // The DefaultSegmentSerializer sends a single-segment message as its raw payload, so the serialized value can
+      // be sent as is without going through the message splitter. The key is the same as the one the splitter
+      // would have used.
+      byte[] segmentKey = serializedKey == null ? LiKafkaClientsUtils.uuidToBytes(messageId) : serializedKey;
+      return _producer.send(new ProducerRecord<>(topic, partition, timestamp, segmentKey, serializedValue),
+                            errorLoggingCallback);
+    } else {
+      // In order to make sure consumer can consume both large message segment and the ordinary message,
+      // we wrap the normal message as a single segment large message. When consumer sees it, it will
+      // be returned by message assembler immediately. We set a pretty large maxSegmentSize to make sure
+      // the message will end up in one segment.
+      List<ProducerRecord<byte[], byte[]>> wrappedRecord =
+          _messageSplitter.split(topic, partition, timestamp, messageId, serializedKey, serializedValue, Integer.MAX_VALUE / 2);
+      assert (wrappedRecord.size() == 1);
+      return _producer.send(wrappedRecord.get(0), errorLoggingCallback);
+    }
+  }
+
   /**
    * This method will flush all the message buffered in producer. It is a blocking call.
    */
@@ -265,7 +345,9 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
 
   @Override
   public Map<MetricName, ? extends Metric> metrics() {
-    return _producer.metrics();
+    Map<MetricName, Metric> metrics = new HashMap<>(_producer.metrics());
+    metrics.putAll(_metrics.metrics());
+    return Collections.unmodifiableMap(metrics);
   }
 
   protected UUID getUuid(K key, V value) {
@@ -278,6 +360,7 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
     prepClose();
     _auditor.close();
     _producer.close();
+    _metrics.close();
   }
 
   @Override
@@ -286,6 +369,7 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
     LOG.info("Shutting down LiKafkaProducer...");
     _auditor.close(timeout, timeUnit);
     _producer.close(Math.max(0, startMs + timeout - System.currentTimeMillis()), timeUnit);
+    _metrics.close();
   }
 
   private void prepClose() {
@@ -301,8 +385,8 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
     private final K _key;
     private final V _value;
     private final String _topic;
-    private final Long _timestamp;
-    private final Integer _serializedSize;
+    private final long _timestamp;
+    private final int _serializedSize;
     private final Auditor<K, V> _auditor;
     private final Callback _userCallback;
 
@@ -310,8 +394,8 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
                                 K key,
                                 V value,
                                 String topic,
-                                Long timestamp,
-                                Integer serializedSize,
+                                long timestamp,
+                                int serializedSize,
                                 Auditor<K, V> auditor,
                                 Callback userCallback) {
       _messageId = messageId;
@@ -328,13 +412,13 @@ public class LiKafkaProducerImpl<K, V> implements LiKafkaProducer<K, V> {
     public void onCompletion(RecordMetadata recordMetadata, Exception e) {
       if (e != null) {
         LOG.error(String.format("Unable to send event %s with key %s and message id %s to kafka topic %s",
-            _value.toString(), (_key != null) ? _key : "[none]",
+            String.valueOf(_value), (_key != null) ? _key : "[none]",
             (_messageId != null) ? _messageId.toString().replaceAll("-", "") : "[none]", _topic), e);
         // Audit the failure.
-        _auditor.record(_topic, _key, _value, _timestamp, 1L, _serializedSize.longValue(), AuditType.FAILURE);
+        _auditor.recordPrimitive(_topic, _key, _value, _timestamp, 1L, _serializedSize, AuditType.FAILURE);
       } else {
         // Audit the success.
-        _auditor.record(_topic, _key, _value, _timestamp, 1L, _serializedSize.longValue(), AuditType.SUCCESS);
+        _auditor.recordPrimitive(_topic, _key, _value, _timestamp, 1L, _serializedSize, AuditType.SUCCESS);
       }
       if (_userCallback != null) {
         _userCallback.onCompletion(recordMetadata, e);
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.utils;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that reads the bytes between the position and the limit of a sequence of buffers, one buffer after
+ * another. The positions of the given buffers are not changed. This class is not thread safe.
+ * <p>
+ * It allows a large message that is delivered as its segments to be read incrementally, e.g. by a
+ * {@link java.util.zip.GZIPInputStream}, without assembling the segments into one byte array first.
+ */
+public class ByteBuffersInputStream extends InputStream {
+  private final ByteBuffer[] _buffers;
+  private int _index;
+
+  public ByteBuffersInputStream(ByteBuffer... buffers) {
+    _buffers = new ByteBuffer[buffers.length];
+    for (int i = 0; i < buffers.length; i++) {
+      _buffers[i] = buffers[i].duplicate();
+    }
+    _index = 0;
+  }
+
+  @Override
+  public int read() {
+    ByteBuffer buffer = currentBuffer();
+    return buffer == null ? -1 : buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    int bytesRead = 0;
+    ByteBuffer buffer = currentBuffer();
+    while (buffer != null && bytesRead < len) {
+      int length = Math.min(len - bytesRead, buffer.remaining());
+      buffer.get(b, off + bytesRead, length);
+      bytesRead += length;
+      buffer = currentBuffer();
+    }
+    return bytesRead == 0 ? -1 : bytesRead;
+  }
+
+  @Override
+  public long skip(long n) {
+    long skipped = 0;
+    ByteBuffer buffer = currentBuffer();
+    while (buffer != null && skipped < n) {
+      int length = (int) Math.min(n - skipped, buffer.remaining());
+      buffer.position(buffer.position() + length);
+      skipped += length;
+      buffer = currentBuffer();
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    long available = 0;
+    for (int i = _index; i < _buffers.length; i++) {
+      available += _buffers[i].remaining();
+    }
+    return (int) Math.min(available, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return the first buffer that has bytes remaining, or null if all the bytes have been read.
+   */
+  private ByteBuffer currentBuffer() {
+    while (_index < _buffers.length && !_buffers[_index].hasRemaining()) {
+      _index++;
+    }
+    return _index < _buffers.length ? _buffers[_index] : null;
+  }
+}
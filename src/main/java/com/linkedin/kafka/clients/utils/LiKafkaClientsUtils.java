@@ -4,6 +4,9 @@
 
 package com.linkedin.kafka.clients.utils;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 
@@ -23,6 +26,71 @@ public class LiKafkaClientsUtils {
     return bytes;
   }
 
+  /**
+   * Copy the bytes between the position and the limit of the given buffers into one byte array. The positions of the
+   * buffers are not changed.
+   *
+   * @param buffers the buffers to copy.
+   * @return the concatenated bytes of the buffers.
+   */
+  public static byte[] concatenate(ByteBuffer[] buffers) {
+    long size = 0;
+    for (ByteBuffer buffer : buffers) {
+      size += buffer.remaining();
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The total size " + size + " of the buffers is too large for a byte array.");
+    }
+    byte[] bytes = new byte[(int) size];
+    int position = 0;
+    for (ByteBuffer buffer : buffers) {
+      int length = buffer.remaining();
+      buffer.duplicate().get(bytes, position, length);
+      position += length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Get the bytes between the position and the limit of the given buffers as one byte array. If there is only one
+   * buffer and it spans its whole backing array, the backing array is returned without copying. Otherwise the bytes
+   * are copied with {@link #concatenate(ByteBuffer[])}.
+   *
+   * @param buffers the buffers to get the bytes of.
+   * @return the bytes of the buffers.
+   */
+  public static byte[] toByteArray(ByteBuffer[] buffers) {
+    if (buffers.length == 1) {
+      ByteBuffer buffer = buffers[0];
+      if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0
+          && buffer.remaining() == buffer.array().length) {
+        return buffer.array();
+      }
+    }
+    return concatenate(buffers);
+  }
+
+  /**
+   * Read exactly the given number of bytes from the input stream into the byte array.
+   *
+   * @param in the input stream to read from.
+   * @param bytes the byte array to read the bytes into.
+   * @param offset the offset in the byte array to start from.
+   * @param length the number of bytes to read.
+   * @throws EOFException if the input stream ends before the given number of bytes are read.
+   * @throws IOException if the input stream fails to read.
+   */
+  public static void readFully(InputStream in, byte[] bytes, int offset, int length) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      int n = in.read(bytes, offset + bytesRead, length - bytesRead);
+      if (n < 0) {
+        throw new EOFException("The input stream ended after " + bytesRead + " bytes, " + length + " bytes are expected.");
+      }
+      bytesRead += n;
+    }
+  }
+
   /**
    * Get the user offset from the metadata of the committed offsets.
    * @param metadata the associated metadata.
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditKey;
+import com.linkedin.kafka.clients.auditing.abstractimpl.CountingAuditStats;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit test for AuditReport
+ */
+public class AuditReportTest {
+
+  @Test
+  public void testSerializationRoundTrip() {
+    CountingAuditStats stats = new CountingAuditStats(1000L);
+    Map<String, long[]> expected = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      AuditType auditType = i % 2 == 0 ? AuditType.SUCCESS : AuditType.FAILURE;
+      AuditKey auditKey = new AuditKey("topic" + (i % 3), (long) i, auditType);
+      stats.update(auditKey, i, 10 * i);
+      stats.update(auditKey, 1, 1);
+      expected.put(auditKey.topic() + "," + i + "," + auditType.name(), new long[]{i + 1, 10 * i + 1});
+    }
+    stats.close();
+
+    List<AuditReport> reports = AuditReport.fromStats(stats, 100);
+    assertEquals(reports.size(), 1, "All the rows should fit in one report");
+    ByteBuffer buffer = reports.get(0).toByteBuffer();
+    AuditReport report = AuditReport.fromByteBuffer(buffer);
+    assertFalse(buffer.hasRemaining(), "The whole report should be read");
+    assertEquals(report.bucketMs(), 1000L);
+    assertEquals(report.numRows(), 10);
+    for (int row = 0; row < report.numRows(); row++) {
+      long[] counts = expected.remove(report.topic(row) + "," + report.bucket(row) + "," + report.auditType(row));
+      assertEquals(report.messageCount(row), counts[0], "Wrong message count in row " + row);
+      assertEquals(report.bytesCount(row), counts[1], "Wrong bytes count in row " + row);
+    }
+    assertTrue(expected.isEmpty(), "All the audit keys should be in the report");
+  }
+
+  @Test
+  public void testMaxRowsPerReport() {
+    CountingAuditStats stats = new CountingAuditStats(1000L);
+    for (int i = 0; i < 25; i++) {
+      stats.update(new AuditKey("topic", (long) i, AuditType.SUCCESS), 1, 1);
+    }
+    stats.close();
+
+    List<AuditReport> reports = AuditReport.fromStats(stats, 10);
+    assertEquals(reports.size(), 3, "The rows should be split into 3 reports");
+    long totalRows = 0;
+    for (AuditReport report : reports) {
+      assertTrue(report.numRows() <= 10, "A report should have at most 10 rows");
+      totalRows += AuditReport.fromByteBuffer(report.toByteBuffer()).numRows();
+    }
+    assertEquals(totalRows, 25L, "All the rows should be reported");
+    assertTrue(AuditReport.fromStats(new CountingAuditStats(1000L), 10).isEmpty(), "Empty stats should have no report");
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AbstractAuditor;
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditStats;
+import com.linkedin.kafka.clients.auditing.abstractimpl.LatencyAuditStats;
+import com.linkedin.kafka.clients.auditing.abstractimpl.LatencyHistogram;
+import org.apache.kafka.common.utils.Time;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+
+/**
+ * Unit test for LatencyAuditor
+ */
+public class LatencyAuditorTest {
+
+  @Test
+  public void testLatencyPerTopic() {
+    MockTime time = new MockTime();
+    time.now = 100000L;
+    Map<Object, LatencyHistogram> histograms = new HashMap<>();
+    LatencyAuditor<String, String> auditor = new LatencyAuditor<String, String>("latency-auditor", time) {
+      @Override
+      public void onClosed(AuditStats currentStats, AuditStats nextStats) {
+        histograms.putAll(((LatencyAuditStats) currentStats).histograms());
+      }
+    };
+    Map<String, String> config = new HashMap<>();
+    config.put(AbstractAuditor.REPORTING_INTERVAL_MS, "600000");
+    auditor.configure(config);
+    auditor.start();
+
+    // Topic0 has latencies from 1 to 1000 ms, topic1 has a constant latency of 10 ms.
+    for (int i = 1; i <= 1000; i++) {
+      auditor.recordPrimitive("topic0", "key", "value", time.now - i, 1L, 10L, AuditType.SUCCESS);
+      auditor.record("topic1", "key", "value", time.now - 10, 1L, 10L, AuditType.SUCCESS);
+    }
+    // Only the successfully audited messages with a timestamp are audited.
+    auditor.recordPrimitive("topic0", "key", "value", time.now - 5000, 1L, 10L, AuditType.ATTEMPT);
+    auditor.recordPrimitive("topic0", "key", "value", -1L, 1L, 10L, AuditType.SUCCESS);
+    auditor.record("topic0", "key", "value", null, 1L, 10L, AuditType.SUCCESS);
+    auditor.close();
+
+    LatencyHistogram topic0 = histograms.get("topic0");
+    assertNotNull(topic0, "The latencies of topic0 should be audited");
+    assertEquals(topic0.count(), 1000L);
+    assertEquals(topic0.max(), 1000L);
+    assertEquals(topic0.valueAtPercentile(50), 511L, "The p50 should be in the bucket of 500 ms");
+    assertEquals(topic0.valueAtPercentile(99), 991L, "The p99 should be in the bucket of 990 ms");
+    LatencyHistogram topic1 = histograms.get("topic1");
+    assertEquals(topic1.count(), 1000L);
+    assertEquals(topic1.valueAtPercentile(99.9), 10L);
+    assertFalse(histograms.containsKey("topic2"));
+  }
+
+  @Test
+  public void testUpdateWithoutTimestamp() {
+    MockTime time = new MockTime();
+    time.now = 100000L;
+    LatencyAuditStats stats = new LatencyAuditStats(time);
+    stats.update("topic0", 1L, 10L);
+    stats.update("topic0", AuditStats.NO_TIMESTAMP, 1L, 10L);
+    assertFalse(stats.histograms().containsKey("topic0"), "The events without a timestamp should not be recorded");
+    stats.update("topic0", time.now - 10, 1L, 10L);
+    assertEquals(stats.histograms().get("topic0").count(), 1L);
+  }
+
+  private static class MockTime implements Time {
+
+    volatile long now = 0L;
+
+    @Override
+    public long milliseconds() {
+      return now;
+    }
+
+    @Override
+    public long nanoseconds() {
+      // Not used.
+      return 0;
+    }
+
+    @Override
+    public void sleep(long ms) {
+      now += ms;
+    }
+  }
+}
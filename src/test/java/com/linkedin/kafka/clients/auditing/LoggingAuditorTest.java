@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import com.linkedin.kafka.clients.auditing.abstractimpl.AbstractAuditor;
+import com.linkedin.kafka.clients.auditing.abstractimpl.AuditKey;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit test for LoggingAuditor
+ */
+public class LoggingAuditorTest {
+  private static final String TOPIC = "topic";
+
+  @Test
+  public void testAuditKeysReusedWithinBucket() {
+    LoggingAuditor<String, String> auditor = new LoggingAuditor<>();
+    Map<String, String> config = new HashMap<>();
+    config.put(LoggingAuditor.BUCKET_MS, "1000");
+    config.put(AbstractAuditor.ENABLE_AUTO_TICK, "false");
+    auditor.configure(config);
+
+    Object auditKey = auditor.getAuditKeyPrimitive(TOPIC, "key", "value", 1000L, 1L, 10L, AuditType.SUCCESS);
+    assertEquals(auditKey, new AuditKey(TOPIC, 1L, AuditType.SUCCESS), "The event should be in bucket 1");
+    assertSame(auditor.getAuditKeyPrimitive(TOPIC, "key", "value", 1999L, 1L, 10L, AuditType.SUCCESS), auditKey,
+               "The audit key should be reused for the events in the same bucket");
+    assertSame(auditor.getAuditKey(TOPIC, "key", "value", 1500L, 1L, 10L, AuditType.SUCCESS), auditKey,
+               "The audit key should be reused for the events recorded with boxed arguments");
+
+    Object failureAuditKey = auditor.getAuditKeyPrimitive(TOPIC, "key", "value", 1000L, 1L, 10L, AuditType.FAILURE);
+    assertEquals(failureAuditKey, new AuditKey(TOPIC, 1L, AuditType.FAILURE), "The audit type should be in the key");
+
+    Object nextAuditKey = auditor.getAuditKeyPrimitive(TOPIC, "key", "value", 2000L, 1L, 10L, AuditType.SUCCESS);
+    assertNotSame(nextAuditKey, auditKey, "The events in the next bucket should have a new audit key");
+    assertEquals(nextAuditKey, new AuditKey(TOPIC, 2L, AuditType.SUCCESS), "The event should be in bucket 2");
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit test for ReportingAuditor and AsyncAuditReportWriter
+ */
+public class ReportingAuditorTest {
+
+  @Test
+  public void testReportToFile() throws IOException {
+    File file = File.createTempFile("audit-report", ".bin");
+    file.deleteOnExit();
+    ReportingAuditor<String, String> auditor = new ReportingAuditor<>();
+    Map<String, String> config = new HashMap<>();
+    config.put(LoggingAuditor.BUCKET_MS, "1000");
+    config.put(ReportingAuditor.REPORT_SINK_CLASS, FileAuditReportSink.class.getName());
+    config.put(FileAuditReportSink.REPORT_FILE, file.getAbsolutePath());
+    auditor.configure(config);
+    auditor.start();
+
+    auditor.recordPrimitive("topic0", "key", "value", 1000L, 1L, 10L, AuditType.SUCCESS);
+    auditor.recordPrimitive("topic0", "key", "value", 1500L, 1L, 10L, AuditType.SUCCESS);
+    auditor.recordPrimitive("topic1", "key", "value", 2000L, 1L, 20L, AuditType.FAILURE);
+    // The stats are reported on closure.
+    auditor.close();
+    assertEquals(auditor.writer().writtenReports(), 1L, "The current stats should be written as one report");
+
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    int size = buffer.getInt();
+    assertEquals(size, buffer.remaining(), "The report should be prefixed with its size");
+    AuditReport report = AuditReport.fromByteBuffer(buffer);
+    assertEquals(report.numRows(), 2);
+    for (int row = 0; row < report.numRows(); row++) {
+      if (report.topic(row).equals("topic0")) {
+        assertEquals(report.bucket(row), 1L);
+        assertEquals(report.auditType(row), AuditType.SUCCESS.name());
+        assertEquals(report.messageCount(row), 2L);
+        assertEquals(report.bytesCount(row), 20L);
+      } else {
+        assertEquals(report.topic(row), "topic1");
+        assertEquals(report.bucket(row), 2L);
+        assertEquals(report.auditType(row), AuditType.FAILURE.name());
+        assertEquals(report.messageCount(row), 1L);
+        assertEquals(report.bytesCount(row), 20L);
+      }
+    }
+  }
+
+  @Test
+  public void testReportsDroppedWhenQueueIsFull() throws InterruptedException {
+    BlockingSink sink = new BlockingSink();
+    AsyncAuditReportWriter writer = new AsyncAuditReportWriter(sink, 2, "test-audit-report-writer");
+    assertTrue(writer.offer(ByteBuffer.allocate(1)));
+    // Wait until the writer thread is blocked in the sink so the queue is empty.
+    assertTrue(sink._writing.await(10, TimeUnit.SECONDS), "The first report should be written");
+    assertTrue(writer.offer(ByteBuffer.allocate(1)));
+    assertTrue(writer.offer(ByteBuffer.allocate(1)));
+    assertFalse(writer.offer(ByteBuffer.allocate(1)), "The report should be dropped when the queue is full");
+    assertEquals(writer.droppedReports(), 1L);
+
+    sink._release.countDown();
+    writer.close(10, TimeUnit.SECONDS);
+    assertEquals(writer.writtenReports(), 3L, "The queued reports should be written on closure");
+    assertTrue(sink._closed, "The sink should be closed with the writer");
+    assertFalse(writer.offer(ByteBuffer.allocate(1)), "The report should be dropped after closure");
+    assertEquals(writer.droppedReports(), 2L);
+  }
+
+  private static class BlockingSink implements AuditReportSink {
+    private final CountDownLatch _writing = new CountDownLatch(1);
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private volatile boolean _closed = false;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+
+    }
+
+    @Override
+    public void write(ByteBuffer report) throws IOException {
+      _writing.countDown();
+      try {
+        _release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void close() {
+      _closed = true;
+    }
+  }
+}
@@ -6,14 +6,21 @@ package com.linkedin.kafka.clients.auditing.abstractimpl;
 
 import com.linkedin.kafka.clients.auditing.AuditType;
 import com.linkedin.kafka.clients.auditing.Auditor;
+import org.apache.kafka.common.utils.SystemTime;
 import org.apache.kafka.common.utils.Time;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -86,6 +93,140 @@ public class AbstractAuditorTest {
     auditor.close();
   }
 
+  @Test
+  public void testRecordPrimitive() {
+    Time time = new MockTime();
+    TestingAuditor auditor = new TestingAuditor(time);
+    Map<String, String> config = new HashMap<>();
+    config.put(TestingAuditor.BUCKET_MS, "30000");
+    config.put(AbstractAuditor.REPORTING_DELAY_MS, "6000");
+    config.put(AbstractAuditor.REPORTING_INTERVAL_MS, "60000");
+    auditor.configure(config);
+    auditor.start();
+
+    auditor.recordPrimitive(TOPIC, "key", "value", 0L, 1L, 1000L, AuditType.SUCCESS);
+    auditor.record(TOPIC, "key", "value", 0L, 1L, 1000L, AuditType.SUCCESS);
+    auditor.recordPrimitive(TOPIC, "key", "value", 60000L, 1L, 1000L, AuditType.FAILURE);
+
+    CountingAuditStats.AuditInfo auditInfo = auditor.currentStats().stats().get(new AuditKey(TOPIC, 0L, AuditType.SUCCESS));
+    assertEquals(auditInfo.messageCount(), 2, "Both recording methods should record to the same audit key");
+    assertEquals(auditInfo.bytesCount(), 2000, "Both recording methods should record the bytes");
+    assertEquals(auditor.nextStats().stats().get(new AuditKey(TOPIC, 2L, AuditType.FAILURE)).messageCount(), 1,
+        "The event at the next tick should be recorded in the next stats");
+
+    auditor.close();
+  }
+
+  @Test
+  public void testTickWaitsForRecordingInProgress() throws InterruptedException {
+    final String blockingTopic = "blockingTopic";
+    final CountDownLatch updateStarted = new CountDownLatch(1);
+    final CountDownLatch finishUpdate = new CountDownLatch(1);
+    Time time = new MockTime();
+    TestingAuditor auditor = new TestingAuditor(time) {
+      @Override
+      protected AuditStats createAuditStats() {
+        return new CountingAuditStats(30000) {
+          @Override
+          public void update(Object auditKey, long messageCount, long bytesCount) {
+            if (blockingTopic.equals(((AuditKey) auditKey).topic())) {
+              updateStarted.countDown();
+              try {
+                finishUpdate.await();
+              } catch (InterruptedException e) {
+                // Let it go.
+              }
+            }
+            super.update(auditKey, messageCount, bytesCount);
+          }
+        };
+      }
+    };
+    Map<String, String> config = new HashMap<>();
+    config.put(TestingAuditor.BUCKET_MS, "30000");
+    config.put(AbstractAuditor.ENABLE_AUTO_TICK, "false");
+    auditor.configure(config);
+    auditor.start();
+
+    Thread recorder = new Thread(() -> auditor.recordPrimitive(blockingTopic, "key", "value", 0L, 1L, 10L, AuditType.SUCCESS));
+    recorder.start();
+    assertTrue(updateStarted.await(5, TimeUnit.SECONDS), "The recording should have started");
+
+    AtomicReference<CountingAuditStats> tickedStats = new AtomicReference<>();
+    Thread ticker = new Thread(() -> tickedStats.set(auditor.tickAndGetStats()));
+    ticker.start();
+    ticker.join(100);
+    assertTrue(ticker.isAlive(), "The tick should wait for the recording in progress");
+    // Recording to the new stats should not be blocked by the tick.
+    auditor.recordPrimitive(TOPIC, "key", "value", 0L, 1L, 10L, AuditType.SUCCESS);
+
+    finishUpdate.countDown();
+    ticker.join(5000);
+    recorder.join(5000);
+    assertFalse(ticker.isAlive(), "The tick should finish after the recording in progress finishes");
+    assertEquals(tickedStats.get().stats().get(new AuditKey(blockingTopic, 0L, AuditType.SUCCESS)).messageCount(), 1,
+        "The recording in progress should be in the ticked stats");
+    assertFalse(tickedStats.get().stats().containsKey(new AuditKey(TOPIC, 0L, AuditType.SUCCESS)),
+        "The recording after the tick should not be in the ticked stats");
+
+    auditor.close();
+  }
+
+  @Test
+  public void testConfigurationPerInstance() {
+    Time time = new MockTime();
+    TestingAuditor auditor1 = new TestingAuditor(time);
+    Map<String, String> config1 = new HashMap<>();
+    config1.put(AbstractAuditor.REPORTING_INTERVAL_MS, "60000");
+    auditor1.configure(config1);
+    auditor1.start();
+
+    TestingAuditor auditor2 = new TestingAuditor(time);
+    Map<String, String> config2 = new HashMap<>();
+    config2.put(AbstractAuditor.REPORTING_INTERVAL_MS, "1000");
+    auditor2.configure(config2);
+    auditor2.start();
+
+    assertEquals(auditor2.nextTick(), 1000, "The second auditor should use its own reporting interval");
+    auditor1.tickAndGetStats();
+    assertEquals(auditor1.nextTick(), 120000,
+        "The first auditor should keep its reporting interval after the second auditor is configured");
+
+    auditor1.close();
+    auditor2.close();
+  }
+
+  @Test
+  public void testSharedTickScheduler() throws InterruptedException {
+    List<TestingAuditor> auditors = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      TestingAuditor auditor = new TestingAuditor(new SystemTime());
+      Map<String, String> config = new HashMap<>();
+      config.put(AbstractAuditor.REPORTING_INTERVAL_MS, "50");
+      config.put(AbstractAuditor.REPORTING_DELAY_MS, "0");
+      config.put(AbstractAuditor.ENABLE_SHARED_TICK_SCHEDULER, "true");
+      auditor.configure(config);
+      auditor.start();
+      auditors.add(auditor);
+    }
+
+    long startMs = System.currentTimeMillis();
+    for (TestingAuditor auditor : auditors) {
+      while (auditor.ticks() < 2 && System.currentTimeMillis() < startMs + 10000) {
+        Thread.sleep(10);
+      }
+      assertTrue(auditor.ticks() >= 2, "The auditor should be ticked by the shared tick scheduler");
+      assertEquals(auditor.getState(), Thread.State.NEW, "The auditor should not start its own thread");
+    }
+
+    for (TestingAuditor auditor : auditors) {
+      auditor.close();
+    }
+    long ticks = auditors.get(0).ticks();
+    Thread.sleep(200);
+    assertEquals(auditors.get(0).ticks(), ticks, "The closed auditor should not tick anymore");
+  }
+
   @Test
   public void testClose() {
     Time time = new MockTime();
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.auditing.abstractimpl;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit test for LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    int previousIndex = -1;
+    for (long value = 0; value < 100000; value++) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(index == previousIndex || index == previousIndex + 1, "The buckets should be contiguous at " + value);
+      long highestValue = LatencyHistogram.highestValueInBucket(index);
+      assertTrue(highestValue >= value, "The highest value of the bucket should not be smaller than " + value);
+      assertTrue(highestValue - value <= value / 16, "The relative error should be at most 1/16 for " + value);
+      previousIndex = index;
+    }
+    assertEquals(LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE), LatencyHistogram.NUM_BUCKETS - 1);
+    assertEquals(LatencyHistogram.highestValueInBucket(LatencyHistogram.NUM_BUCKETS - 1), LatencyHistogram.MAX_VALUE);
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(histogram.valueAtPercentile(50), 0L, "An empty histogram should report 0");
+    for (int i = 0; i < 100; i++) {
+      histogram.record(i, 1);
+    }
+    histogram.record(100000, 10);
+    histogram.record(-1, 1);
+    histogram.record(Long.MAX_VALUE, 1);
+
+    assertEquals(histogram.count(), 111L, "The negative value should be ignored");
+    assertEquals(histogram.max(), LatencyHistogram.MAX_VALUE, "The values should be bounded by the max value");
+    assertEquals(histogram.valueAtPercentile(0), 0L);
+    assertEquals(histogram.valueAtPercentile(10), 11L);
+    assertEquals(histogram.valueAtPercentile(50), 55L);
+    long p95 = histogram.valueAtPercentile(95);
+    assertTrue(p95 >= 100000 && p95 <= 100000 + 100000 / 16, "The p95 should be in the bucket of 100000, but it is " + p95);
+    assertEquals(histogram.valueAtPercentile(100), LatencyHistogram.MAX_VALUE);
+  }
+}
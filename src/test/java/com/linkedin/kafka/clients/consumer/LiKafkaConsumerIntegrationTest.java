@@ -8,6 +8,7 @@ import com.linkedin.kafka.clients.largemessage.DefaultSegmentSerializer;
 import com.linkedin.kafka.clients.largemessage.MessageSplitter;
 import com.linkedin.kafka.clients.largemessage.MessageSplitterImpl;
 import com.linkedin.kafka.clients.producer.LiKafkaProducer;
+import com.linkedin.kafka.clients.utils.LiKafkaClientsUtils;
 import com.linkedin.kafka.clients.utils.TestUtils;
 import com.linkedin.kafka.clients.utils.tests.AbstractKafkaClientsIntegrationTestHarness;
 import java.util.Comparator;
@@ -48,12 +49,14 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 
@@ -361,6 +364,39 @@ public class LiKafkaConsumerIntegrationTest extends AbstractKafkaClientsIntegrat
     }
   }
 
+  @Test
+  public void testOffsetCommitCallbacksOfInFlightCommits() {
+    String topic = "testOffsetCommitCallbacksOfInFlightCommits";
+    produceSyntheticMessages(topic);
+    Properties props = new Properties();
+    // All the consumers should have the same group id.
+    props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "testOffsetCommitCallbacksOfInFlightCommits");
+    // Make sure we start to consume from the beginning.
+    props.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    // Only fetch one record at a time.
+    props.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "1");
+    try (LiKafkaConsumer<String, String> consumer = createConsumer(props)) {
+      TopicPartition tp = new TopicPartition(topic, SYNTHETIC_PARTITION_0);
+      consumer.assign(Collections.singleton(tp));
+      consumer.poll(5000); // M2
+      // Issue two commits before either of them completes, each of them should get its own callback.
+      final Map<TopicPartition, OffsetAndMetadata> firstCommitted = new HashMap<>();
+      final Map<TopicPartition, OffsetAndMetadata> secondCommitted = new HashMap<>();
+      consumer.commitAsync((offsets, e) -> firstCommitted.putAll(offsets));
+      consumer.commitAsync(Collections.singletonMap(tp, new OffsetAndMetadata(3, "second")),
+                           (offsets, e) -> secondCommitted.putAll(offsets));
+      long startMs = System.currentTimeMillis();
+      while ((firstCommitted.isEmpty() || secondCommitted.isEmpty()) && System.currentTimeMillis() < startMs + 10000) {
+        consumer.poll(10);
+      }
+      assertEquals(firstCommitted.get(tp), new OffsetAndMetadata(3, ""), "The first commit should commit user offset 3");
+      assertEquals(secondCommitted.get(tp), new OffsetAndMetadata(3, "second"),
+                   "The second commit should commit user offset 3 with its own metadata");
+      assertEquals(consumer.committed(tp), new OffsetAndMetadata(3, "second"), "The last commit should win");
+      assertEquals(consumer.committedSafeOffset(tp).longValue(), 0, "The committed actual offset should be 0");
+    }
+  }
+
   @Test
   public void testCommittedOnOffsetsCommittedByRawConsumer() {
     String topic = "testCommittedOnOffsetsCommittedByRawConsumer";
@@ -404,6 +440,92 @@ public class LiKafkaConsumerIntegrationTest extends AbstractKafkaClientsIntegrat
     }
   }
 
+  @Test
+  public void testCommittedOffsetCacheInvalidatedOnAssignmentChange() {
+    String topic = "testCommittedOffsetCacheInvalidatedOnAssignmentChange";
+    TopicPartition tp = new TopicPartition(topic, 0);
+    TopicPartition tp1 = new TopicPartition(topic, 1);
+    produceSyntheticMessages(topic);
+    Properties props = new Properties();
+    props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "testCommittedOffsetCacheInvalidatedOnAssignmentChange");
+
+    try (LiKafkaConsumer<String, String> consumer = createConsumer(props);
+        Consumer<byte[], byte[]> rawConsumer = new KafkaConsumer<>(getConsumerProperties(props))) {
+      consumer.assign(Collections.singleton(tp));
+      // The committed offset of this commit is cached by the consumer.
+      consumer.commitSync(Collections.singletonMap(tp, new OffsetAndMetadata(1L)));
+      // Another consumer commits user offset 2 with safe offset 0 while the partition is not assigned to the consumer.
+      consumer.assign(Collections.singleton(tp1));
+      rawConsumer.assign(Collections.singleton(tp));
+      rawConsumer.commitSync(Collections.singletonMap(tp, new OffsetAndMetadata(0L,
+          LiKafkaClientsUtils.wrapMetadataWithOffset("", 2L))));
+      consumer.assign(Collections.singleton(tp));
+      // Committing the committed user offset again should keep the committed safe offset, which is only possible if
+      // the consumer did not use the committed offset it cached before the assignment change.
+      consumer.commitSync(Collections.singletonMap(tp, new OffsetAndMetadata(2L)));
+      assertEquals(consumer.committed(tp).offset(), 2L, "The committed user offset should be 2");
+      assertEquals(consumer.committedSafeOffset(tp).longValue(), 0L, "The committed safe offset should be 0");
+    }
+  }
+
+  /**
+   * The committed offsets of the assigned partitions are loaded in bulk during rebalance, so the first poll after
+   * rebalance should not slow down proportionally to the number of assigned partitions.
+   */
+  @Test
+  public void testFirstPollLatencyAgainstAssignmentSize() {
+    Map<Integer, Long> firstPollLatencyMs = new TreeMap<>();
+    for (int numTopics : new int[]{1, 4, 16}) {
+      String groupId = "testFirstPollLatencyAgainstAssignmentSize-" + numTopics;
+      List<String> topics = new ArrayList<>();
+      Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>();
+      try (LiKafkaProducer<String, String> producer = createProducer(new Properties())) {
+        for (int i = 0; i < numTopics; i++) {
+          String topic = groupId + "-" + i;
+          topics.add(topic);
+          for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+            // The message at offset 0 is committed as consumed, only the message at offset 1 should be delivered.
+            producer.send(new ProducerRecord<>(topic, partition, topic, "consumed"));
+            producer.send(new ProducerRecord<>(topic, partition, topic, "not consumed"));
+            offsetsToCommit.put(new TopicPartition(topic, partition), new OffsetAndMetadata(1L));
+          }
+        }
+      }
+
+      Properties props = new Properties();
+      props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+      props.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+      props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+      try (LiKafkaConsumer<String, String> consumer = createConsumer(props)) {
+        consumer.assign(offsetsToCommit.keySet());
+        consumer.commitSync(offsetsToCommit);
+      }
+
+      try (LiKafkaConsumer<String, String> consumer = createConsumer(props)) {
+        Set<TopicPartition> partitionsConsumed = new HashSet<>();
+        long startMs = System.currentTimeMillis();
+        consumer.subscribe(topics);
+        while (partitionsConsumed.size() < offsetsToCommit.size() && System.currentTimeMillis() < startMs + 30000) {
+          ConsumerRecords<String, String> records = consumer.poll(100);
+          if (!records.isEmpty() && !firstPollLatencyMs.containsKey(offsetsToCommit.size())) {
+            firstPollLatencyMs.put(offsetsToCommit.size(), System.currentTimeMillis() - startMs);
+          }
+          for (ConsumerRecord<String, String> record : records) {
+            assertEquals(record.offset(), 1L, "Only the message after the committed offset should be delivered");
+            partitionsConsumed.add(new TopicPartition(record.topic(), record.partition()));
+          }
+        }
+        assertEquals(partitionsConsumed, offsetsToCommit.keySet(), "All the partitions should have been consumed");
+      }
+    }
+    long smallestAssignmentLatencyMs = firstPollLatencyMs.get(NUM_PARTITIONS);
+    long largestAssignmentLatencyMs = firstPollLatencyMs.get(16 * NUM_PARTITIONS);
+    // 16 times the partitions should take well under 16 times as long, allow twice as long plus some slack for
+    // the extra group metadata and fetch responses.
+    assertTrue(largestAssignmentLatencyMs < 2 * smallestAssignmentLatencyMs + 500,
+               "First poll latency in ms by number of assigned partitions: " + firstPollLatencyMs);
+  }
+
   @Test
   public void testSeekAfterAssignmentChange() {
     produceRecordsWithKafkaProducer();
@@ -5,23 +5,33 @@
 package com.linkedin.kafka.clients.producer;
 
 import com.linkedin.kafka.clients.consumer.LiKafkaConsumer;
+import com.linkedin.kafka.clients.largemessage.MessageSplitterImpl;
+import com.linkedin.kafka.clients.utils.TestUtils;
 import com.linkedin.kafka.clients.utils.tests.AbstractKafkaClientsIntegrationTestHarness;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 
 public class LiKafkaProducerIntegrationTest extends AbstractKafkaClientsIntegrationTestHarness {
   // Runs testing against running kafka host
@@ -81,5 +91,91 @@ public class LiKafkaProducerIntegrationTest extends AbstractKafkaClientsIntegrat
     assertEquals(RECORD_COUNT, messageCount);
   }
 
-}
+  @Test
+  public void testLargeMessageMetrics() {
+    Properties props = new Properties();
+    props.setProperty(LiKafkaProducerConfig.LARGE_MESSAGE_ENABLED_CONFIG, "true");
+    props.setProperty(LiKafkaProducerConfig.MAX_MESSAGE_SEGMENT_BYTES_CONFIG, "200");
+    LiKafkaProducer<String, String> producer = createProducer(props);
+    final String tempTopic = "testTopic" + new Random().nextInt(1000000);
+    producer.send(new ProducerRecord<>(tempTopic, TestUtils.getRandomString(1000)));
+    producer.flush();
+
+    Map<MetricName, ? extends Metric> metrics = producer.metrics();
+    Metric segmentsPerMessage = null;
+    boolean hasProducerMetrics = false;
+    for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+      if (entry.getKey().group().equals(MessageSplitterImpl.METRIC_GROUP)
+          && entry.getKey().name().equals("segments-per-message-max")) {
+        segmentsPerMessage = entry.getValue();
+      } else if (entry.getKey().group().equals("producer-metrics")) {
+        hasProducerMetrics = true;
+      }
+    }
+    assertTrue("The metrics of the underlying producer should be included", hasProducerMetrics);
+    assertTrue("The large message metrics should be included", segmentsPerMessage != null);
+    assertEquals(5.0, segmentsPerMessage.value(), 0.0);
+    producer.close();
+  }
+
+  @Test
+  public void testSendInputStream() {
+    Properties props = new Properties();
+    props.setProperty(LiKafkaProducerConfig.LARGE_MESSAGE_ENABLED_CONFIG, "true");
+    props.setProperty(LiKafkaProducerConfig.MAX_MESSAGE_SEGMENT_BYTES_CONFIG, "200");
+    LiKafkaProducer<String, String> producer = createProducer(props);
+    final String tempTopic = "testTopic" + new Random().nextInt(1000000);
+    // One value is sent as segments read from the stream, the other one fits in a single segment.
+    List<String> values = Arrays.asList(TestUtils.getRandomString(1000), TestUtils.getRandomString(100));
+    for (String value : values) {
+      byte[] bytes = value.getBytes();
+      producer.send(tempTopic, 0, null, null, new ByteArrayInputStream(bytes), bytes.length, null);
+    }
+    producer.close();
+
+    Properties consumerProps = new Properties();
+    consumerProps.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    LiKafkaConsumer<String, String> consumer = createConsumer(consumerProps);
+    consumer.subscribe(Collections.singleton(tempTopic));
+    List<String> received = new ArrayList<>();
+    long startMs = System.currentTimeMillis();
+    while (received.size() < values.size() && System.currentTimeMillis() < startMs + 30000) {
+      for (ConsumerRecord<String, String> record : consumer.poll(100)) {
+        received.add(record.value());
+      }
+    }
+    consumer.close();
+    assertEquals(values, received);
+  }
+
+  @Test
+  public void testLargeMessageCompression() {
+    Properties props = new Properties();
+    props.setProperty(LiKafkaProducerConfig.LARGE_MESSAGE_ENABLED_CONFIG, "true");
+    props.setProperty(LiKafkaProducerConfig.MAX_MESSAGE_SEGMENT_BYTES_CONFIG, "200");
+    props.setProperty(LiKafkaProducerConfig.LARGE_MESSAGE_COMPRESSION_TYPE_CONFIG, "lz4");
+    LiKafkaProducer<String, String> producer = createProducer(props);
+    final String tempTopic = "testTopic" + new Random().nextInt(1000000);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("{\"id\":").append(i).append(",\"value\":\"").append(TestUtils.getRandomString(10)).append("\"}");
+    }
+    String value = sb.toString();
+    producer.send(new ProducerRecord<>(tempTopic, value));
+    producer.close();
 
+    Properties consumerProps = new Properties();
+    consumerProps.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    LiKafkaConsumer<String, String> consumer = createConsumer(consumerProps);
+    consumer.subscribe(Collections.singleton(tempTopic));
+    String received = null;
+    long startMs = System.currentTimeMillis();
+    while (received == null && System.currentTimeMillis() < startMs + 30000) {
+      for (ConsumerRecord<String, String> record : consumer.poll(100)) {
+        received = record.value();
+      }
+    }
+    consumer.close();
+    assertEquals(value, received);
+  }
+}
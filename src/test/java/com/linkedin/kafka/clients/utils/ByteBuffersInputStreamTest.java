@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit test for ByteBuffersInputStream
+ */
+public class ByteBuffersInputStreamTest {
+
+  @Test
+  public void testRead() {
+    ByteBuffer buffer0 = ByteBuffer.wrap("__abc".getBytes());
+    buffer0.position(2);
+    ByteBuffer buffer1 = ByteBuffer.allocate(0);
+    ByteBuffer buffer2 = ByteBuffer.wrap("defgh".getBytes());
+    ByteBuffersInputStream in = new ByteBuffersInputStream(buffer0, buffer1, buffer2);
+    assertEquals(in.available(), 8, "All the remaining bytes should be available");
+    assertEquals(in.read(), 'a', "The first byte should be read");
+    byte[] bytes = new byte[4];
+    assertEquals(in.read(bytes, 0, 4), 4, "The read should continue across the buffers");
+    assertEquals(new String(bytes), "bcde");
+    assertEquals(in.skip(2), 2, "Two bytes should be skipped");
+    assertEquals(in.read(bytes, 0, 4), 1, "Only one byte should be left");
+    assertEquals(bytes[0], 'h');
+    assertEquals(in.read(), -1, "The end of the stream should be reached");
+    assertEquals(in.read(bytes, 0, 4), -1, "The end of the stream should be reached");
+    assertEquals(buffer0.position(), 2, "The position of the buffers should not change");
+    assertEquals(buffer2.position(), 0, "The position of the buffers should not change");
+  }
+
+  @Test
+  public void testReadCompressedSegments() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("message").append(i);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(sb.toString().getBytes());
+    }
+    // Split the compressed bytes into segments of 100 bytes.
+    byte[] compressed = out.toByteArray();
+    ByteBuffer[] segments = new ByteBuffer[(compressed.length + 99) / 100];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = ByteBuffer.wrap(compressed, i * 100, Math.min(100, compressed.length - i * 100)).slice();
+    }
+
+    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteBuffersInputStream(segments))) {
+      byte[] bytes = new byte[64];
+      int bytesRead;
+      while ((bytesRead = in.read(bytes)) >= 0) {
+        decompressed.write(bytes, 0, bytesRead);
+      }
+    }
+    assertEquals(new String(decompressed.toByteArray()), sb.toString(), "The decompressed message should match");
+  }
+}
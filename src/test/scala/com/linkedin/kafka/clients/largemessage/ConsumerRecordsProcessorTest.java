@@ -4,6 +4,9 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import com.linkedin.kafka.clients.consumer.ByteBufferPassThroughDeserializer;
+import com.linkedin.kafka.clients.consumer.StringBufferDeserializer;
+import com.linkedin.kafka.clients.utils.ByteBuffersInputStream;
 import com.linkedin.kafka.clients.largemessage.errors.OffsetNotTrackedException;
 import com.linkedin.kafka.clients.utils.TestUtils;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -11,7 +14,9 @@ import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteBufferDeserializer;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -27,9 +32,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -76,6 +83,140 @@ public class ConsumerRecordsProcessorTest {
     assertEquals(consumerRecord.value(), "message0", "\"message0\" should be the value");
   }
 
+  @Test
+  public void testByteBufferValueNotCopied() {
+    Serializer<LargeMessageSegment> segmentSerializer = new DefaultSegmentSerializer();
+    MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, new DefaultSegmentDeserializer());
+    ConsumerRecordsProcessor<String, ByteBuffer> consumerRecordsProcessor =
+        new ConsumerRecordsProcessor<>(assembler, new StringDeserializer(), new ByteBufferPassThroughDeserializer(),
+                                       new DeliveredMessageOffsetTracker(4), null, 1);
+
+    // Let consumer record 0 be a normal record.
+    byte[] message0Bytes = "message0".getBytes();
+    ConsumerRecord<byte[], byte[]> consumerRecord0 =
+        new ConsumerRecord<>("topic", 0, 0, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), message0Bytes);
+
+    // Let consumer record 1 and 2 be the two segments of a large message.
+    UUID messageId = UUID.randomUUID();
+    byte[] message1Segment0 = segmentSerializer.serialize("topic", TestUtils.createLargeMessageSegment(messageId, 0, 2, 20, 10));
+    byte[] message1Segment1 = segmentSerializer.serialize("topic", TestUtils.createLargeMessageSegment(messageId, 1, 2, 20, 10));
+    ConsumerRecord<byte[], byte[]> consumerRecord1 =
+        new ConsumerRecord<>("topic", 0, 1, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), message1Segment0);
+    ConsumerRecord<byte[], byte[]> consumerRecord2 =
+        new ConsumerRecord<>("topic", 0, 2, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), message1Segment1);
+
+    List<ConsumerRecord<byte[], byte[]>> recordList = Arrays.asList(consumerRecord0, consumerRecord1, consumerRecord2);
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    recordsMap.put(new TopicPartition("topic", 0), recordList);
+    ConsumerRecords<String, ByteBuffer> processedRecords = consumerRecordsProcessor.process(new ConsumerRecords<>(recordsMap));
+    assertEquals(processedRecords.count(), 2, "There should be 2 records");
+    Iterator<ConsumerRecord<String, ByteBuffer>> iter = processedRecords.iterator();
+
+    ConsumerRecord<String, ByteBuffer> record0 = iter.next();
+    assertSame(record0.value().array(), message0Bytes, "The value should share the bytes of the fetched record");
+    assertEquals(record0.serializedValueSize(), message0Bytes.length, "The serialized value size should match");
+
+    ConsumerRecord<String, ByteBuffer> record1 = iter.next();
+    assertEquals(record1.offset(), 2, "The large message should be delivered at offset 2");
+    assertEquals(record1.value().remaining(), 20, "The large message should be fully assembled");
+    assertEquals(record1.serializedValueSize(), 20, "The serialized value size should be the assembled message size");
+    byte[] message1Bytes = new byte[20];
+    record1.value().duplicate().get(message1Bytes);
+    TestUtils.verifyMessage(message1Bytes, 20, 10);
+  }
+
+  @Test
+  public void testKafkaByteBufferDeserializer() {
+    // Kafka's ByteBufferDeserializer is not a buffer deserializer, so the backing array of the value should only
+    // contain the message bytes.
+    Serializer<LargeMessageSegment> segmentSerializer = new DefaultSegmentSerializer();
+    MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, new DefaultSegmentDeserializer());
+    ConsumerRecordsProcessor<String, ByteBuffer> consumerRecordsProcessor =
+        new ConsumerRecordsProcessor<>(assembler, new StringDeserializer(), new ByteBufferDeserializer(),
+                                       new DeliveredMessageOffsetTracker(4), null, 1);
+
+    UUID messageId = UUID.randomUUID();
+    byte[] segment0 = segmentSerializer.serialize("topic", TestUtils.createLargeMessageSegment(messageId, 0, 2, 20, 10));
+    byte[] segment1 = segmentSerializer.serialize("topic", TestUtils.createLargeMessageSegment(messageId, 1, 2, 20, 10));
+    List<ConsumerRecord<byte[], byte[]>> recordList = Arrays.asList(
+        new ConsumerRecord<>("topic", 0, 0, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), segment0),
+        new ConsumerRecord<>("topic", 0, 1, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), segment1));
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    recordsMap.put(new TopicPartition("topic", 0), recordList);
+    ConsumerRecords<String, ByteBuffer> processedRecords = consumerRecordsProcessor.process(new ConsumerRecords<>(recordsMap));
+    assertEquals(processedRecords.count(), 1, "There should be 1 record");
+
+    ByteBuffer value = processedRecords.iterator().next().value();
+    assertEquals(value.array().length, 20, "The backing array should only contain the message bytes");
+    TestUtils.verifyMessage(value.array(), 20, 10);
+  }
+
+  @Test
+  public void testBufferDeserializer() {
+    // The buffer deserializer should always be called with the message buffer instead of a copied byte array.
+    Deserializer<String> bufferDeserializer = new StringBufferDeserializer() {
+      @Override
+      public String deserialize(String topic, byte[] data) {
+        fail("The byte array deserialize method should not be called");
+        return null;
+      }
+    };
+    ConsumerRecordsProcessor<String, String> bufferRecordsProcessor = createConsumerRecordsProcessor(bufferDeserializer, 1);
+    ConsumerRecordsProcessor<String, String> consumerRecordsProcessor = createConsumerRecordsProcessor();
+    ConsumerRecords<byte[], byte[]> records = getConsumerRecords();
+    ConsumerRecords<String, String> bufferRecords = bufferRecordsProcessor.process(records);
+    ConsumerRecords<String, String> expectedRecords = consumerRecordsProcessor.process(records);
+    assertEquals(bufferRecords.count(), expectedRecords.count(), "The number of records should match");
+    Iterator<ConsumerRecord<String, String>> expectedIter = expectedRecords.iterator();
+    for (ConsumerRecord<String, String> record : bufferRecords) {
+      ConsumerRecord<String, String> expected = expectedIter.next();
+      assertEquals(record.offset(), expected.offset(), "Offset should match");
+      assertEquals(record.value(), expected.value(), "Value should match");
+      assertEquals(record.serializedValueSize(), expected.serializedValueSize(), "Serialized value size should match");
+    }
+  }
+
+  @Test
+  public void testBufferDeserializerWithSegments() {
+    // The deserializer reads the large message from its segments without assembling it.
+    List<Integer> numBuffers = new ArrayList<>();
+    Deserializer<ByteBuffer> segmentsDeserializer = new ByteBufferPassThroughDeserializer() {
+      @Override
+      public ByteBuffer deserialize(String topic, ByteBuffer[] data) {
+        numBuffers.add(data.length);
+        byte[] bytes = new byte[100];
+        int bytesRead = new ByteBuffersInputStream(data).read(bytes, 0, bytes.length);
+        return ByteBuffer.wrap(bytes, 0, bytesRead);
+      }
+    };
+    MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, new DefaultSegmentDeserializer());
+    ConsumerRecordsProcessor<String, ByteBuffer> consumerRecordsProcessor =
+        new ConsumerRecordsProcessor<>(assembler, new StringDeserializer(), segmentsDeserializer,
+                                       new DeliveredMessageOffsetTracker(4), null, 1);
+
+    Serializer<LargeMessageSegment> segmentSerializer = new DefaultSegmentSerializer();
+    UUID messageId = UUID.randomUUID();
+    List<ConsumerRecord<byte[], byte[]>> recordList = new ArrayList<>();
+    recordList.add(new ConsumerRecord<>("topic", 0, 0, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(),
+                                        "message0".getBytes()));
+    for (int seq = 0; seq < 3; seq++) {
+      byte[] segmentBytes = segmentSerializer.serialize("topic", TestUtils.createLargeMessageSegment(messageId, seq, 3, 30, 10));
+      recordList.add(new ConsumerRecord<>("topic", 0, seq + 1, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(),
+                                          segmentBytes));
+    }
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    recordsMap.put(new TopicPartition("topic", 0), recordList);
+    ConsumerRecords<String, ByteBuffer> processedRecords = consumerRecordsProcessor.process(new ConsumerRecords<>(recordsMap));
+
+    assertEquals(processedRecords.count(), 2, "There should be 2 records");
+    assertEquals(numBuffers, Arrays.asList(1, 3), "The large message should be delivered as its 3 segments");
+    Iterator<ConsumerRecord<String, ByteBuffer>> iter = processedRecords.iterator();
+    assertEquals(iter.next().value(), ByteBuffer.wrap("message0".getBytes()), "The normal message should match");
+    ConsumerRecord<String, ByteBuffer> largeMessageRecord = iter.next();
+    assertEquals(largeMessageRecord.serializedValueSize(), 30, "The serialized value size should be the message size");
+    TestUtils.verifyMessage(largeMessageRecord.value().array(), 30, 10);
+  }
+
   @Test
   public void testCorrectness() {
     ConsumerRecordsProcessor<String, String> consumerRecordsProcessor = createConsumerRecordsProcessor();
@@ -273,7 +414,192 @@ public class ConsumerRecordsProcessorTest {
     assertNull(consumerRecordsProcessor.delivered(new TopicPartition("topic", 1)));
   }
 
+  @Test
+  public void testDeserializeOnlyDeliveredRecords() {
+    final AtomicInteger keysDeserialized = new AtomicInteger(0);
+    final AtomicInteger valuesDeserialized = new AtomicInteger(0);
+    Deserializer<String> keyDeserializer = new StringDeserializer() {
+      @Override
+      public String deserialize(String topic, byte[] data) {
+        keysDeserialized.incrementAndGet();
+        return super.deserialize(topic, data);
+      }
+    };
+    Deserializer<String> valueDeserializer = new StringDeserializer() {
+      @Override
+      public String deserialize(String topic, byte[] data) {
+        valuesDeserialized.incrementAndGet();
+        return super.deserialize(topic, data);
+      }
+    };
+    MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, new DefaultSegmentDeserializer());
+    ConsumerRecordsProcessor<String, String> consumerRecordsProcessor =
+        new ConsumerRecordsProcessor<>(assembler, keyDeserializer, valueDeserializer,
+                                       new DeliveredMessageOffsetTracker(4), null);
+    ConsumerRecords<String, String> processedRecords = consumerRecordsProcessor.process(getConsumerRecords());
+    assertEquals(processedRecords.count(), 4, "There should be 4 records");
+    for (ConsumerRecord<String, String> record : processedRecords) {
+      assertEquals(record.key(), "key", "The key should be deserialized");
+    }
+    // The two incomplete large message segments should not be deserialized.
+    assertEquals(keysDeserialized.get(), 4, "Each delivered key should be deserialized exactly once");
+    assertEquals(valuesDeserialized.get(), 4, "Each delivered value should be deserialized exactly once");
+  }
+
+  @Test
+  public void testCompleteMessagesFastPath() {
+    Serializer<String> stringSerializer = new StringSerializer();
+    MessageSplitter splitter = new MessageSplitterImpl(500, new DefaultSegmentSerializer());
+    List<ProducerRecord<byte[], byte[]>> largeMessage =
+        splitter.split("topic", UUID.randomUUID(), stringSerializer.serialize("topic", TestUtils.getRandomString(600)));
+    TopicPartition tp = new TopicPartition("topic", 0);
+    // Offsets 0, 1, 3, 5 and 6 are normal messages, offsets 2 and 4 are the segments of a large message.
+    List<ConsumerRecord<byte[], byte[]>> recordList = new ArrayList<>();
+    for (int offset = 0; offset < 7; offset++) {
+      byte[] value = offset == 2 ? largeMessage.get(0).value() :
+          offset == 4 ? largeMessage.get(1).value() : stringSerializer.serialize("topic", "message" + offset);
+      recordList.add(new ConsumerRecord<>("topic", 0, offset, 0L, TimestampType.CREATE_TIME, 0, 0, 0,
+                                          "key".getBytes(), value));
+    }
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    recordsMap.put(tp, recordList);
+    ConsumerRecords<byte[], byte[]> records = new ConsumerRecords<>(recordsMap);
+
+    // The assembler of the reference processor always reports incomplete messages, so no record takes the fast path.
+    Deserializer<String> stringDeserializer = new StringDeserializer();
+    final MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, new DefaultSegmentDeserializer());
+    MessageAssembler perRecordAssembler = new MessageAssembler() {
+      @Override
+      public AssembleResult assemble(TopicPartition tp, long offset, byte[] segmentBytes) {
+        return assembler.assemble(tp, offset, segmentBytes);
+      }
+
+      @Override
+      public Map<TopicPartition, Long> safeOffsets() {
+        return assembler.safeOffsets();
+      }
+
+      @Override
+      public long safeOffset(TopicPartition tp) {
+        return assembler.safeOffset(tp);
+      }
+
+      @Override
+      public boolean hasIncompleteMessages(TopicPartition tp) {
+        return true;
+      }
+
+      @Override
+      public void clear() {
+        assembler.clear();
+      }
+
+      @Override
+      public void clear(TopicPartition tp) {
+        assembler.clear(tp);
+      }
+
+      @Override
+      public void close() {
+        assembler.close();
+      }
+    };
+    ConsumerRecordsProcessor<String, String> perRecordProcessor =
+        new ConsumerRecordsProcessor<>(perRecordAssembler, stringDeserializer, stringDeserializer,
+                                       new DeliveredMessageOffsetTracker(4), null);
+    ConsumerRecordsProcessor<String, String> consumerRecordsProcessor = createConsumerRecordsProcessor();
+    // Skip the first message.
+    perRecordProcessor.setPartitionConsumerHighWaterMark(tp, 1L);
+    consumerRecordsProcessor.setPartitionConsumerHighWaterMark(tp, 1L);
+
+    List<ConsumerRecord<String, String>> expected = perRecordProcessor.process(records).records(tp);
+    List<ConsumerRecord<String, String>> actual = consumerRecordsProcessor.process(records).records(tp);
+    assertEquals(actual.size(), 5, "Offsets 1, 3, 4, 5 and 6 should be delivered");
+    assertEquals(actual.size(), expected.size(), "The number of records should match");
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(actual.get(i).offset(), expected.get(i).offset(), "The offsets should match");
+      assertEquals(actual.get(i).value(), expected.get(i).value(), "The values should match");
+    }
+    assertEquals(consumerRecordsProcessor.delivered(tp), perRecordProcessor.delivered(tp),
+                 "The last delivered offset should match");
+    assertEquals(consumerRecordsProcessor.earliestTrackedOffset(tp), perRecordProcessor.earliestTrackedOffset(tp),
+                 "The earliest tracked offset should match");
+    assertEquals(consumerRecordsProcessor.safeOffset(tp), perRecordProcessor.safeOffset(tp),
+                 "The current safe offset should match");
+    for (long offset : new long[]{1L, 3L, 4L, 5L, 6L}) {
+      assertEquals(consumerRecordsProcessor.safeOffset(tp, offset), perRecordProcessor.safeOffset(tp, offset),
+                   "The safe offset of message " + offset + " should match");
+      assertEquals(consumerRecordsProcessor.startingOffset(tp, offset), perRecordProcessor.startingOffset(tp, offset),
+                   "The starting offset of message " + offset + " should match");
+    }
+    assertEquals(consumerRecordsProcessor.closestDeliveredUpTo(tp, 2L), perRecordProcessor.closestDeliveredUpTo(tp, 2L),
+                 "The closest delivered offset should match");
+    assertEquals(consumerRecordsProcessor.safeOffset(tp, 3L).longValue(), 2L,
+                 "The message delivered after the first segment should depend on the first segment");
+  }
+
+  @Test
+  public void testParallelProcessing() {
+    int numPartitions = 8;
+    ConsumerRecordsProcessor<String, String> sequentialProcessor = createConsumerRecordsProcessor();
+    ConsumerRecordsProcessor<String, String> parallelProcessor = createConsumerRecordsProcessor(new StringDeserializer(), 4);
+    try {
+      ConsumerRecords<byte[], byte[]> records = getConsumerRecords(numPartitions);
+      ConsumerRecords<String, String> sequentialRecords = sequentialProcessor.process(records);
+      ConsumerRecords<String, String> parallelRecords = parallelProcessor.process(records);
+      assertEquals(parallelRecords.count(), 4 * numPartitions, "There should be 4 records for each partition");
+      for (int partition = 0; partition < numPartitions; partition++) {
+        TopicPartition tp = new TopicPartition("topic", partition);
+        List<ConsumerRecord<String, String>> expected = sequentialRecords.records(tp);
+        List<ConsumerRecord<String, String>> actual = parallelRecords.records(tp);
+        assertEquals(actual.size(), expected.size(), "The number of records of " + tp + " should match");
+        for (int i = 0; i < expected.size(); i++) {
+          assertEquals(actual.get(i).offset(), expected.get(i).offset(), "The records of " + tp + " should be in order");
+          assertEquals(actual.get(i).value(), expected.get(i).value(), "The values of " + tp + " should match");
+        }
+        assertEquals(parallelProcessor.delivered(tp), sequentialProcessor.delivered(tp),
+                     "The last delivered offset of " + tp + " should match");
+        assertEquals(parallelProcessor.safeOffset(tp, 2L), sequentialProcessor.safeOffset(tp, 2L),
+                     "The safe offset of " + tp + " should match");
+      }
+      assertEquals(parallelProcessor.safeOffsetsToCommit(), sequentialProcessor.safeOffsetsToCommit(),
+                   "The safe offsets to commit should match");
+    } finally {
+      sequentialProcessor.close();
+      parallelProcessor.close();
+    }
+  }
+
+  @Test(expectedExceptions = SerializationException.class)
+  public void testParallelProcessingException() {
+    Deserializer<String> failingDeserializer = new StringDeserializer() {
+      @Override
+      public String deserialize(String topic, byte[] data) {
+        throw new SerializationException("Failed to deserialize");
+      }
+    };
+    ConsumerRecordsProcessor<String, String> consumerRecordsProcessor =
+        createConsumerRecordsProcessor(failingDeserializer, 4);
+    try {
+      consumerRecordsProcessor.process(getConsumerRecords(4));
+    } finally {
+      consumerRecordsProcessor.close();
+    }
+  }
+
   private ConsumerRecords<byte[], byte[]> getConsumerRecords() {
+    return getConsumerRecords(1);
+  }
+
+  private ConsumerRecords<byte[], byte[]> getConsumerRecords(int numPartitions) {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap = new HashMap<>();
+    for (int partition = 0; partition < numPartitions; partition++) {
+      recordsMap.put(new TopicPartition("topic", partition), getPartitionRecords(partition));
+    }
+    return new ConsumerRecords<>(recordsMap);
+  }
+
+  private List<ConsumerRecord<byte[], byte[]>> getPartitionRecords(int partition) {
     Serializer<String> stringSerializer = new StringSerializer();
     Serializer<LargeMessageSegment> segmentSerializer = new DefaultSegmentSerializer();
     // Create two large messages.
@@ -291,22 +617,22 @@ public class ConsumerRecordsProcessorTest {
 
     // Let consumer record 0 be a normal record.
     ConsumerRecord<byte[], byte[]> consumerRecord0 =
-        new ConsumerRecord<>("topic", 0, 0, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), stringSerializer.serialize("topic", "message0"));
+        new ConsumerRecord<>("topic", partition, 0, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), stringSerializer.serialize("topic", "message0"));
     // Let consumer record 1 be a large message segment
     ConsumerRecord<byte[], byte[]> consumerRecord1 =
-        new ConsumerRecord<>("topic", 0, 1, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage1.get(0).value());
+        new ConsumerRecord<>("topic", partition, 1, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage1.get(0).value());
     // Let consumer record 2 be a normal message
     ConsumerRecord<byte[], byte[]> consumerRecord2 =
-        new ConsumerRecord<>("topic", 0, 2, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), stringSerializer.serialize("topic", "message1"));
+        new ConsumerRecord<>("topic", partition, 2, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), stringSerializer.serialize("topic", "message1"));
     // Let record 3 be a new large message segment
     ConsumerRecord<byte[], byte[]> consumerRecord3 =
-        new ConsumerRecord<>("topic", 0, 3, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage2.get(0).value());
+        new ConsumerRecord<>("topic", partition, 3, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage2.get(0).value());
     // let record 4 completes record 3
     ConsumerRecord<byte[], byte[]> consumerRecord4 =
-        new ConsumerRecord<>("topic", 0, 4, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage2.get(1).value());
+        new ConsumerRecord<>("topic", partition, 4, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage2.get(1).value());
     // let record 5 completes record 1
     ConsumerRecord<byte[], byte[]> consumerRecord5 =
-        new ConsumerRecord<>("topic", 0, 5, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage1.get(1).value());
+        new ConsumerRecord<>("topic", partition, 5, 0L, TimestampType.CREATE_TIME, 0, 0, 0, "key".getBytes(), splitLargeMessage1.get(1).value());
 
     // Construct the consumer records.
     List<ConsumerRecord<byte[], byte[]>> recordList = new ArrayList<>();
@@ -316,19 +642,21 @@ public class ConsumerRecordsProcessorTest {
     recordList.add(consumerRecord3);
     recordList.add(consumerRecord4);
     recordList.add(consumerRecord5);
-    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordsMap =
-        new HashMap<>();
-    recordsMap.put(new TopicPartition("topic", 0), recordList);
-    return new ConsumerRecords<>(recordsMap);
+    return recordList;
   }
 
   private ConsumerRecordsProcessor<String, String> createConsumerRecordsProcessor() {
+    return createConsumerRecordsProcessor(new StringDeserializer(), 1);
+  }
+
+  private ConsumerRecordsProcessor<String, String> createConsumerRecordsProcessor(Deserializer<String> valueDeserializer,
+                                                                                  int parallelism) {
     Deserializer<String> stringDeserializer = new StringDeserializer();
     Deserializer<LargeMessageSegment> segmentDeserializer = new DefaultSegmentDeserializer();
     MessageAssembler assembler = new MessageAssemblerImpl(5000, 100, false, segmentDeserializer);
     DeliveredMessageOffsetTracker deliveredMessageOffsetTracker = new DeliveredMessageOffsetTracker(4);
-    return new ConsumerRecordsProcessor<>(assembler, stringDeserializer, stringDeserializer,
-                                          deliveredMessageOffsetTracker, null);
+    return new ConsumerRecordsProcessor<>(assembler, stringDeserializer, valueDeserializer,
+                                          deliveredMessageOffsetTracker, null, parallelism);
   }
 
   private byte[] wrapMessageBytes(Serializer<LargeMessageSegment> segmentSerializer, byte[] messageBytes) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 LinkedIn Corp. Licensed under the BSD 2-Clause License (the "License").  See License in the project root for license information.
+ */
+
+package com.linkedin.kafka.clients.largemessage;
+
+import com.linkedin.kafka.clients.largemessage.errors.OffsetNotTrackedException;
+import org.apache.kafka.common.TopicPartition;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit test for DeliveredMessageOffsetTracker
+ */
+public class DeliveredMessageOffsetTrackerTest {
+  private final TopicPartition _tp = new TopicPartition("topic", 0);
+
+  @Test
+  public void testTrackAndLookup() {
+    DeliveredMessageOffsetTracker tracker = new DeliveredMessageOffsetTracker(10);
+    // Offset 0 and 2 are the segments of a large message delivered at offset 4, offset 1 and 3 are normal messages.
+    tracker.addNonMessageOffset(_tp, 0);
+    tracker.track(_tp, 1, 0, 1, true);
+    tracker.addNonMessageOffset(_tp, 2);
+    tracker.track(_tp, 3, 0, 3, true);
+    tracker.track(_tp, 4, 5, 0, true);
+    tracker.track(_tp, 5, 6, 5, true);
+
+    assertEquals(tracker.earliestTrackedOffset(_tp).longValue(), 0L, "The earliest tracked offset should be 0");
+    assertEquals(tracker.delivered(_tp).longValue(), 5L, "The last delivered offset should be 5");
+    assertEquals(tracker.safeOffset(_tp).longValue(), 6L, "The current safe offset should be 6");
+    assertEquals(tracker.safeOffset(_tp, 1).longValue(), 0L, "Message 1 depends on the segment at offset 0");
+    assertEquals(tracker.safeOffset(_tp, 3).longValue(), 0L, "Message 3 depends on the segment at offset 0");
+    assertEquals(tracker.safeOffset(_tp, 4).longValue(), 5L, "The safe offset of message 4 should be 5");
+    assertEquals(tracker.safeOffset(_tp, 5).longValue(), 6L, "The safe offset of untracked message 5 should be 6");
+    assertEquals(tracker.startingOffset(_tp, 4), 0L, "The large message should start at offset 0");
+    assertEquals(tracker.startingOffset(_tp, 5), 5L, "Message 5 should start at offset 5");
+    assertEquals(tracker.closestDeliveredUpTo(_tp, 2).longValue(), 1L, "The closest delivered up to 2 should be 1");
+    assertEquals(tracker.closestDeliveredUpTo(_tp, 3).longValue(), 3L, "The closest delivered up to 3 should be 3");
+    assertNull(tracker.closestDeliveredUpTo(_tp, 0), "No message was delivered up to offset 0");
+  }
+
+  @Test(expectedExceptions = OffsetNotTrackedException.class)
+  public void testSafeOffsetOfNonMessageOffset() {
+    DeliveredMessageOffsetTracker tracker = new DeliveredMessageOffsetTracker(10);
+    tracker.addNonMessageOffset(_tp, 0);
+    tracker.addNonMessageOffset(_tp, 1);
+    tracker.track(_tp, 2, 3, 0, true);
+    tracker.safeOffset(_tp, 1);
+  }
+
+  @Test
+  public void testEviction() {
+    int maxMessagesToTrack = 5;
+    DeliveredMessageOffsetTracker tracker = new DeliveredMessageOffsetTracker(maxMessagesToTrack);
+    // Each message is preceded by two segments and depends on the first one, so the buffers wrap around many times.
+    long offset = 0;
+    for (int i = 0; i < 100; i++) {
+      long startingOffset = offset;
+      tracker.addNonMessageOffset(_tp, offset++);
+      tracker.addNonMessageOffset(_tp, offset++);
+      tracker.track(_tp, offset, offset + 1, startingOffset, true);
+      offset++;
+    }
+    long lastMessageOffset = offset - 1;
+    long earliestMessageOffset = lastMessageOffset - 3 * (maxMessagesToTrack - 1);
+    assertEquals(tracker.earliestTrackedOffset(_tp).longValue(), earliestMessageOffset - 2,
+                 "The earliest tracked offset should be right after the last evicted message");
+    for (long messageOffset = earliestMessageOffset; messageOffset <= lastMessageOffset; messageOffset += 3) {
+      assertEquals(tracker.startingOffset(_tp, messageOffset), messageOffset - 2,
+                   "The starting offset of message " + messageOffset + " should be tracked");
+      if (messageOffset < lastMessageOffset) {
+        assertEquals(tracker.closestDeliveredUpTo(_tp, messageOffset + 2).longValue(), messageOffset,
+                     "The segments after message " + messageOffset + " should be skipped");
+      }
+    }
+    assertNull(tracker.closestDeliveredUpTo(_tp, earliestMessageOffset - 1),
+               "There is no message delivered in the tracked range before the earliest tracked message");
+    try {
+      tracker.safeOffset(_tp, earliestMessageOffset - 3);
+      throw new AssertionError("The evicted message should not be tracked");
+    } catch (OffsetNotTrackedException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTrackSmallerOffset() {
+    DeliveredMessageOffsetTracker tracker = new DeliveredMessageOffsetTracker(10);
+    tracker.addNonMessageOffset(_tp, 0);
+    tracker.track(_tp, 1, 0, 1, true);
+    tracker.track(_tp, 2, 0, 2, true);
+    tracker.track(_tp, 3, 4, 0, true);
+    // Track offset 2 again, the offsets from it on are discarded.
+    tracker.track(_tp, 2, 3, 2, true);
+    assertEquals(tracker.delivered(_tp).longValue(), 2L, "The last delivered offset should be 2");
+    assertEquals(tracker.safeOffset(_tp, 2).longValue(), 3L, "The safe offset of message 2 should be updated");
+    assertEquals(tracker.safeOffset(_tp, 1).longValue(), 0L, "The safe offset of message 1 should not change");
+    assertNull(tracker.closestDeliveredUpTo(_tp, 0), "Offset 0 should still be a non message offset");
+  }
+}
@@ -8,12 +8,15 @@ import com.linkedin.kafka.clients.largemessage.errors.InvalidSegmentException;
 import com.linkedin.kafka.clients.largemessage.errors.LargeMessageDroppedException;
 import com.linkedin.kafka.clients.utils.TestUtils;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
 import org.testng.annotations.Test;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -163,6 +166,100 @@ public class LargeMessageBufferPoolTest {
     TestUtils.verifyMessage(serializedMessage2, 30, 10);
   }
 
+  @Test
+  public void testPreallocatedMessageBuffers() {
+    // Create a message pool with 60 bytes capacity that preallocates the message buffers.
+    LargeMessageBufferPool pool = new LargeMessageBufferPool(60, 20, false, true);
+
+    TopicPartition tp = new TopicPartition("topic", 0);
+    UUID messageId0 = UUID.randomUUID();
+    UUID messageId1 = UUID.randomUUID();
+    UUID messageId2 = UUID.randomUUID();
+    long offset = 0;
+    LargeMessageSegment m0Seg0 = TestUtils.createLargeMessageSegment(messageId0, 0, 3, 25, 10);
+    LargeMessageSegment m1Seg0 = TestUtils.createLargeMessageSegment(messageId1, 0, 3, 25, 10);
+    LargeMessageSegment m1Seg1 = TestUtils.createLargeMessageSegment(messageId1, 1, 3, 25, 10);
+    LargeMessageSegment m1Seg2 = TestUtils.createLargeMessageSegment(messageId1, 2, 3, 25, 5);
+    LargeMessageSegment m2Seg0 = TestUtils.createLargeMessageSegment(messageId2, 0, 2, 20, 10);
+
+    // The full message size is charged when the first segment arrives.
+    assertNull(pool.tryCompleteMessage(tp, offset++, m0Seg0).serializedMessage(), "No message should be completed");
+    assertEquals(pool.bufferUsed(), 25, "Buffer pool buffered bytes should be 25.");
+    assertNull(pool.tryCompleteMessage(tp, offset++, m1Seg0).serializedMessage(), "No message should be completed");
+    assertEquals(pool.bufferUsed(), 50, "Buffer pool buffered bytes should be 50.");
+    assertNull(pool.tryCompleteMessage(tp, offset++, m1Seg1).serializedMessage(), "No message should be completed");
+    assertEquals(pool.bufferUsed(), 50, "Buffer pool buffered bytes should be 50.");
+
+    // Message 2 needs 20 bytes, which evicts message 0.
+    assertNull(pool.tryCompleteMessage(tp, offset++, m2Seg0).serializedMessage(), "No message should be completed");
+    assertEquals(pool.size(), 2, "Buffer pool size should be 2.");
+    assertEquals(pool.bufferUsed(), 45, "Buffer pool buffered bytes should be 45.");
+    assertEquals(pool.safeOffset(tp), 1, "Safe offset for partition 0 should be 1.");
+
+    byte[] serializedMessage1 = pool.tryCompleteMessage(tp, offset, m1Seg2).serializedMessage();
+    assertNotNull(serializedMessage1, "Message 1 should be completed");
+    assertEquals(pool.bufferUsed(), 20, "Buffer pool buffered bytes should be 20.");
+    TestUtils.verifyMessage(serializedMessage1, 25, 10);
+  }
+
+  @Test
+  public void testEvictionAcrossPartitions() {
+    LargeMessageBufferPool pool = new LargeMessageBufferPool(30, 20, false);
+
+    TopicPartition tp0 = new TopicPartition("topic", 0);
+    TopicPartition tp1 = new TopicPartition("topic", 1);
+    UUID messageId0 = UUID.randomUUID();
+    UUID messageId1 = UUID.randomUUID();
+    UUID messageId2 = UUID.randomUUID();
+
+    // Message 1 in partition 1 is created before message 0 in partition 0.
+    pool.tryCompleteMessage(tp1, 0, TestUtils.createLargeMessageSegment(messageId1, 0, 3, 25, 10));
+    pool.tryCompleteMessage(tp0, 0, TestUtils.createLargeMessageSegment(messageId0, 0, 3, 25, 10));
+    pool.tryCompleteMessage(tp0, 1, TestUtils.createLargeMessageSegment(messageId0, 1, 3, 25, 10));
+    assertEquals(pool.bufferUsed(), 30, "Buffer pool buffered bytes should be 30.");
+
+    // A segment of message 2 in partition 0 evicts the globally eldest message, which is message 1.
+    pool.tryCompleteMessage(tp0, 2, TestUtils.createLargeMessageSegment(messageId2, 0, 3, 25, 10));
+    assertEquals(pool.size(), 2, "Buffer pool size should be 2.");
+    assertEquals(pool.bufferUsed(), 30, "Buffer pool buffered bytes should be 30.");
+    assertNull(pool.safeOffsets().get(tp1), "Safe offset for partition 1 should not exist.");
+    assertEquals(pool.safeOffset(tp0), 0, "Safe offset for partition 0 should be 0.");
+  }
+
+  @Test
+  public void testConcurrentAssembly() throws Exception {
+    final int numThreads = 4;
+    final int numMessages = 200;
+    final LargeMessageBufferPool pool = new LargeMessageBufferPool(numThreads * 25, 20, false);
+    final AtomicInteger completed = new AtomicInteger(0);
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final TopicPartition tp = new TopicPartition("topic", i);
+      threads[i] = new Thread(() -> {
+        long offset = 0;
+        for (int j = 0; j < numMessages; j++) {
+          UUID messageId = UUID.randomUUID();
+          for (int seq = 0; seq < 3; seq++) {
+            LargeMessageSegment segment =
+                TestUtils.createLargeMessageSegment(messageId, seq, 3, 25, seq == 2 ? 5 : 10);
+            byte[] serializedMessage = pool.tryCompleteMessage(tp, offset++, segment).serializedMessage();
+            if (serializedMessage != null) {
+              TestUtils.verifyMessage(serializedMessage, 25, 10);
+              completed.incrementAndGet();
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(completed.get(), numThreads * numMessages, "All the messages should be completed.");
+    assertEquals(pool.size(), 0, "Buffer pool size should be 0.");
+    assertEquals(pool.bufferUsed(), 0, "Buffer pool buffered bytes should be 0.");
+  }
+
   @Test
   public void testSequenceNumberOutofRange() {
     UUID messageId = UUID.randomUUID();
@@ -239,6 +336,7 @@ public class LargeMessageBufferPoolTest {
 
     pool.clear(tp0);
 
+    assertEquals(pool.numPartitions(), 1, "The shard of partition 0 should be removed.");
     assertEquals(pool.size(), 1, "Buffer pool size should be 1.");
     assertEquals(pool.bufferUsed(), 20, "Buffer pool buffered bytes should be 0.");
     assertEquals(pool.safeOffsets().size(), 1, "Safe offset map size should only contain partition 0.");
@@ -252,6 +350,7 @@ public class LargeMessageBufferPoolTest {
     assertEquals(pool.safeOffsets().get(tp0).longValue(), 4, "Safe offset for partition 0 should be 0.");
 
     pool.clear();
+    assertEquals(pool.numPartitions(), 0, "All the shards should be removed.");
     assertEquals(pool.size(), 0, "Buffer pool size should be 0.");
     assertEquals(pool.bufferUsed(), 0, "Buffer pool buffered bytes should be 0.");
     assertEquals(pool.safeOffsets().size(), 0, "Safe offset map size should only contain partition 0.");
@@ -260,5 +359,41 @@ public class LargeMessageBufferPoolTest {
 
   }
 
+  @Test
+  public void testMetrics() {
+    Metrics metrics = new Metrics();
+    LargeMessageBufferPool pool = new LargeMessageBufferPool(30, 20, false, false, metrics);
+    TopicPartition tp = new TopicPartition("topic", 0);
 
+    UUID messageId0 = UUID.randomUUID();
+    pool.tryCompleteMessage(tp, 0, TestUtils.createLargeMessageSegment(messageId0, 0, 3, 25, 10));
+    pool.tryCompleteMessage(tp, 1, TestUtils.createLargeMessageSegment(messageId0, 1, 3, 25, 10));
+    assertEquals(metricValue(metrics, "message-assembler-buffer-bytes-used"), 20.0, "20 bytes should be buffered.");
+    assertEquals(metricValue(metrics, "message-assembler-incomplete-messages"), 1.0, "There should be 1 incomplete message.");
+
+    // Message 0 is completed by the segment at offset 3.
+    pool.tryCompleteMessage(tp, 3, TestUtils.createLargeMessageSegment(messageId0, 2, 3, 25, 5));
+    assertEquals(metricValue(metrics, "message-assembler-buffer-bytes-used"), 0.0, "Nothing should be buffered.");
+    assertEquals(metricValue(metrics, "segments-per-assembled-message-max"), 3.0, "Message 0 has 3 segments.");
+    assertEquals(metricValue(metrics, "large-message-offset-span-max"), 3.0, "Message 0 spans from offset 0 to 3.");
+    assertTrue(metricValue(metrics, "large-message-assembly-time-max") >= 0, "The assembly time should be recorded.");
+
+    // Three 10 bytes segments of different messages fill the buffer, the fourth one evicts the eldest message.
+    for (int i = 0; i < 4; i++) {
+      pool.tryCompleteMessage(tp, 4 + i, TestUtils.createLargeMessageSegment(UUID.randomUUID(), 0, 3, 25, 10));
+    }
+    assertEquals(metricValue(metrics, "message-assembler-incomplete-messages"), 3.0, "There should be 3 incomplete messages.");
+    assertTrue(metricValue(metrics, "large-message-eviction-rate") > 0, "The eviction should be recorded.");
+    assertEquals(metricValue(metrics, "large-message-expiration-rate"), 0.0, "No message should have expired.");
+
+    // A segment at offset 100 expires all the incomplete messages starting before offset 80.
+    pool.tryCompleteMessage(tp, 100, TestUtils.createLargeMessageSegment(UUID.randomUUID(), 0, 3, 25, 10));
+    assertEquals(metricValue(metrics, "message-assembler-incomplete-messages"), 1.0, "Only the new message should be left.");
+    assertTrue(metricValue(metrics, "large-message-expiration-rate") > 0, "The expirations should be recorded.");
+    metrics.close();
+  }
+
+  private static double metricValue(Metrics metrics, String name) {
+    return metrics.metrics().get(metrics.metricName(name, MessageAssemblerImpl.METRIC_GROUP)).value();
+  }
 }
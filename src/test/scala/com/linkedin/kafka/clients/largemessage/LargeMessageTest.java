@@ -9,9 +9,12 @@ import com.linkedin.kafka.clients.utils.TestUtils;
 import org.apache.kafka.common.TopicPartition;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -47,6 +50,22 @@ public class LargeMessageTest {
     TestUtils.verifyMessage(serializedMessage, messageSizeInBytes, 10);
   }
 
+  @Test
+  public void testSingleSlicedSegment() {
+    LargeMessage message = new LargeMessage(new TopicPartition("topic", 0), UUID.randomUUID(), 0L, 10, 1);
+    // Let the payload be a slice of a larger array, e.g. after a segment header.
+    ByteBuffer payload = TestUtils.createLargeMessageSegment(messageId, 0, 1, 10, 10).payload;
+    ByteBuffer backing = ByteBuffer.allocate(4 + payload.remaining());
+    backing.position(4);
+    backing.put(payload.duplicate());
+    backing.position(4);
+    LargeMessageSegment segment = new LargeMessageSegment(messageId, 0, 1, 10, backing.slice());
+
+    byte[] serializedMessage = message.addSegment(segment, 0).serializedMessage();
+    assertEquals(serializedMessage.length, 10, "Only the payload bytes should be returned");
+    TestUtils.verifyMessage(serializedMessage, 10, 10);
+  }
+
   @Test(expectedExceptions = InvalidSegmentException.class)
   public void testZeroLengthSegment() {
     LargeMessage message = new LargeMessage(new TopicPartition("topic", 0),
@@ -100,4 +119,56 @@ public class LargeMessageTest {
       assertTrue(t.getMessage().startsWith("Detected UUID conflict"));
     }
   }
+
+  @Test
+  public void testPreallocatedMessageBuffer() {
+    LargeMessage message = new LargeMessage(new TopicPartition("topic", 0),
+        UUID.randomUUID(),
+        0L,
+        25,
+        3,
+        true);
+
+    LargeMessageSegment segment0 = TestUtils.createLargeMessageSegment(messageId, 0, 3, 25, 10);
+    LargeMessageSegment segment1 = TestUtils.createLargeMessageSegment(messageId, 1, 3, 25, 10);
+    LargeMessageSegment segment2 = TestUtils.createLargeMessageSegment(messageId, 2, 3, 25, 5);
+
+    assertEquals(message.memorySizeInBytes(), 0, "No memory should be used before the first segment is added.");
+    // The last segment arrives first.
+    assertNull(message.addSegment(segment2, 0).serializedMessage());
+    assertEquals(message.bufferedSizeInBytes(), 5, "5 bytes should be buffered");
+    assertEquals(message.memorySizeInBytes(), 25, "The full message buffer should be allocated.");
+    assertNull(message.addSegment(segment1, 1).serializedMessage());
+    assertEquals(message.addSegment(segment1, 2).bytesAdded(), 0, "Duplicate segment should not be added.");
+    assertEquals(message.bufferedSizeInBytes(), 15, "15 bytes should be buffered");
+
+    byte[] serializedMessage = message.addSegment(segment0, 3).serializedMessage();
+    assertNotNull(serializedMessage);
+    assertEquals(serializedMessage.length, 25);
+    TestUtils.verifyMessage(serializedMessage, 25, 10);
+  }
+
+  @Test
+  public void testPreallocatedMessageBufferWithInconsistentSegmentSize() {
+    LargeMessage message = new LargeMessage(new TopicPartition("topic", 0),
+        UUID.randomUUID(),
+        0L,
+        25,
+        3,
+        true);
+
+    message.addSegment(TestUtils.createLargeMessageSegment(messageId, 0, 3, 25, 10), 0);
+    try {
+      message.addSegment(TestUtils.createLargeMessageSegment(messageId, 1, 3, 25, 8), 1);
+      fail("Should throw exception.");
+    } catch (InvalidSegmentException ise) {
+      assertTrue(ise.getMessage().contains("should have the same size"));
+    }
+    try {
+      message.addSegment(TestUtils.createLargeMessageSegment(messageId, 2, 3, 25, 4), 1);
+      fail("Should throw exception.");
+    } catch (InvalidSegmentException ise) {
+      assertTrue(ise.getMessage().contains("does not match the segment size"));
+    }
+  }
 }
@@ -4,7 +4,9 @@
 
 package com.linkedin.kafka.clients.largemessage;
 
+import com.linkedin.kafka.clients.largemessage.errors.InvalidSegmentException;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.testng.annotations.Test;
@@ -14,6 +16,7 @@ import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 
 /**
  * Unit test for message assembler.
@@ -36,6 +39,36 @@ public class MessageAssemblerTest {
     assertEquals(assembleResult.messageEndingOffset(), 0, "The message ending offset should be 0");
   }
 
+  @Test
+  public void testSingleMessageSegmentNotCopied() {
+    Deserializer<LargeMessageSegment> segmentDeserializer = new DefaultSegmentDeserializer();
+    // The default segment serializer does not wrap single segment messages, so write the segment header here.
+    byte[] payload = "message".getBytes();
+    UUID messageId = UUID.randomUUID();
+    ByteBuffer wrapped = ByteBuffer.allocate(1 + Integer.BYTES + LargeMessageSegment.SEGMENT_INFO_OVERHEAD + payload.length);
+    wrapped.put(LargeMessageSegment.UNCOMPRESSED_VERSION);
+    wrapped.putInt((int) (messageId.getMostSignificantBits() + messageId.getLeastSignificantBits()));
+    wrapped.putLong(messageId.getMostSignificantBits());
+    wrapped.putLong(messageId.getLeastSignificantBits());
+    wrapped.putInt(0);
+    wrapped.putInt(1);
+    wrapped.putInt(payload.length);
+    wrapped.put(payload);
+    byte[] messageWrappedBytes = wrapped.array();
+
+    MessageAssembler messageAssembler = new MessageAssemblerImpl(100, 100, true, segmentDeserializer);
+    MessageAssembler.AssembleResult assembleResult =
+        messageAssembler.assemble(new TopicPartition("topic", 0), 0, messageWrappedBytes);
+
+    ByteBuffer messageBuffer = assembleResult.messageBuffer();
+    assertSame(messageBuffer.array(), messageWrappedBytes, "The message should be a slice of the segment bytes");
+    assertEquals(assembleResult.messageSize(), 7);
+    byte[] messageBytes = new byte[messageBuffer.remaining()];
+    messageBuffer.duplicate().get(messageBytes);
+    assertEquals(new String(messageBytes), "message");
+    assertEquals(new String(assembleResult.messageBytes()), "message");
+  }
+
   @Test
   public void testNonLargeMessageSegmentBytes() {
     // Create serializer/deserializers.
@@ -50,6 +83,18 @@ public class MessageAssemblerTest {
     assertEquals(assembleResult.messageEndingOffset(), 0, "The message ending offset should be 0");
   }
 
+  @Test(expectedExceptions = InvalidSegmentException.class)
+  public void testUncompressedSizeLargerThanBufferCapacity() {
+    // A corrupted header should not make the consumer allocate the uncompressed size it claims.
+    byte[] compressedBytes = LargeMessageCompression.compress("message".getBytes(), CompressionType.GZIP);
+    byte[] segmentBytes = new DefaultSegmentSerializer().serialize("topic",
+        new LargeMessageSegment(UUID.randomUUID(), 0, 1, compressedBytes.length, CompressionType.GZIP, Integer.MAX_VALUE,
+                                ByteBuffer.wrap(compressedBytes)));
+
+    MessageAssembler messageAssembler = new MessageAssemblerImpl(100, 100, true, new DefaultSegmentDeserializer());
+    messageAssembler.assemble(new TopicPartition("topic", 0), 0, segmentBytes);
+  }
+
   private byte[] wrapMessageBytes(Serializer<LargeMessageSegment> segmentSerializer, byte[] messageBytes) {
     return segmentSerializer.serialize("topic",
         new LargeMessageSegment(UUID.randomUUID(), 0, 1, messageBytes.length, ByteBuffer.wrap(messageBytes)));
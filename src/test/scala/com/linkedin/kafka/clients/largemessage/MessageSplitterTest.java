@@ -5,18 +5,35 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.utils.TestUtils;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Unit test for message splitter.
@@ -56,4 +73,208 @@ public class MessageSplitterTest {
     assertEquals(assembledMessage, message, "messages should match.");
   }
 
+  @Test
+  public void testSingleSegmentPassThrough() {
+    // LiKafkaProducerImpl skips the splitter for normal sized messages when DefaultSegmentSerializer is used, which
+    // is only wire compatible as long as the single-segment message is sent as is.
+    byte[] serializedMessage = new StringSerializer().serialize("topic", TestUtils.getRandomString(100));
+    MessageSplitter splitter = new MessageSplitterImpl(200, new DefaultSegmentSerializer());
+    List<ProducerRecord<byte[], byte[]>> records = splitter.split("topic", UUID.randomUUID(), serializedMessage);
+    assertEquals(records.size(), 1, "Should have 1 segment.");
+    assertSame(records.get(0).value(), serializedMessage, "The serialized message should be sent as is.");
+  }
+
+  @Test
+  public void testSplitAndSend() {
+    TopicPartition tp = new TopicPartition("topic", 0);
+    String message = TestUtils.getRandomString(1000);
+    Serializer<String> stringSerializer = new StringSerializer();
+    Deserializer<String> stringDeserializer = new StringDeserializer();
+    Deserializer<LargeMessageSegment> segmentDeserializer = new DefaultSegmentDeserializer();
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer(), null, CompressionType.NONE, true);
+    CopyingMockProducer producer = new CopyingMockProducer();
+
+    byte[] serializedMessage = stringSerializer.serialize("topic", message);
+    AtomicInteger callbackFired = new AtomicInteger(0);
+    splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null, serializedMessage,
+                          (RecordMetadata metadata, Exception e) -> {
+                            assertNull(e, "The segments should be sent successfully.");
+                            callbackFired.incrementAndGet();
+                          });
+    assertEquals(callbackFired.get(), 1, "The callback should only be fired once.");
+
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertEquals(records.size(), 4, "Should have 4 segments.");
+    MessageAssembler assembler = new MessageAssemblerImpl(10000, 10000, true, segmentDeserializer);
+    String assembledMessage = null;
+    for (int i = 0; i < records.size(); i++) {
+      LargeMessageSegment segment = segmentDeserializer.deserialize("topic", records.get(i).value());
+      assertEquals(segment.sequenceNumber, i, "SequenceNumber should match");
+      assembledMessage = stringDeserializer.deserialize(null, assembler.assemble(tp, i, records.get(i).value()).messageBytes());
+    }
+    assertEquals(assembledMessage, message, "messages should match.");
+  }
+
+  @Test
+  public void testSplitAndSendWithoutReusingSegmentValues() {
+    TopicPartition tp = new TopicPartition("topic", 0);
+    String message = TestUtils.getRandomString(1000);
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer());
+    // Unlike KafkaProducer, the mock producer keeps the record values as is, like an interceptor that keeps the records.
+    MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+
+    byte[] serializedMessage = new StringSerializer().serialize("topic", message);
+    splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null, serializedMessage,
+                          (RecordMetadata metadata, Exception e) -> { });
+
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertEquals(records.size(), 4, "Should have 4 segments.");
+    assertNotSame(records.get(0).value(), records.get(1).value(), "Each segment should have its own value array.");
+    MessageAssembler assembler = new MessageAssemblerImpl(10000, 10000, true, new DefaultSegmentDeserializer());
+    String assembledMessage = null;
+    for (int i = 0; i < records.size(); i++) {
+      assembledMessage = new StringDeserializer().deserialize(null, assembler.assemble(tp, i, records.get(i).value()).messageBytes());
+    }
+    assertEquals(assembledMessage, message, "messages should match.");
+  }
+
+  @Test
+  public void testSplitAndSendInputStream() throws IOException {
+    TopicPartition tp = new TopicPartition("topic", 0);
+    String message = TestUtils.getRandomString(1000);
+    Deserializer<String> stringDeserializer = new StringDeserializer();
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer());
+    CopyingMockProducer producer = new CopyingMockProducer();
+
+    byte[] serializedMessage = new StringSerializer().serialize("topic", message);
+    AtomicInteger callbackFired = new AtomicInteger(0);
+    splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null, new ByteArrayInputStream(serializedMessage),
+                          serializedMessage.length, (RecordMetadata metadata, Exception e) -> {
+                            assertNull(e, "The segments should be sent successfully.");
+                            callbackFired.incrementAndGet();
+                          });
+    assertEquals(callbackFired.get(), 1, "The callback should only be fired once.");
+
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertEquals(records.size(), 4, "Should have 4 segments.");
+    MessageAssembler assembler = new MessageAssemblerImpl(10000, 10000, true, new DefaultSegmentDeserializer());
+    String assembledMessage = null;
+    for (int i = 0; i < records.size(); i++) {
+      assembledMessage = stringDeserializer.deserialize(null, assembler.assemble(tp, i, records.get(i).value()).messageBytes());
+    }
+    assertEquals(assembledMessage, message, "messages should match.");
+  }
+
+  @Test
+  public void testSplitAndSendTruncatedInputStream() throws IOException {
+    TopicPartition tp = new TopicPartition("topic", 0);
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer());
+    CopyingMockProducer producer = new CopyingMockProducer();
+    byte[] serializedMessage = new StringSerializer().serialize("topic", TestUtils.getRandomString(1000));
+    AtomicInteger callbackFired = new AtomicInteger(0);
+    try {
+      splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null,
+                            new ByteArrayInputStream(serializedMessage), serializedMessage.length + 1,
+                            (RecordMetadata metadata, Exception e) -> callbackFired.incrementAndGet());
+      fail("Should have thrown EOFException.");
+    } catch (EOFException e) {
+      // expected.
+    }
+
+    // The segments sent before the end of the stream stay sent, but the message can never be completed.
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertEquals(records.size(), 3, "The 3 full segments should have been sent.");
+    assertEquals(callbackFired.get(), 0, "The callback should never be fired.");
+    MessageAssembler assembler = new MessageAssemblerImpl(10000, 10000, true, new DefaultSegmentDeserializer());
+    for (int i = 0; i < records.size(); i++) {
+      assertFalse(assembler.assemble(tp, i, records.get(i).value()).hasMessage(), "The message should be incomplete.");
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testSplitAndSendEmptyInputStream() throws IOException {
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer());
+    splitter.splitAndSend(new CopyingMockProducer(), "topic", 0, 0L, UUID.randomUUID(), null,
+                          new ByteArrayInputStream(new byte[0]), 0, (RecordMetadata metadata, Exception e) -> { });
+  }
+
+  @Test
+  public void testSplitAndSendCompressed() {
+    TopicPartition tp = new TopicPartition("topic", 0);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("{\"id\":").append(i).append(",\"name\":\"name").append(i).append("\"}");
+    }
+    String message = sb.toString();
+    byte[] serializedMessage = new StringSerializer().serialize("topic", message);
+    Deserializer<LargeMessageSegment> segmentDeserializer = new DefaultSegmentDeserializer();
+    for (CompressionType compressionType : new CompressionType[]{CompressionType.GZIP, CompressionType.SNAPPY, CompressionType.LZ4}) {
+      Metrics metrics = new Metrics();
+      MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer(), metrics, compressionType);
+      CopyingMockProducer producer = new CopyingMockProducer();
+      splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null, serializedMessage,
+                            (RecordMetadata metadata, Exception e) -> assertNull(e, "The segments should be sent successfully."));
+
+      List<ProducerRecord<byte[], byte[]>> records = producer.history();
+      assertTrue(records.size() < (serializedMessage.length + 299) / 300,
+                 "The compressed message should have fewer segments with " + compressionType);
+      assertTrue(metricValue(metrics, "large-message-compression-rate-avg") < 1.0, "The compression rate should be recorded.");
+      MessageAssembler assembler = new MessageAssemblerImpl(10000, 10000, true, segmentDeserializer);
+      MessageAssembler.AssembleResult assembleResult = null;
+      for (int i = 0; i < records.size(); i++) {
+        LargeMessageSegment segment = segmentDeserializer.deserialize("topic", records.get(i).value());
+        assertEquals(segment.compressionType, compressionType, "The segment should carry the codec.");
+        assertEquals(segment.uncompressedMessageSizeInBytes, serializedMessage.length);
+        assembleResult = assembler.assemble(tp, i, records.get(i).value());
+      }
+      assertEquals(assembleResult.messageSize(), serializedMessage.length, "The message size should be the uncompressed size.");
+      assertEquals(new StringDeserializer().deserialize(null, assembleResult.messageBytes()), message,
+                   "The decompressed message should match with " + compressionType);
+      metrics.close();
+    }
+  }
+
+  @Test
+  public void testSplitAndSendMetrics() {
+    Metrics metrics = new Metrics();
+    MessageSplitter splitter = new MessageSplitterImpl(300, new DefaultSegmentSerializer(), metrics);
+    CopyingMockProducer producer = new CopyingMockProducer();
+    byte[] serializedMessage = new StringSerializer().serialize("topic", TestUtils.getRandomString(1000));
+    for (int i = 0; i < 2; i++) {
+      splitter.splitAndSend(producer, "topic", 0, 0L, UUID.randomUUID(), null, serializedMessage,
+                            (RecordMetadata metadata, Exception e) -> { });
+    }
+
+    long segmentBytes = 0;
+    for (ProducerRecord<byte[], byte[]> record : producer.history()) {
+      segmentBytes += record.value().length;
+    }
+    assertEquals(metricValue(metrics, "segments-per-message-avg"), 4.0, "Each message should have 4 segments.");
+    assertEquals(metricValue(metrics, "segments-per-message-max"), 4.0, "Each message should have 4 segments.");
+    assertEquals(metricValue(metrics, "segment-overhead-bytes-avg"), (segmentBytes - 2.0 * serializedMessage.length) / 2,
+                 "The overhead should be the segment bytes in addition to the message bytes.");
+    assertTrue(metricValue(metrics, "split-message-rate") > 0, "The split message rate should be recorded.");
+    double latency = metricValue(metrics, "large-message-send-latency-max");
+    assertTrue(latency >= 0 && latency < 10000, "The send latency should be recorded, but it is " + latency);
+    metrics.close();
+  }
+
+  private static double metricValue(Metrics metrics, String name) {
+    return metrics.metrics().get(metrics.metricName(name, MessageSplitterImpl.METRIC_GROUP)).value();
+  }
+
+  /**
+   * A mock producer that copies the record value on send like {@link org.apache.kafka.clients.producer.KafkaProducer}.
+   */
+  private static class CopyingMockProducer extends MockProducer<byte[], byte[]> {
+    CopyingMockProducer() {
+      super(true, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
+    @Override
+    public synchronized Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+      return super.send(new ProducerRecord<>(record.topic(), record.partition(), record.timestamp(), record.key(),
+                                             record.value().clone()), callback);
+    }
+  }
 }
@@ -5,6 +5,7 @@
 package com.linkedin.kafka.clients.largemessage;
 
 import com.linkedin.kafka.clients.utils.TestUtils;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -48,4 +49,30 @@ public class SerializerDeserializerTest {
     assertEquals(deserializedString.length(), s.length());
 
   }
+
+  @Test
+  public void testCompressedSegmentSerde() {
+    Serializer<LargeMessageSegment> segmentSerializer = new DefaultSegmentSerializer();
+    Deserializer<LargeMessageSegment> segmentDeserializer = new DefaultSegmentDeserializer();
+    byte[] payload = TestUtils.getRandomString(100).getBytes();
+    // A compressed message has the segment header even if it only has one segment.
+    LargeMessageSegment segment = new LargeMessageSegment(UUID.randomUUID(), 0, 1, payload.length, CompressionType.LZ4, 300,
+                                                          ByteBuffer.wrap(payload));
+    byte[] serializedSegment = segmentSerializer.serialize("topic", segment);
+    assertEquals(serializedSegment.length, 1 + payload.length + LargeMessageSegment.SEGMENT_INFO_OVERHEAD + 4
+        + LargeMessageSegment.COMPRESSION_INFO_OVERHEAD);
+    assertEquals(serializedSegment[0], LargeMessageSegment.COMPRESSED_VERSION);
+
+    LargeMessageSegment deserializedSegment = segmentDeserializer.deserialize("topic", serializedSegment);
+    assertEquals(deserializedSegment.messageId, segment.messageId);
+    assertEquals(deserializedSegment.numberOfSegments, 1);
+    assertEquals(deserializedSegment.messageSizeInBytes, payload.length);
+    assertEquals(deserializedSegment.compressionType, CompressionType.LZ4);
+    assertEquals(deserializedSegment.uncompressedMessageSizeInBytes, 300);
+    assertEquals(deserializedSegment.payloadArray(), payload);
+
+    // Uncompressed segments keep the original format.
+    LargeMessageSegment uncompressedSegment = new LargeMessageSegment(UUID.randomUUID(), 0, 2, 200, ByteBuffer.wrap(payload));
+    assertEquals(segmentSerializer.serialize("topic", uncompressedSegment)[0], LargeMessageSegment.UNCOMPRESSED_VERSION);
+  }
 }